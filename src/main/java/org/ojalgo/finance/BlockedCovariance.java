@@ -0,0 +1,172 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Sample covariances of many return series as one matrix product. The returns are centred into an nxT
+ * matrix X, one contiguous row per asset (the transpose of the usual Txn returns matrix), and XX^T/(T-1) is
+ * computed in blocks of assets and chunks of observations that fit in cache. The blocks on and above the
+ * diagonal are computed in parallel, and then mirrored to the lower half.
+ *
+ * @author apete
+ */
+final class BlockedCovariance {
+
+    /**
+     * Assets per block
+     */
+    static final int BLOCK = 32;
+    /**
+     * Observations per chunk - a block pair's chunks (2 x 32 x 256 doubles) are 128kB
+     */
+    static final int CHUNK = 256;
+
+    /**
+     * @param returns One array of returns per asset, all of the same length
+     * @param pool Where to compute the blocks
+     * @return The nxn sample covariances, column-major with both halves filled - all NaN if there are fewer
+     *         than 2 observations
+     */
+    static double[] covariances(final double[][] returns, final ForkJoinPool pool) {
+
+        int n = returns.length;
+        double[] retVal = new double[n * n];
+        if (n == 0) {
+            return retVal;
+        }
+
+        int length = returns[0].length;
+        if (length < 2) {
+            // Undefined - the same as SampleSet#getCovariance(SampleSet)
+            Arrays.fill(retVal, Double.NaN);
+            return retVal;
+        }
+
+        double[][] centred = BlockedCovariance.centre(returns, length);
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i0 = 0; i0 < n; i0 += BLOCK) {
+            int i1 = Math.min(i0 + BLOCK, n);
+            for (int j0 = i0; j0 < n; j0 += BLOCK) {
+                int j1 = Math.min(j0 + BLOCK, n);
+                int first = i0;
+                int second = j0;
+                tasks.add(pool.submit(() -> BlockedCovariance.block(centred, first, i1, second, j1, length, retVal, n)));
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        double divisor = length - 1;
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i <= j; i++) {
+                double covariance = retVal[i + j * n] / divisor;
+                retVal[i + j * n] = covariance;
+                retVal[j + i * n] = covariance;
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Accumulates the (upper half) products of the rows [i0,i1) and [j0,j1), one chunk of observations at a
+     * time. Each asset row is multiplied with 4 others at once to reuse its loaded values.
+     */
+    private static void block(final double[][] centred, final int i0, final int i1, final int j0, final int j1, final int length, final double[] result,
+            final int n) {
+
+        for (int t0 = 0; t0 < length; t0 += CHUNK) {
+            int t1 = Math.min(t0 + CHUNK, length);
+
+            for (int i = i0; i < i1; i++) {
+                double[] rowI = centred[i];
+
+                int j = Math.max(j0, i);
+
+                for (; (j + 3) < j1; j += 4) {
+                    double[] row0 = centred[j];
+                    double[] row1 = centred[j + 1];
+                    double[] row2 = centred[j + 2];
+                    double[] row3 = centred[j + 3];
+                    double sum0 = 0.0, sum1 = 0.0, sum2 = 0.0, sum3 = 0.0;
+                    for (int t = t0; t < t1; t++) {
+                        double value = rowI[t];
+                        sum0 += value * row0[t];
+                        sum1 += value * row1[t];
+                        sum2 += value * row2[t];
+                        sum3 += value * row3[t];
+                    }
+                    result[i + j * n] += sum0;
+                    result[i + (j + 1) * n] += sum1;
+                    result[i + (j + 2) * n] += sum2;
+                    result[i + (j + 3) * n] += sum3;
+                }
+
+                for (; j < j1; j++) {
+                    double[] rowJ = centred[j];
+                    double sum = 0.0;
+                    for (int t = t0; t < t1; t++) {
+                        sum += rowI[t] * rowJ[t];
+                    }
+                    result[i + j * n] += sum;
+                }
+            }
+        }
+    }
+
+    private static double[][] centre(final double[][] returns, final int length) {
+
+        double[][] retVal = new double[returns.length][];
+
+        for (int i = 0; i < returns.length; i++) {
+            double[] row = returns[i];
+            if (row.length != length) {
+                throw new IllegalArgumentException("All return series must have the same length!");
+            }
+            double mean = 0.0;
+            for (int t = 0; t < length; t++) {
+                mean += row[t];
+            }
+            mean /= length;
+            double[] centred = new double[length];
+            for (int t = 0; t < length; t++) {
+                centred[t] = row[t] - mean;
+            }
+            retVal[i] = centred;
+        }
+
+        return retVal;
+    }
+
+    private BlockedCovariance() {
+        super();
+    }
+
+}
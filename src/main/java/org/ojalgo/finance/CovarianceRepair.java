@@ -0,0 +1,399 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.Arrays;
+
+import org.ojalgo.function.constant.PrimitiveMath;
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.matrix.decomposition.Eigenvalue;
+import org.ojalgo.matrix.store.MatrixStore;
+import org.ojalgo.matrix.store.Primitive64Store;
+import org.ojalgo.structure.Access2D;
+
+/**
+ * Repairs covariance and correlation matrices that are not (quite) positive definite. Intended to be kept
+ * and reused when many, similar, matrices are repaired:
+ * <ul>
+ * <li>The eigenvalue decomposition of the latest input is cached. The cache key is the matrix instance
+ * (only {@link Primitive64Matrix} instances, that are immutable, are cached by identity) or an explicit
+ * version number.</li>
+ * <li>Eigenvalue flooring only adds the rank-m correction for the m eigenvalues that are too small -
+ * nothing is reconstructed when none are.</li>
+ * <li>{@link #nearestCorrelation(Access2D)} (Higham's alternating projections) is warm started from the
+ * previous call's solution.</li>
+ * <li>All work arrays, and the decomposition, are allocated once per matrix size.</li>
+ * </ul>
+ * An instance is not thread safe.
+ *
+ * @author apete
+ */
+public final class CovarianceRepair {
+
+    private static final int DEFAULT_ITERATIONS = 500;
+    private static final double DEFAULT_TOLERANCE = 1E-10;
+
+    /**
+     * The Dykstra correction of the latest nearestCorrelation(...), or all zeros
+     */
+    private double[] myCorrection = null;
+    private Eigenvalue<Double> myDecomposition = null;
+    private int myDecompositions = 0;
+    private int myIterations = 0;
+    private Object myKey = null;
+    private double[] myMatrix = null;
+    private final int myMaxIterations;
+    private int mySize = 0;
+    private double[] mySolution = null;
+    private Primitive64Store myStore = null;
+    private final double myTolerance;
+    private double[] myValues = null;
+    private double[] myVectors = null;
+    private long myVersion = 0L;
+    private double[] myWork = null;
+
+    public CovarianceRepair() {
+        this(DEFAULT_TOLERANCE, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * @param tolerance Relative change (Frobenius norm) below which nearestCorrelation(...) has converged
+     * @param maxIterations Maximum number of nearestCorrelation(...) iterations
+     */
+    public CovarianceRepair(final double tolerance, final int maxIterations) {
+
+        super();
+
+        myTolerance = tolerance;
+        myMaxIterations = maxIterations;
+    }
+
+    /**
+     * The same as {@link org.ojalgo.finance.portfolio.MarketEquilibrium#clean()} - the variances are kept
+     * (unless very small) and the correlations are those of {@link #toCorrelations(Access2D)}.
+     */
+    public Primitive64Matrix clean(final Access2D<?> covariances) {
+        return this.clean(covariances, 0L, covariances instanceof Primitive64Matrix);
+    }
+
+    /**
+     * @param version Identifies the contents of (a possibly mutable) covariances matrix - the cached
+     *        decomposition is reused if both the instance and the version are the same as last time
+     */
+    public Primitive64Matrix clean(final Access2D<?> covariances, final long version) {
+        return this.clean(covariances, version, true);
+    }
+
+    /**
+     * @return The number of matrices clean(...) and toCorrelations(...) actually decomposed - the other calls
+     *         reused the cached decomposition
+     */
+    int getDecompositions() {
+        return myDecompositions;
+    }
+
+    /**
+     * @return The number of iterations of the latest nearestCorrelation(...)
+     */
+    public int getIterations() {
+        return myIterations;
+    }
+
+    /**
+     * Higham's alternating projections (with Dykstra's correction) between the positive semidefinite matrices
+     * and the matrices with unit diagonal. The result is the nearest (Frobenius norm) correlation matrix.
+     * <p>
+     * If the previous call was for a matrix of the same size, its correction is used as the starting point.
+     * For a slightly perturbed matrix that converges to the same solution in fewer iterations.
+     */
+    public Primitive64Matrix nearestCorrelation(final Access2D<?> correlations) {
+
+        int size = Math.toIntExact(Math.min(correlations.countRows(), correlations.countColumns()));
+
+        this.allocate(size);
+        myKey = null;
+
+        double[] correction = myCorrection;
+        double[] solution = mySolution;
+        double[] projected = myMatrix;
+        double[] work = myWork;
+
+        // Start from P_U(A + correction) - with a zero correction that is just the input
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                int ij = i + j * size;
+                solution[ij] = i == j ? PrimitiveMath.ONE : correlations.doubleValue(i, j) + correction[ij];
+            }
+        }
+
+        myIterations = 0;
+        double change = Double.POSITIVE_INFINITY;
+
+        while (myIterations < myMaxIterations && change > myTolerance) {
+            myIterations++;
+
+            for (int ij = 0; ij < work.length; ij++) {
+                work[ij] = solution[ij] - correction[ij];
+            }
+
+            this.decompose(work);
+
+            // Projection onto the positive semidefinite matrices
+            Arrays.fill(projected, PrimitiveMath.ZERO);
+            for (int l = 0; l < size; l++) {
+                double value = myValues[l];
+                if (value > PrimitiveMath.ZERO) {
+                    this.update(projected, l, value);
+                }
+            }
+            this.mirror(projected);
+
+            double difference = PrimitiveMath.ZERO;
+            double norm = PrimitiveMath.ZERO;
+
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    int ij = i + j * size;
+
+                    correction[ij] = projected[ij] - work[ij];
+
+                    // Projection onto the unit diagonal matrices
+                    double next = i == j ? PrimitiveMath.ONE : projected[ij];
+                    double delta = next - solution[ij];
+                    difference += delta * delta;
+                    norm += next * next;
+                    solution[ij] = next;
+                }
+            }
+
+            change = PrimitiveMath.SQRT.invoke(difference / norm);
+        }
+
+        Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(size, size);
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                retVal.set(i, j, solution[i + j * size]);
+            }
+        }
+        return retVal.get();
+    }
+
+    /**
+     * The same as {@link FinanceUtils#toCorrelations(Access2D, boolean)} with cleaning enabled: eigenvalues
+     * of the covariance matrix that are negative or very small are replaced with a minimal value.
+     */
+    public Primitive64Matrix toCorrelations(final Access2D<?> covariances) {
+        return this.toCorrelations(covariances, 0L, covariances instanceof Primitive64Matrix);
+    }
+
+    /**
+     * @param version Identifies the contents of (a possibly mutable) covariances matrix - the cached
+     *        decomposition is reused if both the instance and the version are the same as last time
+     */
+    public Primitive64Matrix toCorrelations(final Access2D<?> covariances, final long version) {
+        return this.toCorrelations(covariances, version, true);
+    }
+
+    private void allocate(final int size) {
+        if (size != mySize) {
+            mySize = size;
+            myMatrix = new double[size * size];
+            myWork = new double[size * size];
+            mySolution = new double[size * size];
+            myCorrection = new double[size * size];
+            myVectors = new double[size * size];
+            myValues = new double[size];
+            myStore = Primitive64Store.FACTORY.make(size, size);
+            myDecomposition = Eigenvalue.PRIMITIVE.make(myStore, true);
+            myKey = null;
+        }
+    }
+
+    private Primitive64Matrix clean(final Access2D<?> covariances, final long version, final boolean cacheable) {
+
+        int size = this.floor(covariances, version, cacheable);
+
+        double largest = PrimitiveMath.ZERO;
+        for (int ij = 0; ij < size; ij++) {
+            largest = PrimitiveMath.MAX.invoke(largest, PrimitiveMath.ABS.invoke(myMatrix[ij + ij * size]));
+        }
+        double limit = largest * size * PrimitiveMath.RELATIVELY_SMALL;
+        double smallest = PrimitiveMath.SQRT.invoke(limit);
+
+        double[] volatilities = new double[size];
+        for (int ij = 0; ij < size; ij++) {
+            double variance = myMatrix[ij + ij * size];
+            volatilities[ij] = variance < limit ? smallest : PrimitiveMath.SQRT.invoke(variance);
+        }
+
+        return this.correlate(volatilities);
+    }
+
+    /**
+     * Builds the symmetric result from the lower half of the floored covariances: the correlations, scaled by
+     * the volatilities if those are specified.
+     */
+    private Primitive64Matrix correlate(final double[] volatilities) {
+
+        int size = mySize;
+        double[] floored = myWork;
+
+        Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(size, size);
+
+        double[] deviations = new double[size];
+        for (int ij = 0; ij < size; ij++) {
+            deviations[ij] = PrimitiveMath.SQRT.invoke(floored[ij + ij * size]);
+        }
+
+        for (int j = 0; j < size; j++) {
+            double colDev = deviations[j];
+            double colVol = volatilities != null ? volatilities[j] : PrimitiveMath.ONE;
+
+            retVal.set(j, j, colVol * colVol);
+
+            for (int i = j + 1; i < size; i++) {
+                double rowDev = deviations[i];
+
+                if (rowDev <= PrimitiveMath.ZERO || colDev <= PrimitiveMath.ZERO) {
+
+                    retVal.set(i, j, PrimitiveMath.ZERO);
+                    retVal.set(j, i, PrimitiveMath.ZERO);
+
+                } else {
+
+                    double rowVol = volatilities != null ? volatilities[i] : PrimitiveMath.ONE;
+                    double value = rowVol * (floored[i + j * size] / (rowDev * colDev)) * colVol;
+
+                    retVal.set(i, j, value);
+                    retVal.set(j, i, value);
+                }
+            }
+        }
+
+        return retVal.get();
+    }
+
+    /**
+     * Eigenvalues in myValues, and the corresponding eigenvectors as the columns of myVectors.
+     */
+    private void decompose(final double[] matrix) {
+
+        int size = mySize;
+
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                myStore.set(i, j, matrix[i + j * size]);
+            }
+        }
+
+        myDecomposition.decompose(myStore);
+
+        MatrixStore<Double> mtrxD = myDecomposition.getD();
+        MatrixStore<Double> mtrxV = myDecomposition.getV();
+
+        for (int j = 0; j < size; j++) {
+            myValues[j] = mtrxD.doubleValue(j, j);
+            for (int i = 0; i < size; i++) {
+                myVectors[i + j * size] = mtrxV.doubleValue(i, j);
+            }
+        }
+    }
+
+    /**
+     * Loads the input into myMatrix, and its decomposition, unless cached, and puts the floored covariances
+     * in the lower half of myWork.
+     *
+     * @return The size
+     */
+    private int floor(final Access2D<?> covariances, final long version, final boolean cacheable) {
+
+        int size = Math.toIntExact(Math.min(covariances.countRows(), covariances.countColumns()));
+
+        if (!cacheable || covariances != myKey || version != myVersion || size != mySize) {
+
+            this.allocate(size);
+
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    myMatrix[i + j * size] = covariances.doubleValue(i, j);
+                }
+            }
+
+            this.decompose(myMatrix);
+            myDecompositions++;
+
+            myKey = cacheable ? covariances : null;
+            myVersion = version;
+        }
+
+        double largest = PrimitiveMath.ZERO;
+        for (int l = 0; l < size; l++) {
+            largest = PrimitiveMath.MAX.invoke(largest, PrimitiveMath.ABS.invoke(myValues[l]));
+        }
+        double limit = largest * size * PrimitiveMath.RELATIVELY_SMALL;
+
+        System.arraycopy(myMatrix, 0, myWork, 0, myMatrix.length);
+
+        // V max(D, limit) V^T = C + V (max(D, limit) - D) V^T - only the floored eigenvalues contribute
+        for (int l = 0; l < size; l++) {
+            double raise = limit - myValues[l];
+            if (raise > PrimitiveMath.ZERO) {
+                this.update(myWork, l, raise);
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Copies the lower half to the upper
+     */
+    private void mirror(final double[] matrix) {
+        int size = mySize;
+        for (int j = 0; j < size; j++) {
+            for (int i = j + 1; i < size; i++) {
+                matrix[j + i * size] = matrix[i + j * size];
+            }
+        }
+    }
+
+    private Primitive64Matrix toCorrelations(final Access2D<?> covariances, final long version, final boolean cacheable) {
+        this.floor(covariances, version, cacheable);
+        return this.correlate(null);
+    }
+
+    /**
+     * Adds scale * v * v<sup>T</sup>, with v the eigenvector at index, to the lower half of matrix
+     */
+    private void update(final double[] matrix, final int index, final double scale) {
+        int size = mySize;
+        int offset = index * size;
+        for (int j = 0; j < size; j++) {
+            double scaled = scale * myVectors[offset + j];
+            int column = j * size;
+            for (int i = j; i < size; i++) {
+                matrix[column + i] += myVectors[offset + i] * scaled;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.Arrays;
+
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Exponentially weighted (RiskMetrics style) covariances, updated one observation (one return per asset) at
+ * the time: S = decay * S + (1 - decay) * r * r^T. As with RiskMetrics the mean returns are assumed to be 0.
+ * <p>
+ * Each update is O(n^2) and done in place, in a store allocated once. Nothing but that store is retained,
+ * so memory is O(n^2) regardless of how many observations there are.
+ * <p>
+ * The weights of the observations sum to 1 - decay^count. {@link #getCovariances()} divides by that, so the
+ * estimate is not biased towards 0 while there are few observations. Use the covariances with
+ * {@link org.ojalgo.finance.portfolio.MarketEquilibrium} or {@link org.ojalgo.finance.portfolio.PortfolioContext}.
+ *
+ * @author apete
+ */
+public final class EWMACovariance {
+
+    /**
+     * The RiskMetrics decay factor for daily returns
+     */
+    public static final double DAILY_DECAY = 0.94;
+    /**
+     * The RiskMetrics decay factor for monthly returns
+     */
+    public static final double MONTHLY_DECAY = 0.97;
+
+    /**
+     * @param halfLife The number of observations after which an observation's weight is halved
+     * @return The corresponding decay factor
+     */
+    public static double toDecay(final double halfLife) {
+        return Math.pow(0.5, 1.0 / halfLife);
+    }
+
+    private int myCount = 0;
+    /**
+     * The weighted sums of products - only the upper half (i &lt;= j) of the column-major nxn array is
+     * maintained.
+     */
+    private final double[] myCovariances;
+    private final double myDecay;
+    private final CalendarDateUnit myResolution;
+    private final int mySize;
+    /**
+     * decay^count
+     */
+    private double myUnweighted = 1.0;
+
+    public EWMACovariance(final int size, final CalendarDateUnit resolution) {
+        this(size, DAILY_DECAY, resolution);
+    }
+
+    /**
+     * @param size The number of assets
+     * @param decay The weight of the previous estimate, in the range (0,1)
+     * @param resolution The period of the returns
+     */
+    public EWMACovariance(final int size, final double decay, final CalendarDateUnit resolution) {
+
+        super();
+
+        if (size < 1) {
+            throw new IllegalArgumentException("Need at least 1 asset!");
+        }
+        if (!(decay > 0.0 && decay < 1.0)) {
+            throw new IllegalArgumentException("The decay must be in the range (0,1)!");
+        }
+
+        mySize = size;
+        myDecay = decay;
+        myResolution = resolution;
+
+        myCovariances = new double[size * size];
+    }
+
+    /**
+     * Adds one observation
+     *
+     * @param returns One return per asset
+     */
+    public void add(final double... returns) {
+
+        if (returns.length != mySize) {
+            throw new IllegalArgumentException("Expected " + mySize + " returns, got " + returns.length + "!");
+        }
+
+        double weight = 1.0 - myDecay;
+
+        for (int j = 0; j < mySize; j++) {
+            double weighted = weight * returns[j];
+            int offset = j * mySize;
+            for (int i = 0; i <= j; i++) {
+                myCovariances[offset + i] = myDecay * myCovariances[offset + i] + returns[i] * weighted;
+            }
+        }
+
+        myCount++;
+        myUnweighted *= myDecay;
+    }
+
+    /**
+     * @return The number of observations added
+     */
+    public int count() {
+        return myCount;
+    }
+
+    /**
+     * @return Annualised covariances
+     * @throws IllegalStateException If no observations have been added
+     */
+    public Primitive64Matrix getCovariances() {
+
+        if (myCount == 0) {
+            throw new IllegalStateException("No observations!");
+        }
+
+        double factor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) myResolution.toDurationInMillis() / (1.0 - myUnweighted);
+
+        Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(mySize, mySize);
+
+        for (int j = 0; j < mySize; j++) {
+            int offset = j * mySize;
+            for (int i = 0; i <= j; i++) {
+                double covariance = factor * myCovariances[offset + i];
+                retVal.set(i, j, covariance);
+                retVal.set(j, i, covariance);
+            }
+        }
+
+        return retVal.get();
+    }
+
+    public double getDecay() {
+        return myDecay;
+    }
+
+    public CalendarDateUnit getResolution() {
+        return myResolution;
+    }
+
+    /**
+     * Removes all observations
+     */
+    public void reset() {
+        myCount = 0;
+        myUnweighted = 1.0;
+        Arrays.fill(myCovariances, 0.0);
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+}
@@ -24,21 +24,19 @@ package org.ojalgo.finance;
 import static org.ojalgo.function.constant.PrimitiveMath.*;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
 
 import org.ojalgo.array.Array1D;
 import org.ojalgo.function.aggregator.Aggregator;
 import org.ojalgo.function.constant.PrimitiveMath;
 import org.ojalgo.function.special.ErrorFunction;
 import org.ojalgo.matrix.Primitive64Matrix;
-import org.ojalgo.matrix.decomposition.Eigenvalue;
 import org.ojalgo.matrix.store.MatrixStore;
-import org.ojalgo.matrix.store.PhysicalStore;
 import org.ojalgo.matrix.store.Primitive64Store;
 import org.ojalgo.random.Deterministic;
 import org.ojalgo.random.RandomNumber;
@@ -127,7 +125,8 @@ public abstract class FinanceUtils {
 
         CoordinationSet<V> tmpCoordinator = new CoordinationSet<>(timeSeriesCollection).prune();
 
-        ArrayList<SampleSet> tmpSampleSets = new ArrayList<>();
+        double[][] tmpReturns = new double[timeSeriesCollection.size()][];
+        int tmpIndex = 0;
         for (CalendarDateSeries<V> tmpTimeSeries : timeSeriesCollection) {
             double[] values = tmpCoordinator.get(tmpTimeSeries.getName()).asPrimitive().toRawCopy1D();
             int tmpSize1 = values.length - 1;
@@ -137,32 +136,39 @@ public abstract class FinanceUtils {
             for (int i = 0; i < tmpSize1; i++) {
                 retVal[i] = PrimitiveMath.LOG.invoke(values[i + 1] / values[i]);
             }
-            SampleSet tmpMakeUsingLogarithmicChanges = SampleSet.wrap(Access1D.wrap(retVal));
-            tmpSampleSets.add(tmpMakeUsingLogarithmicChanges);
+            tmpReturns[tmpIndex++] = retVal;
         }
 
-        int tmpSize = timeSeriesCollection.size();
+        return FinanceUtils.makeCovarianceMatrix(tmpReturns, tmpCoordinator.getResolution());
+    }
 
-        Primitive64Matrix.DenseReceiver retValStore = Primitive64Matrix.FACTORY.makeDense(tmpSize, tmpSize);
+    /**
+     * The covariances are calculated as one (cache blocked and multithreaded) matrix product of the centred
+     * returns, rather than one pair of series at the time. The results are the same as those of
+     * {@link SampleSet#getCovariance(SampleSet)}, within floating point tolerance - also with fewer than 2
+     * returns per asset, when the covariances are NaN.
+     *
+     * @param returns One array of (logarithmic) returns per asset - all of the same length
+     * @param resolution The period of the returns
+     * @return Annualised covariances
+     */
+    public static Primitive64Matrix makeCovarianceMatrix(final double[][] returns, final CalendarDateUnit resolution) {
 
-        double tmpToYearFactor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) tmpCoordinator.getResolution().toDurationInMillis();
+        int tmpSize = returns.length;
 
-        SampleSet tmpRowSet;
-        SampleSet tmpColSet;
+        double tmpToYearFactor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) resolution.toDurationInMillis();
 
-        for (int j = 0; j < tmpSize; j++) {
+        double[] tmpCovariances = BlockedCovariance.covariances(returns, ForkJoinPool.commonPool());
 
-            tmpColSet = tmpSampleSets.get(j);
+        Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(tmpSize, tmpSize);
 
+        for (int j = 0; j < tmpSize; j++) {
             for (int i = 0; i < tmpSize; i++) {
-
-                tmpRowSet = tmpSampleSets.get(i);
-
-                retValStore.set(i, j, tmpToYearFactor * tmpRowSet.getCovariance(tmpColSet));
+                retVal.set(i, j, tmpToYearFactor * tmpCovariances[i + j * tmpSize]);
             }
         }
 
-        return retValStore.get();
+        return retVal.get();
     }
 
     /**
@@ -183,32 +189,16 @@ public abstract class FinanceUtils {
 
         CoordinationSet<N> tmpCoordinated = tmpUncoordinated.prune(tmpDataResolution);
 
-        Primitive64Matrix.DenseReceiver tmpMatrixBuilder = Primitive64Matrix.FACTORY.makeDense(tmpSize, tmpSize);
-
-        double tmpToYearFactor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) tmpDataResolution.toDurationInMillis();
-
-        SampleSet tmpSampleSet;
-        SampleSet[] tmpSampleSets = new SampleSet[tmpSize];
+        double[][] tmpReturns = new double[tmpSize][];
 
         for (int j = 0; j < tmpSize; j++) {
 
             PrimitiveSeries tmpPrimitiveSeries = tmpCoordinated.get(listOfTimeSeries.get(j).getName()).asPrimitive();
 
-            tmpSampleSet = SampleSet.wrap(tmpPrimitiveSeries.quotients().log().toDataSeries());
-
-            tmpMatrixBuilder.set(j, j, tmpToYearFactor * tmpSampleSet.getVariance());
-
-            for (int i = 0; i < j; i++) {
-
-                double tmpCovariance = tmpToYearFactor * tmpSampleSets[i].getCovariance(tmpSampleSet);
-                tmpMatrixBuilder.set(i, j, tmpCovariance);
-                tmpMatrixBuilder.set(j, i, tmpCovariance);
-            }
-
-            tmpSampleSets[j] = tmpSampleSet;
+            tmpReturns[j] = tmpPrimitiveSeries.quotients().log().toRawCopy1D();
         }
 
-        return tmpMatrixBuilder.get();
+        return FinanceUtils.makeCovarianceMatrix(tmpReturns, tmpDataResolution);
     }
 
     public static CalendarDateSeries<BigDecimal> makeDatePriceSeries(final double[] prices, final Date startDate, final CalendarDateUnit resolution) {
@@ -354,33 +344,18 @@ public abstract class FinanceUtils {
 
     /**
      * Will extract the correlation coefficients from the input covariance matrix. If "cleaning" is enabled
-     * small and negative eigenvalues of the covariance matrix will be replaced with a new minimal value.
+     * small and negative eigenvalues of the covariance matrix will be replaced with a new minimal value. To
+     * repair many matrices keep and reuse a {@link CovarianceRepair} instead.
      */
     public static Primitive64Matrix toCorrelations(final Access2D<?> covariances, final boolean clean) {
 
-        int size = Math.toIntExact(Math.min(covariances.countRows(), covariances.countColumns()));
-
-        MatrixStore<Double> covarianceMtrx = Primitive64Store.FACTORY.makeWrapper(covariances);
-
         if (clean) {
+            return new CovarianceRepair().toCorrelations(covariances);
+        }
 
-            Eigenvalue<Double> evd = Eigenvalue.PRIMITIVE.make(covarianceMtrx, true);
-            evd.decompose(covarianceMtrx);
-
-            MatrixStore<Double> mtrxV = evd.getV();
-            PhysicalStore<Double> mtrxD = evd.getD().copy();
-
-            double largest = evd.getEigenvalues().get(0).norm();
-            double limit = largest * size * PrimitiveMath.RELATIVELY_SMALL;
-
-            for (int ij = 0; ij < size; ij++) {
-                if (mtrxD.doubleValue(ij, ij) < limit) {
-                    mtrxD.set(ij, ij, limit);
-                }
-            }
+        int size = Math.toIntExact(Math.min(covariances.countRows(), covariances.countColumns()));
 
-            covarianceMtrx = mtrxV.multiply(mtrxD).multiply(mtrxV.transpose());
-        }
+        MatrixStore<Double> covarianceMtrx = Primitive64Store.FACTORY.makeWrapper(covariances);
 
         Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(size, size);
 
@@ -0,0 +1,246 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.Arrays;
+
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Sample covariances of a set of assets that are updated one observation (one return per asset) at the time
+ * - Welford's algorithm generalised to co-moments. Each update is O(n^2), independent of the number of
+ * observations, so refreshing the covariances when a new return arrives does not require recomputing them
+ * from the full history.
+ * <p>
+ * With a window the oldest observation is dropped when a new one is added to a full window. To do that the
+ * observations in the window are retained (n x window doubles). Without a window nothing but the means and
+ * co-moments is retained, and the estimate covers all observations added so far.
+ * <p>
+ * The covariances are the same as those from {@link FinanceUtils#makeCovarianceMatrix(double[][], CalendarDateUnit)}
+ * for the same returns, within floating point tolerance. Use them with
+ * {@link org.ojalgo.finance.portfolio.MarketEquilibrium} or {@link org.ojalgo.finance.portfolio.PortfolioContext}
+ * the same way.
+ *
+ * @author apete
+ */
+public final class RollingCovariance {
+
+    private int myCount = 0;
+    /**
+     * Sums of products of deviations from the means - only the upper half (i &lt;= j) of the column-major nxn
+     * array is maintained.
+     */
+    private final double[] myCoMoments;
+    private final double[] myMeans;
+    /**
+     * Ring buffer of the observations in the window, or null when there is no window
+     */
+    private final double[][] myObservations;
+    private int myOldest = 0;
+    private final CalendarDateUnit myResolution;
+    private final int mySize;
+    /**
+     * Deviations from the means of the observation being added or dropped
+     */
+    private final double[] myWork;
+
+    /**
+     * No window - the estimate covers all observations added.
+     *
+     * @param size The number of assets
+     * @param resolution The period of the returns
+     */
+    public RollingCovariance(final int size, final CalendarDateUnit resolution) {
+        this(size, 0, resolution);
+    }
+
+    /**
+     * @param size The number of assets
+     * @param window The (maximum) number of observations in the estimate, or 0 for no window
+     * @param resolution The period of the returns
+     */
+    public RollingCovariance(final int size, final int window, final CalendarDateUnit resolution) {
+
+        super();
+
+        if (size < 1) {
+            throw new IllegalArgumentException("Need at least 1 asset!");
+        }
+        if (window < 0 || window == 1) {
+            throw new IllegalArgumentException("The window must be 0 (none) or at least 2!");
+        }
+
+        mySize = size;
+        myResolution = resolution;
+
+        myMeans = new double[size];
+        myCoMoments = new double[size * size];
+        myWork = new double[size];
+        myObservations = window > 0 ? new double[window][] : null;
+    }
+
+    /**
+     * Adds one observation. If there is a window and it is full, the oldest observation is dropped first.
+     *
+     * @param returns One return per asset
+     */
+    public void add(final double... returns) {
+
+        if (returns.length != mySize) {
+            throw new IllegalArgumentException("Expected " + mySize + " returns, got " + returns.length + "!");
+        }
+
+        if (myObservations != null) {
+            if (myCount == myObservations.length) {
+                this.drop();
+            }
+            int index = (myOldest + myCount) % myObservations.length;
+            if (myObservations[index] == null) {
+                myObservations[index] = new double[mySize];
+            }
+            System.arraycopy(returns, 0, myObservations[index], 0, mySize);
+        }
+
+        myCount++;
+
+        for (int i = 0; i < mySize; i++) {
+            double delta = returns[i] - myMeans[i];
+            myWork[i] = delta;
+            myMeans[i] += delta / myCount;
+        }
+
+        // C += (x - oldMean)(x - newMean)^T, and x - newMean = (x - oldMean)(count - 1)/count
+        this.update((myCount - 1.0) / myCount);
+    }
+
+    /**
+     * @return The number of observations currently in the estimate
+     */
+    public int count() {
+        return myCount;
+    }
+
+    /**
+     * Drops the oldest observation in the window - the exact reverse of when it was added.
+     *
+     * @throws IllegalStateException If there is no window (nothing is retained), or it is empty
+     */
+    public void drop() {
+
+        if (myObservations == null) {
+            throw new IllegalStateException("Can only drop observations when there is a window!");
+        }
+        if (myCount == 0) {
+            throw new IllegalStateException("No observations to drop!");
+        }
+
+        double[] oldest = myObservations[myOldest];
+        myOldest = (myOldest + 1) % myObservations.length;
+
+        if (--myCount == 0) {
+            this.reset();
+            return;
+        }
+
+        for (int i = 0; i < mySize; i++) {
+            double delta = oldest[i] - myMeans[i];
+            myWork[i] = delta;
+            myMeans[i] -= delta / myCount;
+        }
+
+        // C -= (x - newMean)(x - oldMean)^T, and x - newMean = (x - oldMean)(count + 1)/count
+        this.update(-(myCount + 1.0) / myCount);
+    }
+
+    /**
+     * @return Annualised covariances of the observations currently in the estimate
+     * @throws IllegalStateException If there are fewer than 2 observations
+     */
+    public Primitive64Matrix getCovariances() {
+
+        if (myCount < 2) {
+            throw new IllegalStateException("Need at least 2 observations!");
+        }
+
+        double factor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) myResolution.toDurationInMillis() / (myCount - 1);
+
+        Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(mySize, mySize);
+
+        for (int j = 0; j < mySize; j++) {
+            int offset = j * mySize;
+            for (int i = 0; i <= j; i++) {
+                double covariance = factor * myCoMoments[offset + i];
+                retVal.set(i, j, covariance);
+                retVal.set(j, i, covariance);
+            }
+        }
+
+        return retVal.get();
+    }
+
+    /**
+     * @return The mean return, per period of the resolution, of one asset
+     */
+    public double getMean(final int index) {
+        return myMeans[index];
+    }
+
+    public CalendarDateUnit getResolution() {
+        return myResolution;
+    }
+
+    /**
+     * @return true if there is a window, and it is full
+     */
+    public boolean isFull() {
+        return myObservations != null && myCount == myObservations.length;
+    }
+
+    /**
+     * Removes all observations
+     */
+    public void reset() {
+        myCount = 0;
+        myOldest = 0;
+        Arrays.fill(myMeans, 0.0);
+        Arrays.fill(myCoMoments, 0.0);
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Symmetric rank-1 update of the upper half of the co-moments: C += scale * w * w^T
+     */
+    private void update(final double scale) {
+        for (int j = 0; j < mySize; j++) {
+            double scaled = scale * myWork[j];
+            int offset = j * mySize;
+            for (int i = 0; i <= j; i++) {
+                myCoMoments[offset + i] += myWork[i] * scaled;
+            }
+        }
+    }
+
+}
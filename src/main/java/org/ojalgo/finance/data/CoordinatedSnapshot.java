@@ -0,0 +1,327 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.series.BasicSeries;
+import org.ojalgo.series.primitive.CoordinatedSet;
+
+/**
+ * An aligned multi-asset price matrix - one shared date index and one column of prices per symbol - that
+ * can be written to, and reloaded from, a compact binary file.
+ * <p>
+ * The file layout is a header (magic, version, number of columns and number of rows), the symbols, the
+ * epoch days and then the prices column by column. It ends with a CRC32 checksum of everything before it.
+ * A snapshot read from file is backed directly by the memory mapped file; nothing is copied until a
+ * {@link BasicSeries} or {@link CoordinatedSet} is requested.
+ *
+ * @author apete
+ */
+public final class CoordinatedSnapshot {
+
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4;
+    private static final int MAGIC = 0x6F6A4353; // "ojCS"
+    private static final int VERSION = 1;
+
+    /**
+     * Aligns the series to the dates they all have in common. The series names are used as symbols.
+     */
+    public static CoordinatedSnapshot of(final List<? extends BasicSeries<LocalDate, ?>> series) {
+
+        int nbColumns = series.size();
+
+        List<LocalDate> common = new ArrayList<>();
+        if (nbColumns > 0) {
+            for (LocalDate key : series.get(0).keySet()) {
+                boolean all = true;
+                for (int j = 1; all && (j < nbColumns); j++) {
+                    all = series.get(j).containsKey(key);
+                }
+                if (all) {
+                    common.add(key);
+                }
+            }
+        }
+
+        int nbRows = common.size();
+
+        String[] symbols = new String[nbColumns];
+        IntBuffer days = IntBuffer.allocate(nbRows);
+        DoubleBuffer[] columns = new DoubleBuffer[nbColumns];
+
+        for (int i = 0; i < nbRows; i++) {
+            days.put(i, (int) common.get(i).toEpochDay());
+        }
+
+        for (int j = 0; j < nbColumns; j++) {
+            BasicSeries<LocalDate, ?> column = series.get(j);
+            symbols[j] = column.getName() != null ? column.getName() : Integer.toString(j);
+            columns[j] = DoubleBuffer.allocate(nbRows);
+            for (int i = 0; i < nbRows; i++) {
+                columns[j].put(i, column.doubleValue(common.get(i)));
+            }
+        }
+
+        return new CoordinatedSnapshot(symbols, days, columns);
+    }
+
+    /**
+     * Memory maps the file, and verifies its checksum.
+     *
+     * @throws IOException If the file can't be read, or is not a valid (complete and uncorrupted) snapshot
+     */
+    public static CoordinatedSnapshot read(final File file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long length = channel.size();
+            if ((length < HEADER_SIZE + Long.BYTES) || (length > Integer.MAX_VALUE)) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, length);
+
+            int end = (int) length - Long.BYTES;
+
+            CRC32 checksum = new CRC32();
+            ByteBuffer content = buffer.duplicate();
+            // Cast to Buffer - the covariant overrides (Java 9+) don't exist on Java 8
+            ((Buffer) content).limit(end);
+            checksum.update(content);
+            if (checksum.getValue() != buffer.getLong(end)) {
+                throw new IOException("Checksum mismatch: " + file);
+            }
+
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            int nbColumns = buffer.getInt();
+            int nbRows = buffer.getInt();
+
+            String[] symbols = new String[nbColumns];
+            for (int j = 0; j < nbColumns; j++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                symbols[j] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            if (end != CoordinatedSnapshot.length(buffer.position(), nbColumns, nbRows)) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+
+            ((Buffer) buffer).position(CoordinatedSnapshot.align(buffer.position()));
+            IntBuffer days = CoordinatedSnapshot.slice(buffer, nbRows * Integer.BYTES).asIntBuffer();
+
+            ((Buffer) buffer).position(CoordinatedSnapshot.align(buffer.position()));
+            DoubleBuffer[] columns = new DoubleBuffer[nbColumns];
+            for (int j = 0; j < nbColumns; j++) {
+                columns[j] = CoordinatedSnapshot.slice(buffer, nbRows * Double.BYTES).asDoubleBuffer();
+            }
+
+            return new CoordinatedSnapshot(symbols, days, columns);
+        }
+    }
+
+    /**
+     * Pads to a multiple of 8 bytes so that the int and double views are aligned.
+     */
+    private static int align(final int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static long length(final int symbolsEnd, final int nbColumns, final int nbRows) {
+        long daysEnd = CoordinatedSnapshot.align(symbolsEnd) + (nbRows * (long) Integer.BYTES);
+        return ((daysEnd + 7L) & ~7L) + (nbColumns * (long) nbRows * Double.BYTES);
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final int size) {
+        ByteBuffer retVal = buffer.slice();
+        ((Buffer) retVal).limit(size);
+        ((Buffer) buffer).position(buffer.position() + size);
+        return retVal;
+    }
+
+    private final DoubleBuffer[] myColumns;
+    private final IntBuffer myEpochDays;
+    private final String[] mySymbols;
+
+    private CoordinatedSnapshot(final String[] symbols, final IntBuffer epochDays, final DoubleBuffer[] columns) {
+        super();
+        mySymbols = symbols;
+        myEpochDays = epochDays;
+        myColumns = columns;
+    }
+
+    public int countColumns() {
+        return mySymbols.length;
+    }
+
+    public int countRows() {
+        return myEpochDays.limit();
+    }
+
+    public double doubleValue(final int row, final int column) {
+        return myColumns[column].get(row);
+    }
+
+    public LocalDate getDate(final int row) {
+        return LocalDate.ofEpochDay(myEpochDays.get(row));
+    }
+
+    public int getEpochDay(final int row) {
+        return myEpochDays.get(row);
+    }
+
+    /**
+     * @return The column as a (named) series
+     */
+    public BasicSeries<LocalDate, Double> getSeries(final int column) {
+
+        BasicSeries<LocalDate, Double> retVal = BasicSeries.LOCAL_DATE.build(Primitive64Array.FACTORY);
+        retVal.name(mySymbols[column]);
+
+        DoubleBuffer values = myColumns[column];
+        for (int i = 0, limit = this.countRows(); i < limit; i++) {
+            retVal.put(LocalDate.ofEpochDay(myEpochDays.get(i)), values.get(i));
+        }
+
+        return retVal;
+    }
+
+    public String getSymbol(final int column) {
+        return mySymbols[column];
+    }
+
+    public List<String> getSymbols() {
+        List<String> retVal = new ArrayList<>(mySymbols.length);
+        Collections.addAll(retVal, mySymbols);
+        return Collections.unmodifiableList(retVal);
+    }
+
+    /**
+     * The series are already aligned, so building the {@link CoordinatedSet} involves no pruning.
+     */
+    public CoordinatedSet<LocalDate> toCoordinatedSet() {
+        CoordinatedSet.Builder<LocalDate> builder = CoordinatedSet.builder();
+        for (int j = 0; j < mySymbols.length; j++) {
+            BasicSeries<LocalDate, Double> series = this.getSeries(j);
+            builder.add(() -> series);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        int nbRows = this.countRows();
+        if (nbRows == 0) {
+            return "CoordinatedSnapshot " + mySymbols.length + "x0";
+        }
+        return "CoordinatedSnapshot " + mySymbols.length + "x" + nbRows + " " + this.getDate(0) + " - " + this.getDate(nbRows - 1);
+    }
+
+    /**
+     * Writes to a temporary file that is then moved to replace the target - a concurrent reader never
+     * sees a partially written file.
+     */
+    public void write(final File file) throws IOException {
+
+        int nbColumns = mySymbols.length;
+        int nbRows = this.countRows();
+
+        byte[][] symbols = new byte[nbColumns][];
+        int symbolsEnd = HEADER_SIZE;
+        for (int j = 0; j < nbColumns; j++) {
+            symbols[j] = mySymbols[j].getBytes(StandardCharsets.UTF_8);
+            if (symbols[j].length > 0xFFFF) {
+                throw new IllegalStateException("Symbol too long!");
+            }
+            symbolsEnd += Short.BYTES + symbols[j].length;
+        }
+
+        long end = CoordinatedSnapshot.length(symbolsEnd, nbColumns, nbRows);
+        if (end + Long.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot too large!");
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+
+        File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0L, end + Long.BYTES);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(nbColumns);
+            buffer.putInt(nbRows);
+            for (int j = 0; j < nbColumns; j++) {
+                buffer.putShort((short) symbols[j].length);
+                buffer.put(symbols[j]);
+            }
+
+            ((Buffer) buffer).position(CoordinatedSnapshot.align(buffer.position()));
+            for (int i = 0; i < nbRows; i++) {
+                buffer.putInt(myEpochDays.get(i));
+            }
+
+            ((Buffer) buffer).position(CoordinatedSnapshot.align(buffer.position()));
+            for (int j = 0; j < nbColumns; j++) {
+                DoubleBuffer values = myColumns[j];
+                for (int i = 0; i < nbRows; i++) {
+                    buffer.putDouble(values.get(i));
+                }
+            }
+
+            CRC32 checksum = new CRC32();
+            ByteBuffer content = buffer.duplicate();
+            ((Buffer) content).flip();
+            checksum.update(content);
+            buffer.putLong(checksum.getValue());
+
+            buffer.force();
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
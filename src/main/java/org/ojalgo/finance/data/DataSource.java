@@ -21,69 +21,155 @@
  */
 package org.ojalgo.finance.data;
 
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 
 import org.ojalgo.array.DenseArray;
 import org.ojalgo.array.Primitive64Array;
 import org.ojalgo.finance.data.fetcher.AlphaVantageFetcher;
+import org.ojalgo.finance.data.fetcher.AlphaVantageIntradayFetcher;
+import org.ojalgo.finance.data.fetcher.ArchiveFetcher;
+import org.ojalgo.finance.data.fetcher.BatchDataFetcher;
 import org.ojalgo.finance.data.fetcher.DataFetcher;
 import org.ojalgo.finance.data.fetcher.IEXTradingFetcher;
+import org.ojalgo.finance.data.fetcher.Validators;
 import org.ojalgo.finance.data.fetcher.YahooSession;
 import org.ojalgo.finance.data.parser.AlphaVantageParser;
+import org.ojalgo.finance.data.parser.BatchParser;
+import org.ojalgo.finance.data.parser.DatePriceParser;
 import org.ojalgo.finance.data.parser.IEXTradingParser;
+import org.ojalgo.finance.data.parser.IntradayParser;
 import org.ojalgo.finance.data.parser.YahooParser;
 import org.ojalgo.netio.BasicLogger;
-import org.ojalgo.netio.BasicParser;
 import org.ojalgo.series.BasicSeries;
 import org.ojalgo.series.CalendarDateSeries;
 import org.ojalgo.series.primitive.CoordinatedSet;
 import org.ojalgo.type.CalendarDate;
+import org.ojalgo.type.CalendarDateDuration;
 import org.ojalgo.type.CalendarDateUnit;
 
 public final class DataSource implements FinanceData {
 
+    /**
+     * Builds a {@link CoordinatedSet} from any number of sources. Either in sequence, {@link #get()}, or
+     * asynchronously fetching all sources concurrently, {@link #getAsync()}.
+     */
     public static final class Coordinated implements Supplier<CoordinatedSet<LocalDate>> {
 
-        private final CoordinatedSet.Builder<LocalDate> myBuilder = CoordinatedSet.builder();
         private final SourceCache myCache = new SourceCache(CalendarDateUnit.DAY);
+        private Executor myExecutor = ForkJoinPool.commonPool();
+        private int myProviderLimit = Integer.MAX_VALUE;
+        private final Map<String, ProviderQueue> myQueues = new ConcurrentHashMap<>();
         private CalendarDateUnit myResolution = CalendarDateUnit.MONTH;
-        private final YahooSession myYahooSession = new YahooSession();
+        private final List<Supplier<FinanceData>> mySources = new ArrayList<>();
+        private final YahooSession myYahooSession = YahooSession.shared();
 
         public DataSource.Coordinated add(FinanceData data) {
-            myBuilder.add(() -> myCache.get(data));
+            mySources.add(() -> data);
             return this;
         }
 
         public DataSource.Coordinated add(FinanceData primary, FinanceData secondary) {
             myCache.register(primary, secondary);
-            myBuilder.add(() -> myCache.get(primary));
+            mySources.add(() -> primary);
             return this;
         }
 
         public DataSource.Coordinated addAlphaVantage(String symbol, String apiKey) {
-            myBuilder.add(() -> myCache.get(DataSource.newAlphaVantage(symbol, myResolution, apiKey, true)));
+            mySources.add(() -> DataSource.newAlphaVantage(symbol, myResolution, apiKey, true));
             return this;
         }
 
         public DataSource.Coordinated addIEXTrading(String symbol) {
-            myBuilder.add(() -> myCache.get(DataSource.newIEXTrading(symbol)));
+            mySources.add(() -> DataSource.newIEXTrading(symbol));
             return this;
         }
 
         public DataSource.Coordinated addYahoo(String symbol) {
-            myBuilder.add(() -> myCache.get(DataSource.newYahoo(myYahooSession, symbol, myResolution)));
+            mySources.add(() -> DataSource.newYahoo(myYahooSession, symbol, myResolution));
             return this;
         }
 
+        /**
+         * The executor used by {@link #getAsync()}. The default is {@link ForkJoinPool#commonPool()} - fetching
+         * is mostly waiting for I/O, so for larger sets of sources a dedicated (larger) thread pool is
+         * preferable.
+         */
+        public DataSource.Coordinated executor(Executor executor) {
+            myExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Sources from the same provider are fetched with batch requests when the provider supports it, see
+         * {@link BatchDataFetcher}.
+         */
         public CoordinatedSet<LocalDate> get() {
-            return myBuilder.build();
+            CoordinatedSet.Builder<LocalDate> builder = CoordinatedSet.builder();
+            for (BasicSeries<LocalDate, Double> series : myCache.getAll(this.getSources())) {
+                builder.add(() -> series);
+            }
+            return builder.build();
+        }
+
+        /**
+         * Fetches all sources concurrently on the {@link #executor(Executor)}, respecting the
+         * {@link #providerLimit(int)}, and coordinates the series once all have arrived. Fetches beyond the
+         * limit are queued rather than blocking executor threads.
+         */
+        public CompletableFuture<CoordinatedSet<LocalDate>> getAsync() {
+            return this.getAllAsync().thenApply(all -> {
+                CoordinatedSet.Builder<LocalDate> builder = CoordinatedSet.builder();
+                for (BasicSeries<LocalDate, Double> series : all) {
+                    builder.add(() -> series);
+                }
+                return builder.build();
+            });
+        }
+
+        /**
+         * The same sources as {@link #get()}, but as a {@link CoordinatedSnapshot} that can be written to file
+         * and later reloaded - skipping both the fetching and the coordination. Note that the snapshot only
+         * has the dates that all the series have (see {@link CoordinatedSnapshot#of(List)}), while
+         * {@link #get()} coordinates the series over their common date range.
+         */
+        public CoordinatedSnapshot getSnapshot() {
+            return CoordinatedSnapshot.of(myCache.getAll(this.getSources()));
+        }
+
+        /**
+         * The maximum number of concurrent fetches per provider (as identified by
+         * {@link FinanceData#getProvider()}) when using {@link #getAsync()}. The default is no limit.
+         */
+        public DataSource.Coordinated providerLimit(int limit) {
+            myProviderLimit = limit;
+            myQueues.clear();
+            return this;
         }
 
         public DataSource.Coordinated resolution(CalendarDateUnit resolution) {
@@ -91,6 +177,136 @@ public final class DataSource implements FinanceData {
             return this;
         }
 
+        /**
+         * The (uncoordinated) series, in the same order as the sources, once all have arrived.
+         */
+        CompletableFuture<List<BasicSeries<LocalDate, Double>>> getAllAsync() {
+
+            List<CompletableFuture<BasicSeries<LocalDate, Double>>> futures = new ArrayList<>(mySources.size());
+            for (Supplier<FinanceData> source : mySources) {
+                futures.add(this.fetch(source.get()));
+            }
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(all -> {
+                List<BasicSeries<LocalDate, Double>> retVal = new ArrayList<>(futures.size());
+                for (CompletableFuture<BasicSeries<LocalDate, Double>> future : futures) {
+                    retVal.add(future.join());
+                }
+                return retVal;
+            });
+        }
+
+        private List<FinanceData> getSources() {
+            List<FinanceData> retVal = new ArrayList<>(mySources.size());
+            for (Supplier<FinanceData> source : mySources) {
+                retVal.add(source.get());
+            }
+            return retVal;
+        }
+
+        private CompletableFuture<BasicSeries<LocalDate, Double>> fetch(FinanceData data) {
+
+            if (myProviderLimit == Integer.MAX_VALUE) {
+                return CompletableFuture.supplyAsync(() -> myCache.get(data), myExecutor);
+            }
+
+            ProviderQueue queue = myQueues.computeIfAbsent(data.getProvider(), provider -> new ProviderQueue(myProviderLimit));
+            return queue.submit(() -> myCache.get(data), myExecutor);
+        }
+
+    }
+
+    /**
+     * Counts the number of characters (not bytes) read
+     */
+    private static final class CountingReader extends FilterReader {
+
+        long chars = 0L;
+
+        CountingReader(final Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int retVal = super.read();
+            if (retVal >= 0) {
+                chars++;
+            }
+            return retVal;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            int retVal = super.read(cbuf, off, len);
+            if (retVal > 0) {
+                chars += retVal;
+            }
+            return retVal;
+        }
+
+    }
+
+    /**
+     * Limits the number of concurrently running tasks without blocking any threads. Tasks beyond the limit
+     * are queued, and submitted to the executor as running ones complete.
+     */
+    private static final class ProviderQueue {
+
+        private final int myLimit;
+        private final Queue<Runnable> myQueue = new ArrayDeque<>();
+        private int myRunning = 0;
+
+        ProviderQueue(int limit) {
+            super();
+            myLimit = limit;
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<T> task, Executor executor) {
+
+            CompletableFuture<T> retVal = new CompletableFuture<>();
+
+            Runnable start = () -> CompletableFuture.supplyAsync(task, executor).whenComplete((result, cause) -> {
+                this.next();
+                if (cause != null) {
+                    retVal.completeExceptionally(cause);
+                } else {
+                    retVal.complete(result);
+                }
+            });
+
+            boolean run;
+            synchronized (this) {
+                run = myRunning < myLimit;
+                if (run) {
+                    myRunning++;
+                } else {
+                    myQueue.add(start);
+                }
+            }
+            if (run) {
+                start.run();
+            }
+
+            return retVal;
+        }
+
+        /**
+         * A task completed - start the next queued one, if any.
+         */
+        private void next() {
+            Runnable next;
+            synchronized (this) {
+                next = myQueue.poll();
+                if (next == null) {
+                    myRunning--;
+                }
+            }
+            if (next != null) {
+                next.run();
+            }
+        }
+
     }
 
     public static Coordinated coordinated() {
@@ -111,23 +327,206 @@ public final class DataSource implements FinanceData {
         return new DataSource(fetcher, parser);
     }
 
+    /**
+     * Replays previously recorded data from a local archive - no network access.
+     *
+     * @param directory The archive directory
+     * @param provider One of "AlphaVantage", "IEXTrading" or "Yahoo" (determines the parser)
+     * @see ArchiveFetcher
+     */
+    public static DataSource newArchive(File directory, String provider, String symbol, CalendarDateUnit resolution) {
+        ArchiveFetcher fetcher = new ArchiveFetcher(directory, provider, symbol, resolution);
+        return new DataSource(fetcher, DataSource.newParser(provider));
+    }
+
+    /**
+     * Intraday bars - 1, 5, 15, 30 or 60 minutes.
+     */
+    public static IntradaySource newAlphaVantageIntraday(String symbol, CalendarDateDuration interval, String apiKey) {
+        AlphaVantageIntradayFetcher fetcher = new AlphaVantageIntradayFetcher(symbol, interval, apiKey, false);
+        IntradayParser parser = new IntradayParser(ZoneId.of("America/New_York"));
+        return new IntradaySource(fetcher, parser);
+    }
+
+    /**
+     * An executor suitable for many concurrent (I/O bound) loads using the async methods, e.g.
+     * {@link #getPriceSeriesAsync(Executor)}. One virtual thread per task when running on a JVM that has them
+     * (Java 21+), otherwise a cached pool of daemon threads. Remember to shut it down.
+     */
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException cause) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread retVal = new Thread(runnable, "DataSource-Async");
+                retVal.setDaemon(true);
+                return retVal;
+            });
+        }
+    }
+
+    /**
+     * Fetches the data of those keys that are DataSource instances with a {@link BatchDataFetcher}, and of
+     * which there are at least 2 from the same provider (with the same resolution), using batch requests.
+     * Keys not in the returned map (not batchable, or not in the batch response) have to be fetched one by
+     * one.
+     */
+    static Map<FinanceData, PriceColumns> fetchBatched(Collection<? extends FinanceData> keys) {
+
+        Map<String, List<DataSource>> groups = new LinkedHashMap<>();
+        for (FinanceData key : keys) {
+            if (key instanceof DataSource) {
+                DataSource source = (DataSource) key;
+                BatchDataFetcher batch = source.myFetcher.getBatchFetcher();
+                if (batch != null) {
+                    String group = batch.getProvider() + "-" + source.getResolution() + "-" + source.myParser.getClass().getName();
+                    groups.computeIfAbsent(group, g -> new ArrayList<>()).add(source);
+                }
+            }
+        }
+
+        Map<FinanceData, PriceColumns> retVal = new HashMap<>();
+
+        for (List<DataSource> group : groups.values()) {
+            if (group.size() >= 2) {
+                BatchDataFetcher batch = group.get(0).myFetcher.getBatchFetcher();
+                int maxSymbols = Math.max(1, batch.getMaxSymbols());
+                for (int from = 0; from < group.size(); from += maxSymbols) {
+                    DataSource.fetchBatch(batch, group.subList(from, Math.min(from + maxSymbols, group.size())), retVal);
+                }
+            }
+        }
+
+        return retVal;
+    }
+
     public static DataSource newIEXTrading(String symbol) {
-        IEXTradingFetcher fetcher = new IEXTradingFetcher(symbol);
+        return DataSource.newIEXTrading(symbol, false);
+    }
+
+    /**
+     * @param batch Allow batch requests when fetched together with other (batch enabled) IEX Trading
+     *        sources, see {@link IEXTradingFetcher#IEXTradingFetcher(String, boolean)}
+     */
+    public static DataSource newIEXTrading(String symbol, boolean batch) {
+        IEXTradingFetcher fetcher = new IEXTradingFetcher(symbol, batch);
         IEXTradingParser parser = new IEXTradingParser();
         return new DataSource(fetcher, parser);
     }
 
+    /**
+     * Record mode - fetches using the live data source, and records the responses to a local archive that
+     * can later be replayed using {@link #newArchive(File, String, String, CalendarDateUnit)}.
+     */
+    public static DataSource newRecording(DataSource live, File directory) {
+        ArchiveFetcher fetcher = ArchiveFetcher.recording(live.myFetcher, directory);
+        return new DataSource(fetcher, live.myParser);
+    }
+
     public static DataSource newYahoo(YahooSession session, String symbol, CalendarDateUnit resolution) {
         YahooSession.Fetcher fetcher = session.newFetcher(symbol, resolution);
         YahooParser parser = new YahooParser();
         return new DataSource(fetcher, parser);
     }
 
+    /**
+     * Fetches one batch (of at most {@link BatchDataFetcher#getMaxSymbols()}) and demultiplexes the response
+     * into one {@link PriceColumns} per source. Sources without any rows in the response are not added to the
+     * results.
+     */
+    private static void fetchBatch(BatchDataFetcher batch, List<DataSource> sources, Map<FinanceData, PriceColumns> results) {
+
+        Map<String, DataSource> bySymbol = new LinkedHashMap<>();
+        for (DataSource source : sources) {
+            bySymbol.putIfAbsent(source.getSymbol().toUpperCase(Locale.ROOT), source);
+        }
+        Map<String, PriceColumns> columns = new HashMap<>();
+        for (String symbol : bySymbol.keySet()) {
+            columns.put(symbol, new PriceColumns());
+        }
+
+        String provider = batch.getProvider();
+        String symbols = String.join(",", bySymbol.keySet());
+
+        try {
+
+            long started = System.nanoTime();
+
+            Reader reader = batch.getStreamOfCSV(new ArrayList<>(bySymbol.keySet()), sources.get(0).getResolution());
+            if (reader == null) {
+                throw new IllegalStateException("No response!");
+            }
+
+            Instrumentation.LISTENER.onFetch(provider, symbols, System.nanoTime() - started);
+
+            CountingReader counting = new CountingReader(reader);
+            started = System.nanoTime();
+            new BatchParser(sources.get(0).myParser).parse(counting, symbol -> columns.get(symbol.toUpperCase(Locale.ROOT)));
+
+            int rows = 0;
+            for (Entry<String, DataSource> entry : bySymbol.entrySet()) {
+                PriceColumns parsed = columns.get(entry.getKey());
+                if (!parsed.isEmpty()) {
+                    parsed.sort();
+                    parsed.trim();
+                    results.put(entry.getValue(), parsed);
+                    rows += parsed.size();
+                }
+            }
+
+            Instrumentation.LISTENER.onParse(provider, symbols, counting.chars, rows, System.nanoTime() - started);
+
+        } catch (Exception cause) {
+            Instrumentation.LISTENER.onFailure(provider, symbols, cause);
+            BasicLogger.error("Batch fetch problem for {}: {}", provider, cause.getMessage());
+        }
+    }
+
+    /**
+     * The providers return the data either in ascending (Yahoo) or descending (AlphaVantage) order. Detect
+     * which, and only reverse or sort if necessary.
+     */
+    private static void sort(List<DatePrice> prices) {
+
+        boolean ascending = true;
+        boolean descending = true;
+
+        for (int i = 1, limit = prices.size(); (ascending || descending) && (i < limit); i++) {
+            int comparison = prices.get(i).compareTo(prices.get(i - 1));
+            if (comparison < 0) {
+                ascending = false;
+            } else if (comparison > 0) {
+                descending = false;
+            }
+        }
+
+        if (ascending) {
+            return;
+        } else if (descending) {
+            Collections.reverse(prices);
+        } else {
+            Collections.sort(prices);
+        }
+    }
+
+    private static DatePriceParser<? extends DatePrice> newParser(String provider) {
+        switch (provider) {
+        case "AlphaVantage":
+            return new AlphaVantageParser();
+        case "IEXTrading":
+            return new IEXTradingParser();
+        case "Yahoo":
+            return new YahooParser();
+        default:
+            throw new IllegalArgumentException("Unknown provider: " + provider);
+        }
+    }
+
     private final DataFetcher myFetcher;
 
-    private final BasicParser<? extends DatePrice> myParser;
+    private final DatePriceParser<? extends DatePrice> myParser;
 
-    DataSource(DataFetcher fetcher, BasicParser<? extends DatePrice> parser) {
+    DataSource(DataFetcher fetcher, DatePriceParser<? extends DatePrice> parser) {
         super();
         myFetcher = fetcher;
         myParser = parser;
@@ -174,8 +573,9 @@ public final class DataSource implements FinanceData {
 
         CalendarDateSeries<Double> retVal = new CalendarDateSeries<>(resolution);
 
-        for (DatePrice datePrice : this.getHistoricalPrices()) {
-            retVal.put(CalendarDate.valueOf(datePrice.key.atTime(time).atZone(zoneId)), datePrice.getPrice());
+        PriceColumns priceColumns = this.getPriceColumns();
+        for (int i = 0, limit = priceColumns.size(); i < limit; i++) {
+            retVal.put(CalendarDate.valueOf(priceColumns.getDate(i).atTime(time).atZone(zoneId)), priceColumns.getPrice(i));
         }
 
         return retVal;
@@ -188,41 +588,104 @@ public final class DataSource implements FinanceData {
     public List<DatePrice> getHistoricalPrices() {
         try {
             final ArrayList<DatePrice> retVal = new ArrayList<>();
-            myParser.parse(myFetcher.getStreamOfCSV(), row -> retVal.add(row));
-            Collections.sort(retVal);
+            long started = System.nanoTime();
+            CountingReader reader = this.fetched(myFetcher.getStreamOfCSV(), started);
+            started = System.nanoTime();
+            myParser.parse(reader, row -> retVal.add(row));
+            DataSource.sort(retVal);
+            Instrumentation.LISTENER.onParse(this.getProvider(), this.getSymbol(), reader.chars, retVal.size(), System.nanoTime() - started);
             return retVal;
         } catch (final Exception exception) {
-            exception.printStackTrace();
-            BasicLogger.error("Fetch problem for {}!", myFetcher.getClass().getSimpleName());
-            BasicLogger.error("Symbol & Resolution: {} & {}", myFetcher.getSymbol(), myFetcher.getResolution());
+            this.failed(exception);
             return Collections.emptyList();
         }
     }
 
     public BasicSeries.NaturallySequenced<LocalDate, Double> getLocalDateSeries() {
-        return this.getLocalDateSeries(this.getHistoricalPrices(), myFetcher.getResolution(), Primitive64Array.FACTORY);
+        return this.getLocalDateSeries(this.getPriceColumns(), myFetcher.getResolution(), Primitive64Array.FACTORY);
     }
 
     public BasicSeries.NaturallySequenced<LocalDate, Double> getLocalDateSeries(CalendarDateUnit resolution) {
-        return this.getLocalDateSeries(this.getHistoricalPrices(), resolution, Primitive64Array.FACTORY);
+        return this.getLocalDateSeries(this.getPriceColumns(), resolution, Primitive64Array.FACTORY);
     }
 
     public BasicSeries.NaturallySequenced<LocalDate, Double> getLocalDateSeries(CalendarDateUnit resolution, DenseArray.Factory<Double> denseArrayFactory) {
-        return this.getLocalDateSeries(this.getHistoricalPrices(), resolution, denseArrayFactory);
+        return this.getLocalDateSeries(this.getPriceColumns(), resolution, denseArrayFactory);
     }
 
     public BasicSeries.NaturallySequenced<LocalDate, Double> getLocalDateSeries(DenseArray.Factory<Double> denseArrayFactory) {
-        return this.getLocalDateSeries(this.getHistoricalPrices(), myFetcher.getResolution(), denseArrayFactory);
+        return this.getLocalDateSeries(this.getPriceColumns(), myFetcher.getResolution(), denseArrayFactory);
+    }
+
+    /**
+     * Parses the fetched data directly to primitive columns - no {@link DatePrice} instances are created.
+     */
+    public PriceColumns getPriceColumns() {
+        return this.getPriceColumns(null);
+    }
+
+    /**
+     * Asks the fetcher for the data from (and including) the specified date only - the provider may return
+     * more than that.
+     */
+    public PriceColumns getPriceColumns(LocalDate since) {
+        try {
+            long started = System.nanoTime();
+            return this.parse(this.fetched(myFetcher.getStreamOfCSV(since), started));
+        } catch (final Exception exception) {
+            return this.failed(exception);
+        }
+    }
+
+    /**
+     * A 304 Not Modified response is returned as null without any parsing.
+     */
+    public PriceColumns getPriceColumns(LocalDate since, Validators validators) {
+        try {
+            long started = System.nanoTime();
+            Reader reader = myFetcher.getStreamOfCSV(since, validators);
+            if (reader == Validators.NOT_MODIFIED) {
+                Instrumentation.LISTENER.onFetch(this.getProvider(), this.getSymbol(), System.nanoTime() - started);
+                return null;
+            }
+            return this.parse(this.fetched(reader, started));
+        } catch (final Exception exception) {
+            return this.failed(exception);
+        }
+    }
+
+    /**
+     * The request is made using {@link DataFetcher#getStreamOfCSVAsync(LocalDate, Executor)}, and the
+     * response is then parsed as a task on the same executor. A failure results in empty columns, just as
+     * with {@link #getPriceColumns(LocalDate)}.
+     */
+    public CompletableFuture<PriceColumns> getPriceColumnsAsync(LocalDate since, Executor executor) {
+        long started = System.nanoTime();
+        return myFetcher.getStreamOfCSVAsync(since, executor).thenApplyAsync(reader -> this.parse(this.fetched(reader, started)), executor)
+                .exceptionally(this::failed);
     }
 
     public BasicSeries<LocalDate, Double> getPriceSeries() {
-        return this.getLocalDateSeries(this.getHistoricalPrices(), myFetcher.getResolution(), Primitive64Array.FACTORY);
+        return this.getLocalDateSeries(this.getPriceColumns(), myFetcher.getResolution(), Primitive64Array.FACTORY);
+    }
+
+    public CompletableFuture<BasicSeries<LocalDate, Double>> getPriceSeriesAsync(Executor executor) {
+        return this.getPriceColumnsAsync(null, executor)
+                .thenApply(columns -> this.getLocalDateSeries(columns, myFetcher.getResolution(), Primitive64Array.FACTORY));
+    }
+
+    public CalendarDateUnit getResolution() {
+        return myFetcher.getResolution();
     }
 
     public String getSymbol() {
         return myFetcher.getSymbol();
     }
 
+    public String getProvider() {
+        return myFetcher.getProvider();
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -232,26 +695,61 @@ public final class DataSource implements FinanceData {
         return result;
     }
 
-    private BasicSeries.NaturallySequenced<LocalDate, Double> getLocalDateSeries(List<DatePrice> historicalPrices, CalendarDateUnit resolution,
+    private BasicSeries.NaturallySequenced<LocalDate, Double> getLocalDateSeries(PriceColumns priceColumns, CalendarDateUnit resolution,
             DenseArray.Factory<Double> denseArrayFactory) {
 
+        long started = System.nanoTime();
+
         BasicSeries.NaturallySequenced<LocalDate, Double> retVal = BasicSeries.LOCAL_DATE.build(denseArrayFactory);
         retVal.name(this.getSymbol());
 
-        LocalDate adjusted;
-        for (DatePrice datePrice : historicalPrices) {
-            switch (resolution) {
-            case MONTH:
-                adjusted = (LocalDate) FinanceData.LAST_DAY_OF_MONTH.adjustInto(datePrice.key);
-                break;
-            case WEEK:
-                adjusted = (LocalDate) FinanceData.FRIDAY_OF_WEEK.adjustInto(datePrice.key);
-                break;
-            default:
-                adjusted = datePrice.key;
-                break;
-            }
-            retVal.put(adjusted, datePrice.getPrice());
+        priceColumns.supplyTo(retVal, resolution);
+
+        Instrumentation.LISTENER.onSeries(this.getProvider(), this.getSymbol(), retVal.size(), System.nanoTime() - started);
+
+        return retVal;
+    }
+
+    private PriceColumns failed(Throwable cause) {
+
+        Throwable exception = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+
+        Instrumentation.LISTENER.onFailure(this.getProvider(), this.getSymbol(),
+                exception instanceof Exception ? (Exception) exception : new RuntimeException(exception));
+        exception.printStackTrace();
+        BasicLogger.error("Fetch problem for {}!", myFetcher.getClass().getSimpleName());
+        BasicLogger.error("Symbol & Resolution: {} & {}", myFetcher.getSymbol(), myFetcher.getResolution());
+
+        return new PriceColumns(0);
+    }
+
+    /**
+     * @param reader The fetched response
+     * @param started When the fetch started (nanos)
+     */
+    private CountingReader fetched(Reader reader, long started) {
+
+        if (reader == null) {
+            throw new IllegalStateException("No response!");
+        }
+
+        Instrumentation.LISTENER.onFetch(this.getProvider(), this.getSymbol(), System.nanoTime() - started);
+
+        return new CountingReader(reader);
+    }
+
+    private PriceColumns parse(CountingReader reader) {
+
+        long started = System.nanoTime();
+
+        PriceColumns retVal = new PriceColumns();
+        int failures = myParser.parseCountingFailures(reader, retVal);
+        retVal.sort();
+        retVal.trim();
+
+        Instrumentation.LISTENER.onParse(this.getProvider(), this.getSymbol(), reader.chars, retVal.size(), System.nanoTime() - started);
+        if (failures > 0) {
+            Instrumentation.LISTENER.onParseFailure(this.getProvider(), this.getSymbol(), failures);
         }
 
         return retVal;
@@ -26,8 +26,12 @@ import java.time.LocalDate;
 import java.time.temporal.TemporalAdjuster;
 import java.time.temporal.TemporalAdjusters;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import org.ojalgo.finance.data.fetcher.Validators;
 import org.ojalgo.series.BasicSeries;
+import org.ojalgo.type.CalendarDateUnit;
 
 public interface FinanceData {
 
@@ -40,8 +44,87 @@ public interface FinanceData {
 
     List<DatePrice> getHistoricalPrices();
 
+    /**
+     * Asynchronous version of {@link #getHistoricalPrices()}, running on the executor. See
+     * {@link DataSource#newExecutor()} for an executor suitable for many concurrent loads.
+     */
+    default CompletableFuture<List<DatePrice>> getHistoricalPricesAsync(final Executor executor) {
+        return CompletableFuture.supplyAsync(this::getHistoricalPrices, executor);
+    }
+
+    /**
+     * The same data as {@link #getHistoricalPrices()} but stored in primitive columns. This default
+     * implementation only has the prices (adjusted close) - other values are NaN.
+     */
+    default PriceColumns getPriceColumns() {
+
+        List<DatePrice> historicalPrices = this.getHistoricalPrices();
+
+        PriceColumns retVal = new PriceColumns(historicalPrices.size());
+        for (DatePrice datePrice : historicalPrices) {
+            retVal.accept((int) datePrice.key.toEpochDay(), Double.NaN, Double.NaN, Double.NaN, Double.NaN, datePrice.getPrice(), Double.NaN);
+        }
+        retVal.sort();
+
+        return retVal;
+    }
+
+    /**
+     * Same as {@link #getPriceColumns()} but only (at least) the data from the specified date and onwards.
+     * This default implementation fetches everything.
+     *
+     * @param since The first date of interest (inclusive), or null to get everything.
+     */
+    default PriceColumns getPriceColumns(final LocalDate since) {
+        return this.getPriceColumns();
+    }
+
+    /**
+     * Same as {@link #getPriceColumns(LocalDate)} but with a conditional request - if the data has not
+     * changed since the response the validators are from, null is returned and nothing is parsed. This
+     * default implementation ignores the validators.
+     *
+     * @param since The first date of interest (inclusive), or null to get everything.
+     * @param validators Remembered from previous responses. Those of this response are pending until the
+     *        caller has stored the data, and then calls {@link Validators#commit()}.
+     * @return The data, or null if not modified
+     */
+    default PriceColumns getPriceColumns(final LocalDate since, final Validators validators) {
+        return this.getPriceColumns(since);
+    }
+
+    /**
+     * Asynchronous version of {@link #getPriceColumns(LocalDate)}, running on the executor.
+     *
+     * @param since The first date of interest (inclusive), or null to get everything.
+     */
+    default CompletableFuture<PriceColumns> getPriceColumnsAsync(final LocalDate since, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> this.getPriceColumns(since), executor);
+    }
+
     BasicSeries<LocalDate, Double> getPriceSeries();
 
+    /**
+     * Asynchronous version of {@link #getPriceSeries()}, running on the executor.
+     */
+    default CompletableFuture<BasicSeries<LocalDate, Double>> getPriceSeriesAsync(final Executor executor) {
+        return CompletableFuture.supplyAsync(this::getPriceSeries, executor);
+    }
+
+    /**
+     * @return Identifies the data provider (Yahoo, AlphaVantage, IEXTrading...)
+     */
+    default String getProvider() {
+        return this.getClass().getSimpleName();
+    }
+
+    /**
+     * @return Typically DAY(ly), WEEK(ly) or MONTH(ly)
+     */
+    default CalendarDateUnit getResolution() {
+        return CalendarDateUnit.DAY;
+    }
+
     String getSymbol();
 
 }
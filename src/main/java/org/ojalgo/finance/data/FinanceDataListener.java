@@ -0,0 +1,96 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+/**
+ * Receives instrumentation events from the fetchers, {@link DataSource} and {@link SourceCache}. All methods
+ * have empty default implementations - implement those of interest.
+ * <p>
+ * Register instances with {@link Instrumentation#add(FinanceDataListener)}, or as a service provider
+ * (META-INF/services/org.ojalgo.finance.data.FinanceDataListener) to have them registered automatically.
+ * The methods are called synchronously, on the thread doing the work, so they should be fast and should not
+ * throw (if they do it is logged and ignored). {@link FinanceDataMetrics} is an in-memory implementation.
+ * <p>
+ * All durations are in nanoseconds.
+ *
+ * @author apete
+ */
+public interface FinanceDataListener {
+
+    default void onCacheEviction(final String provider, final String symbol) {
+    }
+
+    default void onCacheHit(final String provider, final String symbol) {
+    }
+
+    default void onCacheMiss(final String provider, final String symbol) {
+    }
+
+    /**
+     * A fetch (or parse) that failed with an exception
+     */
+    default void onFailure(final String provider, final String symbol, final Exception cause) {
+    }
+
+    /**
+     * The time until the response was available to read - rate limiting, retries and handshakes included.
+     */
+    default void onFetch(final String provider, final String symbol, final long duration) {
+    }
+
+    /**
+     * A provider session handshake (Yahoo's cookie/crumb)
+     */
+    default void onHandshake(final String provider, final long duration) {
+    }
+
+    /**
+     * @param chars The number of characters read - not bytes, the response is decoded before counting
+     * @param rows The number of successfully parsed rows
+     * @param duration Time spent reading and parsing
+     */
+    default void onParse(final String provider, final String symbol, final long chars, final int rows, final long duration) {
+    }
+
+    /**
+     * Lines in a response that could not be parsed, reported in addition to {@link #onParse(String, String,
+     * long, int, long)}. A (first line) header is not counted unless nothing at all could be parsed - an
+     * error message rather than CSV for instance.
+     *
+     * @param lines The number of (non-empty) lines that did not result in a row
+     */
+    default void onParseFailure(final String provider, final String symbol, final int lines) {
+    }
+
+    /**
+     * A {@link SourceCache} refresh - the fetch, parse and update of the cached series
+     */
+    default void onRefresh(final String provider, final String symbol, final long duration) {
+    }
+
+    /**
+     * Building a series from parsed columns
+     */
+    default void onSeries(final String provider, final String symbol, final int points, final long duration) {
+    }
+
+}
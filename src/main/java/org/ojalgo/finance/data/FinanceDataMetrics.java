@@ -0,0 +1,255 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory {@link FinanceDataListener} that aggregates the events per provider and symbol, as well as
+ * in total. Register it with {@link Instrumentation#add(FinanceDataListener)}.
+ *
+ * @author apete
+ */
+public final class FinanceDataMetrics implements FinanceDataListener {
+
+    /**
+     * The aggregated events for one provider and symbol (or the total of all). Durations (and latency
+     * histograms) are in milliseconds.
+     */
+    public static final class Counters {
+
+        private final LongAdder myChars = new LongAdder();
+        private final LongAdder myEvictions = new LongAdder();
+        private final LongAdder myFailures = new LongAdder();
+        private final LatencyHistogram myFetch = new LatencyHistogram();
+        private final LongAdder myHits = new LongAdder();
+        private final LongAdder myMisses = new LongAdder();
+        private final LongAdder myParseFailures = new LongAdder();
+        private final LongAdder myParseNanos = new LongAdder();
+        private final LatencyHistogram myRefresh = new LatencyHistogram();
+        private final LongAdder myRows = new LongAdder();
+        private final LongAdder mySeriesNanos = new LongAdder();
+
+        Counters() {
+            super();
+        }
+
+        /**
+         * Characters read (decoded, so not necessarily the same as bytes)
+         */
+        public long getChars() {
+            return myChars.sum();
+        }
+
+        public long getEvictions() {
+            return myEvictions.sum();
+        }
+
+        public long getFailures() {
+            return myFailures.sum();
+        }
+
+        public LatencyHistogram getFetchLatency() {
+            return myFetch;
+        }
+
+        public long getHits() {
+            return myHits.sum();
+        }
+
+        public long getMisses() {
+            return myMisses.sum();
+        }
+
+        /**
+         * Lines that could not be parsed
+         */
+        public long getParseFailures() {
+            return myParseFailures.sum();
+        }
+
+        /**
+         * Total time spent parsing (including reading the response)
+         */
+        public double getParseMillis() {
+            return myParseNanos.sum() / 1_000_000.0;
+        }
+
+        public LatencyHistogram getRefreshLatency() {
+            return myRefresh;
+        }
+
+        public long getRows() {
+            return myRows.sum();
+        }
+
+        /**
+         * Rows parsed per second (of parse time)
+         */
+        public double getRowsPerSecond() {
+            long nanos = myParseNanos.sum();
+            return nanos == 0L ? Double.NaN : (myRows.sum() * 1_000_000_000.0) / nanos;
+        }
+
+        /**
+         * Total time spent building series from parsed columns
+         */
+        public double getSeriesMillis() {
+            return mySeriesNanos.sum() / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "fetch [" + myFetch + "] parse [rows=" + this.getRows() + " chars=" + this.getChars() + " rows/s=" + Math.round(this.getRowsPerSecond())
+                    + " failures=" + this.getParseFailures() + "] series=" + Math.round(this.getSeriesMillis()) + "ms failures=" + this.getFailures() + " cache [hits=" + this.getHits() + " misses="
+                    + this.getMisses() + " evictions=" + this.getEvictions() + "] refresh [" + myRefresh + "]";
+        }
+
+    }
+
+    private static String key(final String provider, final String symbol) {
+        return provider + ":" + symbol;
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private final Map<String, Counters> myCounters = new ConcurrentHashMap<>();
+    private final LatencyHistogram myHandshakes = new LatencyHistogram();
+    private final Counters myTotal = new Counters();
+
+    public FinanceDataMetrics() {
+        super();
+    }
+
+    /**
+     * @return The counters for this provider and symbol, or null if there have been no events
+     */
+    public Counters getCounters(final String provider, final String symbol) {
+        return myCounters.get(FinanceDataMetrics.key(provider, symbol));
+    }
+
+    /**
+     * Session handshakes - for all providers
+     */
+    public LatencyHistogram getHandshakeLatency() {
+        return myHandshakes;
+    }
+
+    /**
+     * @return "provider:symbol" for all provider and symbol combinations there are counters for
+     */
+    public Set<String> getKeys() {
+        return myCounters.keySet();
+    }
+
+    /**
+     * The total of all providers and symbols
+     */
+    public Counters getTotal() {
+        return myTotal;
+    }
+
+    public void onCacheEviction(final String provider, final String symbol) {
+        this.getOrCreate(provider, symbol).myEvictions.increment();
+        myTotal.myEvictions.increment();
+    }
+
+    public void onCacheHit(final String provider, final String symbol) {
+        this.getOrCreate(provider, symbol).myHits.increment();
+        myTotal.myHits.increment();
+    }
+
+    public void onCacheMiss(final String provider, final String symbol) {
+        this.getOrCreate(provider, symbol).myMisses.increment();
+        myTotal.myMisses.increment();
+    }
+
+    public void onFailure(final String provider, final String symbol, final Exception cause) {
+        this.getOrCreate(provider, symbol).myFailures.increment();
+        myTotal.myFailures.increment();
+    }
+
+    public void onFetch(final String provider, final String symbol, final long duration) {
+        long millis = FinanceDataMetrics.toMillis(duration);
+        this.getOrCreate(provider, symbol).myFetch.record(millis);
+        myTotal.myFetch.record(millis);
+    }
+
+    public void onHandshake(final String provider, final long duration) {
+        myHandshakes.record(FinanceDataMetrics.toMillis(duration));
+    }
+
+    public void onParse(final String provider, final String symbol, final long chars, final int rows, final long duration) {
+        for (Counters counters : new Counters[] { this.getOrCreate(provider, symbol), myTotal }) {
+            counters.myChars.add(chars);
+            counters.myRows.add(rows);
+            counters.myParseNanos.add(duration);
+        }
+    }
+
+    public void onParseFailure(final String provider, final String symbol, final int lines) {
+        this.getOrCreate(provider, symbol).myParseFailures.add(lines);
+        myTotal.myParseFailures.add(lines);
+    }
+
+    public void onRefresh(final String provider, final String symbol, final long duration) {
+        long millis = FinanceDataMetrics.toMillis(duration);
+        this.getOrCreate(provider, symbol).myRefresh.record(millis);
+        myTotal.myRefresh.record(millis);
+    }
+
+    public void onSeries(final String provider, final String symbol, final int points, final long duration) {
+        this.getOrCreate(provider, symbol).mySeriesNanos.add(duration);
+        myTotal.mySeriesNanos.add(duration);
+    }
+
+    /**
+     * One line per provider and symbol, followed by the total
+     */
+    @Override
+    public String toString() {
+        StringBuilder retVal = new StringBuilder();
+        for (Map.Entry<String, Counters> entry : new TreeMap<>(myCounters).entrySet()) {
+            retVal.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        retVal.append("Handshakes [").append(myHandshakes).append("]\n");
+        retVal.append("Total ").append(myTotal);
+        return retVal.toString();
+    }
+
+    private Counters getOrCreate(final String provider, final String symbol) {
+        String key = FinanceDataMetrics.key(provider, symbol);
+        Counters retVal = myCounters.get(key);
+        if (retVal == null) {
+            retVal = myCounters.computeIfAbsent(key, k -> new Counters());
+        }
+        return retVal;
+    }
+
+}
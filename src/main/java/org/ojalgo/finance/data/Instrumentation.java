@@ -0,0 +1,191 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ojalgo.netio.BasicLogger;
+
+/**
+ * Holds the registered {@link FinanceDataListener}s. Instrumented code reports to {@link #LISTENER} which
+ * forwards to all registered listeners. With no listeners registered that costs next to nothing. A listener
+ * that throws is logged, and does not affect the other listeners or the instrumented code.
+ *
+ * @author apete
+ */
+public final class Instrumentation {
+
+    private static final class Composite implements FinanceDataListener {
+
+        private static void failed(final FinanceDataListener listener, final RuntimeException exception) {
+            BasicLogger.error("FinanceDataListener {} failed: {}", listener.getClass().getName(), exception.getMessage());
+        }
+
+        final CopyOnWriteArrayList<FinanceDataListener> listeners = new CopyOnWriteArrayList<>();
+
+        Composite() {
+            super();
+        }
+
+        @Override
+        public void onCacheEviction(final String provider, final String symbol) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onCacheEviction(provider, symbol);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onCacheHit(final String provider, final String symbol) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onCacheHit(provider, symbol);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onCacheMiss(final String provider, final String symbol) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onCacheMiss(provider, symbol);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(final String provider, final String symbol, final Exception cause) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onFailure(provider, symbol, cause);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onFetch(final String provider, final String symbol, final long duration) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onFetch(provider, symbol, duration);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onHandshake(final String provider, final long duration) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onHandshake(provider, duration);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onParse(final String provider, final String symbol, final long chars, final int rows, final long duration) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onParse(provider, symbol, chars, rows, duration);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onParseFailure(final String provider, final String symbol, final int lines) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onParseFailure(provider, symbol, lines);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onRefresh(final String provider, final String symbol, final long duration) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onRefresh(provider, symbol, duration);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+        @Override
+        public void onSeries(final String provider, final String symbol, final int points, final long duration) {
+            for (FinanceDataListener listener : listeners) {
+                try {
+                    listener.onSeries(provider, symbol, points, duration);
+                } catch (RuntimeException exception) {
+                    Composite.failed(listener, exception);
+                }
+            }
+        }
+
+    }
+
+    private static final Composite COMPOSITE = new Composite();
+
+    /**
+     * Forwards to all registered listeners
+     */
+    public static final FinanceDataListener LISTENER = COMPOSITE;
+
+    static {
+        try {
+            for (FinanceDataListener listener : ServiceLoader.load(FinanceDataListener.class)) {
+                COMPOSITE.listeners.add(listener);
+            }
+        } catch (Throwable cause) {
+            BasicLogger.error("Failed to load FinanceDataListener services: {}", cause.getMessage());
+        }
+    }
+
+    public static void add(final FinanceDataListener listener) {
+        COMPOSITE.listeners.addIfAbsent(listener);
+    }
+
+    public static void remove(final FinanceDataListener listener) {
+        COMPOSITE.listeners.remove(listener);
+    }
+
+    private Instrumentation() {
+        super();
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.ojalgo.finance.data.parser.IntradayParser;
+
+/**
+ * Columnar, primitive, storage of intraday (minute or hour) bars - the intraday equivalent of
+ * {@link PriceColumns}. The timestamps are stored as epoch seconds (long) and each of open, high, low, close
+ * and volume is a separate double[].
+ * <p>
+ * It can be used as a rolling window: {@link #merge(IntradayColumns)} appends the latest bars and
+ * {@link #retain(long)} drops the oldest, reusing the same arrays.
+ *
+ * @author apete
+ */
+public final class IntradayColumns implements IntradayParser.Sink {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private boolean myAscending = true;
+    private double[] myClose;
+    private boolean myDescending = true;
+    private double[] myHigh;
+    private double[] myLow;
+    private double[] myOpen;
+    private int mySize = 0;
+    private long[] myTimes;
+    private double[] myVolume;
+
+    public IntradayColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public IntradayColumns(final int capacity) {
+
+        super();
+
+        myTimes = new long[capacity];
+        myOpen = new double[capacity];
+        myHigh = new double[capacity];
+        myLow = new double[capacity];
+        myClose = new double[capacity];
+        myVolume = new double[capacity];
+    }
+
+    public void accept(final long epochSecond, final double open, final double high, final double low, final double close, final double volume) {
+
+        if (mySize == myTimes.length) {
+            this.grow(Math.max(INITIAL_CAPACITY, mySize * 2));
+        }
+
+        if (mySize > 0) {
+            long previous = myTimes[mySize - 1];
+            if (epochSecond < previous) {
+                myAscending = false;
+            } else if (epochSecond > previous) {
+                myDescending = false;
+            }
+        }
+
+        myTimes[mySize] = epochSecond;
+        myOpen[mySize] = open;
+        myHigh[mySize] = high;
+        myLow[mySize] = low;
+        myClose[mySize] = close;
+        myVolume[mySize] = volume;
+
+        mySize++;
+    }
+
+    public void clear() {
+        mySize = 0;
+        myAscending = true;
+        myDescending = true;
+    }
+
+    /**
+     * @return A (trimmed) copy - later changes to this instance are not reflected in the copy
+     */
+    public IntradayColumns copy() {
+        IntradayColumns retVal = new IntradayColumns(mySize);
+        retVal.merge(this);
+        return retVal;
+    }
+
+    public double getClose(final int index) {
+        return myClose[index];
+    }
+
+    public long getEpochSecond(final int index) {
+        return myTimes[index];
+    }
+
+    public double getHigh(final int index) {
+        return myHigh[index];
+    }
+
+    public Instant getInstant(final int index) {
+        return Instant.ofEpochSecond(myTimes[index]);
+    }
+
+    public double getLow(final int index) {
+        return myLow[index];
+    }
+
+    public double getOpen(final int index) {
+        return myOpen[index];
+    }
+
+    /**
+     * @return The close - there is no adjusted close for intraday bars
+     */
+    public double getPrice(final int index) {
+        return myClose[index];
+    }
+
+    public double getVolume(final int index) {
+        return myVolume[index];
+    }
+
+    public boolean isEmpty() {
+        return mySize == 0;
+    }
+
+    /**
+     * Merge in a (later) tail of bars. Bars before the last bar already here are ignored, a bar with the
+     * same timestamp as the last bar replaces it (it may have been incomplete) and later bars are appended.
+     * Both instances must be sorted.
+     *
+     * @return The index of the first row that changed, or {@link #size()} if nothing changed.
+     */
+    public int merge(final IntradayColumns tail) {
+
+        int retVal = mySize;
+
+        for (int i = 0; i < tail.size(); i++) {
+            long time = tail.myTimes[i];
+            if ((mySize > 0) && (time == myTimes[mySize - 1])) {
+                retVal = Math.min(retVal, mySize - 1);
+                myOpen[mySize - 1] = tail.myOpen[i];
+                myHigh[mySize - 1] = tail.myHigh[i];
+                myLow[mySize - 1] = tail.myLow[i];
+                myClose[mySize - 1] = tail.myClose[i];
+                myVolume[mySize - 1] = tail.myVolume[i];
+            } else if ((mySize == 0) || (time > myTimes[mySize - 1])) {
+                this.accept(time, tail.myOpen[i], tail.myHigh[i], tail.myLow[i], tail.myClose[i], tail.myVolume[i]);
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Drops all bars before the specified time. The remaining bars are moved to the beginning of the same
+     * arrays. The rows must be sorted.
+     */
+    public void retain(final long fromEpochSecond) {
+
+        int first = Arrays.binarySearch(myTimes, 0, mySize, fromEpochSecond);
+        if (first < 0) {
+            first = -(first + 1);
+        }
+
+        if (first > 0) {
+            int remaining = mySize - first;
+            System.arraycopy(myTimes, first, myTimes, 0, remaining);
+            System.arraycopy(myOpen, first, myOpen, 0, remaining);
+            System.arraycopy(myHigh, first, myHigh, 0, remaining);
+            System.arraycopy(myLow, first, myLow, 0, remaining);
+            System.arraycopy(myClose, first, myClose, 0, remaining);
+            System.arraycopy(myVolume, first, myVolume, 0, remaining);
+            mySize = remaining;
+        }
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Sorts the bars in ascending time order. Does nothing if they already are, and reverses them (in
+     * place) if they are in descending order (AlphaVantage).
+     */
+    public void sort() {
+
+        if (myAscending) {
+            return;
+        }
+
+        if (myDescending) {
+            for (int i = 0, j = mySize - 1; i < j; i++, j--) {
+                long time = myTimes[i];
+                myTimes[i] = myTimes[j];
+                myTimes[j] = time;
+                IntradayColumns.swap(myOpen, i, j);
+                IntradayColumns.swap(myHigh, i, j);
+                IntradayColumns.swap(myLow, i, j);
+                IntradayColumns.swap(myClose, i, j);
+                IntradayColumns.swap(myVolume, i, j);
+            }
+        } else {
+            Integer[] order = new Integer[mySize];
+            for (int i = 0; i < mySize; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i, j) -> Long.compare(myTimes[i], myTimes[j]));
+            myTimes = IntradayColumns.permute(myTimes, order);
+            myOpen = IntradayColumns.permute(myOpen, order);
+            myHigh = IntradayColumns.permute(myHigh, order);
+            myLow = IntradayColumns.permute(myLow, order);
+            myClose = IntradayColumns.permute(myClose, order);
+            myVolume = IntradayColumns.permute(myVolume, order);
+        }
+
+        myAscending = true;
+        myDescending = mySize <= 1;
+    }
+
+    @Override
+    public String toString() {
+        if (mySize == 0) {
+            return "IntradayColumns[]";
+        } else {
+            return "IntradayColumns[" + mySize + ": " + this.getInstant(0) + " - " + this.getInstant(mySize - 1) + "]";
+        }
+    }
+
+    /**
+     * Releases any excess capacity
+     */
+    public void trim() {
+        if (mySize < myTimes.length) {
+            this.grow(mySize);
+        }
+    }
+
+    private static double[] permute(final double[] values, final Integer[] order) {
+        double[] retVal = new double[values.length];
+        for (int i = 0; i < order.length; i++) {
+            retVal[i] = values[order[i]];
+        }
+        return retVal;
+    }
+
+    private static long[] permute(final long[] values, final Integer[] order) {
+        long[] retVal = new long[values.length];
+        for (int i = 0; i < order.length; i++) {
+            retVal[i] = values[order[i]];
+        }
+        return retVal;
+    }
+
+    private static void swap(final double[] values, final int i, final int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+
+    private void grow(final int capacity) {
+        myTimes = Arrays.copyOf(myTimes, capacity);
+        myOpen = Arrays.copyOf(myOpen, capacity);
+        myHigh = Arrays.copyOf(myHigh, capacity);
+        myLow = Arrays.copyOf(myLow, capacity);
+        myClose = Arrays.copyOf(myClose, capacity);
+        myVolume = Arrays.copyOf(myVolume, capacity);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import org.ojalgo.type.CalendarDateDuration;
+
+/**
+ * The intraday equivalent of {@link FinanceData} - minute or hour bars keyed by epoch seconds.
+ *
+ * @author apete
+ */
+public interface IntradayData {
+
+    /**
+     * @return The bar length, typically a number of minutes or an hour
+     */
+    CalendarDateDuration getInterval();
+
+    IntradayColumns getIntradayColumns();
+
+    /**
+     * Same as {@link #getIntradayColumns()} but only (at least) the bars from the specified time and
+     * onwards. This default implementation fetches everything.
+     *
+     * @param since The first time of interest (inclusive) in epoch seconds
+     */
+    default IntradayColumns getIntradayColumns(final long since) {
+        return this.getIntradayColumns();
+    }
+
+    /**
+     * @return Identifies the data provider (Yahoo, AlphaVantage, IEXTrading...)
+     */
+    default String getProvider() {
+        return this.getClass().getSimpleName();
+    }
+
+    String getSymbol();
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.time.Instant;
+
+import org.ojalgo.finance.data.fetcher.IntradayFetcher;
+import org.ojalgo.finance.data.parser.IntradayParser;
+import org.ojalgo.netio.BasicLogger;
+import org.ojalgo.type.CalendarDateDuration;
+
+/**
+ * The intraday equivalent of {@link DataSource} - combines an {@link IntradayFetcher} with an
+ * {@link IntradayParser}. Instances are created using
+ * {@link DataSource#newAlphaVantageIntraday(String, CalendarDateDuration, String)}.
+ *
+ * @author apete
+ */
+public final class IntradaySource implements IntradayData {
+
+    private final IntradayFetcher myFetcher;
+    private final IntradayParser myParser;
+
+    IntradaySource(final IntradayFetcher fetcher, final IntradayParser parser) {
+        super();
+        myFetcher = fetcher;
+        myParser = parser;
+    }
+
+    public CalendarDateDuration getInterval() {
+        return myFetcher.getInterval();
+    }
+
+    public IntradayColumns getIntradayColumns() {
+        return this.fetch(null);
+    }
+
+    /**
+     * Asks the fetcher for the bars from (and including) the specified time only - the provider may return
+     * more than that.
+     */
+    public IntradayColumns getIntradayColumns(final long since) {
+        return this.fetch(Instant.ofEpochSecond(since));
+    }
+
+    public String getProvider() {
+        return myFetcher.getProvider();
+    }
+
+    public String getSymbol() {
+        return myFetcher.getSymbol();
+    }
+
+    private IntradayColumns fetch(final Instant since) {
+        try {
+            final IntradayColumns retVal = new IntradayColumns();
+            myParser.parse(myFetcher.getStreamOfCSV(since), retVal);
+            retVal.sort();
+            retVal.trim();
+            return retVal;
+        } catch (final Exception exception) {
+            exception.printStackTrace();
+            BasicLogger.error("Fetch problem for {}!", myFetcher.getClass().getSimpleName());
+            BasicLogger.error("Symbol & Interval: {} & {}", myFetcher.getSymbol(), myFetcher.getInterval());
+            return new IntradayColumns(0);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free, fixed size, histogram of latencies in milliseconds. The buckets are logarithmic - 4 per
+ * doubling, from 1ms up to about 18 minutes - so any percentile is accurate to within 19%.
+ * <p>
+ * With a half-life the counts decay - they are halved every that many recordings - so that the
+ * percentiles follow recent changes. The max is still that of all recordings.
+ *
+ * @author apete
+ */
+public final class LatencyHistogram {
+
+    private static final int NB_BUCKETS = 81;
+    private static final int SUB_BUCKETS = 4;
+
+    static int bucket(final long millis) {
+        if (millis <= 1L) {
+            return 0;
+        }
+        int retVal = (int) Math.ceil(SUB_BUCKETS * Math.log(millis) / Math.log(2.0));
+        return Math.min(retVal, NB_BUCKETS - 1);
+    }
+
+    static long upperBound(final int bucket) {
+        return (long) Math.ceil(Math.pow(2.0, (double) bucket / SUB_BUCKETS));
+    }
+
+    private final AtomicLongArray myCounts = new AtomicLongArray(NB_BUCKETS);
+    private final int myHalfLife;
+    private final AtomicLong myMax = new AtomicLong();
+    private final AtomicLong myRecorded = new AtomicLong();
+    private final AtomicLong myTotal = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(0);
+    }
+
+    /**
+     * @param halfLife The number of recordings after which the counts are halved, 0 means no decay
+     */
+    public LatencyHistogram(final int halfLife) {
+
+        super();
+
+        myHalfLife = halfLife;
+    }
+
+    public long getCount() {
+        long retVal = 0L;
+        for (int b = 0; b < NB_BUCKETS; b++) {
+            retVal += myCounts.get(b);
+        }
+        return retVal;
+    }
+
+    public long getMax() {
+        return myMax.get();
+    }
+
+    public double getMean() {
+        long count = this.getCount();
+        return count == 0L ? Double.NaN : (double) myTotal.get() / count;
+    }
+
+    /**
+     * @param percentile 0.0 to 1.0 (0.95 is the 95th percentile)
+     * @return The upper bound (millis) of the bucket containing that percentile, or 0 if nothing has been
+     *         recorded yet
+     */
+    public long getPercentile(final double percentile) {
+
+        long count = this.getCount();
+        if (count == 0L) {
+            return 0L;
+        }
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile * count));
+
+        long cumulative = 0L;
+        for (int b = 0; b < NB_BUCKETS; b++) {
+            cumulative += myCounts.get(b);
+            if (cumulative >= rank) {
+                return Math.min(LatencyHistogram.upperBound(b), myMax.get());
+            }
+        }
+
+        return myMax.get();
+    }
+
+    public void record(final long millis) {
+
+        long value = Math.max(0L, millis);
+
+        myCounts.incrementAndGet(LatencyHistogram.bucket(value));
+        myTotal.addAndGet(value);
+
+        long max;
+        while (value > (max = myMax.get()) && !myMax.compareAndSet(max, value)) {
+            // retry
+        }
+
+        if ((myHalfLife > 0) && ((myRecorded.incrementAndGet() % myHalfLife) == 0L)) {
+            this.decay();
+        }
+    }
+
+    /**
+     * Halves the counts (and the total). Concurrent recordings may be included before or after.
+     */
+    private void decay() {
+        for (int b = 0; b < NB_BUCKETS; b++) {
+            myCounts.updateAndGet(b, count -> count / 2L);
+        }
+        myTotal.updateAndGet(total -> total / 2L);
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + this.getCount() + " p50=" + this.getPercentile(0.50) + "ms p95=" + this.getPercentile(0.95) + "ms p99="
+                + this.getPercentile(0.99) + "ms max=" + this.getMax() + "ms";
+    }
+
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.ojalgo.finance.data.parser.DatePriceParser;
+import org.ojalgo.series.BasicSeries;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Columnar, primitive, storage of historical prices - an alternative to a {@link java.util.List} of
+ * {@link DatePrice} instances. The dates are stored as epoch days (int) and each of open, high, low, close,
+ * adjusted close and volume is a separate double[]. The parsers can fill it directly as it is a
+ * {@link DatePriceParser.Sink}.
+ * <p>
+ * The order of the input is tracked as the rows are added, so {@link #sort()} does nothing if they came
+ * in ascending order and simply reverses them if they came in descending order (AlphaVantage).
+ *
+ * @author apete
+ */
+public final class PriceColumns implements DatePriceParser.Sink {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * @param last The last day of a period (as returned by {@link #lastDayOfPeriod(int, CalendarDateUnit)})
+     * @return The first day of that period
+     */
+    static int firstDayOfPeriod(final int last, final CalendarDateUnit resolution) {
+        switch (resolution) {
+        case MONTH:
+            return last - (LocalDate.ofEpochDay(last).getDayOfMonth() - 1);
+        case WEEK:
+            return last - 6;
+        default:
+            return last;
+        }
+    }
+
+    /**
+     * The same as applying {@link FinanceData#LAST_DAY_OF_MONTH} for {@link CalendarDateUnit#MONTH} and
+     * {@link FinanceData#FRIDAY_OF_WEEK} for {@link CalendarDateUnit#WEEK}, but with epoch day arithmetic.
+     */
+    static int lastDayOfPeriod(final int day, final CalendarDateUnit resolution) {
+        switch (resolution) {
+        case MONTH:
+            LocalDate date = LocalDate.ofEpochDay(day);
+            return (day - date.getDayOfMonth()) + date.lengthOfMonth();
+        case WEEK:
+            // Epoch day 0 was a Thursday - Saturday through Friday map to the Friday
+            return day + Math.floorMod(1 - day, 7);
+        default:
+            return day;
+        }
+    }
+
+    private static void swap(final double[] values, final int i, final int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+
+    private double[] myAdjusted;
+    private boolean myAscending = true;
+    private double[] myClose;
+    private int[] myDays;
+    private boolean myDescending = true;
+    private double[] myHigh;
+    private double[] myLow;
+    private double[] myOpen;
+    private int mySize = 0;
+    private double[] myVolume;
+
+    public PriceColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PriceColumns(final int capacity) {
+
+        super();
+
+        myDays = new int[capacity];
+        myOpen = new double[capacity];
+        myHigh = new double[capacity];
+        myLow = new double[capacity];
+        myClose = new double[capacity];
+        myAdjusted = new double[capacity];
+        myVolume = new double[capacity];
+    }
+
+    PriceColumns(final int size, final int[] days, final double[] open, final double[] high, final double[] low, final double[] close,
+            final double[] adjusted, final double[] volume) {
+
+        super();
+
+        mySize = size;
+        myDays = days;
+        myOpen = open;
+        myHigh = high;
+        myLow = low;
+        myClose = close;
+        myAdjusted = adjusted;
+        myVolume = volume;
+
+        for (int i = 1; i < size; i++) {
+            this.track(myDays[i - 1], myDays[i]);
+        }
+    }
+
+    public void accept(final int epochDay, final double open, final double high, final double low, final double close, final double adjusted,
+            final double volume) {
+
+        if (mySize == myDays.length) {
+            this.grow(Math.max(INITIAL_CAPACITY, mySize * 2));
+        }
+
+        if (mySize > 0) {
+            this.track(myDays[mySize - 1], epochDay);
+        }
+
+        myDays[mySize] = epochDay;
+        myOpen[mySize] = open;
+        myHigh[mySize] = high;
+        myLow[mySize] = low;
+        myClose[mySize] = close;
+        myAdjusted[mySize] = adjusted;
+        myVolume[mySize] = volume;
+
+        mySize++;
+    }
+
+    public void clear() {
+        mySize = 0;
+        myAscending = true;
+        myDescending = true;
+    }
+
+    /**
+     * @return A (trimmed) copy - later changes to this instance are not reflected in the copy
+     */
+    public PriceColumns copy() {
+        PriceColumns retVal = new PriceColumns(mySize);
+        retVal.merge(this);
+        return retVal;
+    }
+
+    public double getAdjusted(final int index) {
+        return myAdjusted[index];
+    }
+
+    public double getClose(final int index) {
+        return myClose[index];
+    }
+
+    public LocalDate getDate(final int index) {
+        return LocalDate.ofEpochDay(myDays[index]);
+    }
+
+    public int getEpochDay(final int index) {
+        return myDays[index];
+    }
+
+    public double getHigh(final int index) {
+        return myHigh[index];
+    }
+
+    public double getLow(final int index) {
+        return myLow[index];
+    }
+
+    public double getOpen(final int index) {
+        return myOpen[index];
+    }
+
+    /**
+     * @return The same as {@link DatePrice#getPrice()} would, the adjusted close
+     */
+    public double getPrice(final int index) {
+        return myAdjusted[index];
+    }
+
+    public double getVolume(final int index) {
+        return myVolume[index];
+    }
+
+    public boolean isEmpty() {
+        return mySize == 0;
+    }
+
+    /**
+     * Merge in a (later) tail of prices. Rows dated before the last row already here are ignored, a row
+     * with the same date as the last row replaces it (it may have been a partial/intraday value) and later
+     * rows are appended. Both instances must be sorted.
+     *
+     * @return The index of the first row that changed, or {@link #size()} if nothing changed.
+     */
+    public int merge(final PriceColumns tail) {
+
+        if (mySize == 0) {
+            for (int i = 0; i < tail.size(); i++) {
+                this.accept(tail.myDays[i], tail.myOpen[i], tail.myHigh[i], tail.myLow[i], tail.myClose[i], tail.myAdjusted[i], tail.myVolume[i]);
+            }
+            return 0;
+        }
+
+        int lastDay = myDays[mySize - 1];
+        int retVal = mySize;
+
+        for (int i = 0; i < tail.size(); i++) {
+            int day = tail.myDays[i];
+            if (day == lastDay) {
+                retVal = mySize - 1;
+                myOpen[retVal] = tail.myOpen[i];
+                myHigh[retVal] = tail.myHigh[i];
+                myLow[retVal] = tail.myLow[i];
+                myClose[retVal] = tail.myClose[i];
+                myAdjusted[retVal] = tail.myAdjusted[i];
+                myVolume[retVal] = tail.myVolume[i];
+            } else if (day > lastDay) {
+                this.accept(day, tail.myOpen[i], tail.myHigh[i], tail.myLow[i], tail.myClose[i], tail.myAdjusted[i], tail.myVolume[i]);
+                lastDay = day;
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Aggregates the rows into (coarser) periods in one pass: first open, max high, min low, last close,
+     * last adjusted close and summed volume (NaN values are ignored). The resulting rows are keyed by the
+     * last day of each period - the same keys as {@link #supplyTo(BasicSeries, CalendarDateUnit)} would
+     * use. The rows must be sorted.
+     */
+    public PriceColumns resample(final CalendarDateUnit resolution) {
+
+        PriceColumns retVal = new PriceColumns(mySize == 0 ? 0 : Math.max(1, mySize / (resolution == CalendarDateUnit.MONTH ? 20 : 4)));
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        double open = Double.NaN, high = Double.NaN, low = Double.NaN, close = Double.NaN, adjusted = Double.NaN, volume = Double.NaN;
+
+        for (int i = 0; i < mySize; i++) {
+
+            int day = myDays[i];
+
+            if ((day < first) || (day > last)) {
+
+                if (i > 0) {
+                    retVal.accept(last, open, high, low, close, adjusted, volume);
+                }
+
+                last = PriceColumns.lastDayOfPeriod(day, resolution);
+                first = PriceColumns.firstDayOfPeriod(last, resolution);
+
+                open = myOpen[i];
+                high = myHigh[i];
+                low = myLow[i];
+                close = myClose[i];
+                adjusted = myAdjusted[i];
+                volume = myVolume[i];
+
+            } else {
+
+                if (Double.isNaN(open)) {
+                    open = myOpen[i];
+                }
+                if (Double.isNaN(high) || (myHigh[i] > high)) {
+                    high = myHigh[i];
+                }
+                if (Double.isNaN(low) || (myLow[i] < low)) {
+                    low = myLow[i];
+                }
+                if (!Double.isNaN(myClose[i])) {
+                    close = myClose[i];
+                }
+                if (!Double.isNaN(myAdjusted[i])) {
+                    adjusted = myAdjusted[i];
+                }
+                if (Double.isNaN(volume)) {
+                    volume = myVolume[i];
+                } else if (!Double.isNaN(myVolume[i])) {
+                    volume += myVolume[i];
+                }
+            }
+        }
+
+        if (mySize > 0) {
+            retVal.accept(last, open, high, low, close, adjusted, volume);
+        }
+
+        return retVal;
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Sorts the rows in ascending date order. Does nothing if they already are, and reverses them (in
+     * place) if they are in descending order. Only mixed order input requires an actual sort.
+     */
+    public void sort() {
+
+        if (myAscending) {
+            return;
+        }
+
+        if (myDescending) {
+            this.reverse();
+            return;
+        }
+
+        // Pack date and original index in a long so a primitive sort gives the permutation
+        long[] order = new long[mySize];
+        for (int i = 0; i < mySize; i++) {
+            order[i] = ((long) myDays[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int[] days = new int[myDays.length];
+        double[] open = new double[myOpen.length];
+        double[] high = new double[myHigh.length];
+        double[] low = new double[myLow.length];
+        double[] close = new double[myClose.length];
+        double[] adjusted = new double[myAdjusted.length];
+        double[] volume = new double[myVolume.length];
+
+        for (int i = 0; i < mySize; i++) {
+            int from = (int) order[i];
+            days[i] = myDays[from];
+            open[i] = myOpen[from];
+            high[i] = myHigh[from];
+            low[i] = myLow[from];
+            close[i] = myClose[from];
+            adjusted[i] = myAdjusted[from];
+            volume[i] = myVolume[from];
+        }
+
+        myDays = days;
+        myOpen = open;
+        myHigh = high;
+        myLow = low;
+        myClose = close;
+        myAdjusted = adjusted;
+        myVolume = volume;
+
+        myAscending = true;
+        myDescending = mySize <= 1;
+    }
+
+    /**
+     * Puts all prices in the series. The keys are adjusted to match the resolution:
+     * {@link FinanceData#LAST_DAY_OF_MONTH} for {@link CalendarDateUnit#MONTH} and
+     * {@link FinanceData#FRIDAY_OF_WEEK} for {@link CalendarDateUnit#WEEK}. The values are put as primitive
+     * doubles.
+     */
+    public void supplyTo(final BasicSeries<LocalDate, Double> series, final CalendarDateUnit resolution) {
+        this.supplyTo(series, resolution, 0);
+    }
+
+    /**
+     * Same as {@link #supplyTo(BasicSeries, CalendarDateUnit)} but only the rows from (and including) the
+     * specified index.
+     * <p>
+     * The key adjustment is done with epoch day arithmetic, and only when a row falls outside the period
+     * (week or month) of the previous row - consecutive rows in the same period share the same key
+     * instance.
+     */
+    public void supplyTo(final BasicSeries<LocalDate, Double> series, final CalendarDateUnit resolution, final int fromIndex) {
+
+        int first = Integer.MAX_VALUE; // First day of the current period
+        int last = Integer.MIN_VALUE; // Last day of the current period
+        LocalDate key = null;
+
+        for (int i = fromIndex; i < mySize; i++) {
+
+            int day = myDays[i];
+
+            if ((day < first) || (day > last)) {
+                last = PriceColumns.lastDayOfPeriod(day, resolution);
+                first = PriceColumns.firstDayOfPeriod(last, resolution);
+                key = LocalDate.ofEpochDay(last);
+            }
+
+            series.put(key, myAdjusted[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (mySize == 0) {
+            return "PriceColumns[]";
+        } else {
+            return "PriceColumns[" + mySize + ": " + this.getDate(0) + " - " + this.getDate(mySize - 1) + "]";
+        }
+    }
+
+    /**
+     * Releases any excess capacity
+     */
+    public void trim() {
+        if (mySize < myDays.length) {
+            this.grow(mySize);
+        }
+    }
+
+    private void grow(final int capacity) {
+        myDays = Arrays.copyOf(myDays, capacity);
+        myOpen = Arrays.copyOf(myOpen, capacity);
+        myHigh = Arrays.copyOf(myHigh, capacity);
+        myLow = Arrays.copyOf(myLow, capacity);
+        myClose = Arrays.copyOf(myClose, capacity);
+        myAdjusted = Arrays.copyOf(myAdjusted, capacity);
+        myVolume = Arrays.copyOf(myVolume, capacity);
+    }
+
+    private void reverse() {
+        for (int i = 0, j = mySize - 1; i < j; i++, j--) {
+            int day = myDays[i];
+            myDays[i] = myDays[j];
+            myDays[j] = day;
+            PriceColumns.swap(myOpen, i, j);
+            PriceColumns.swap(myHigh, i, j);
+            PriceColumns.swap(myLow, i, j);
+            PriceColumns.swap(myClose, i, j);
+            PriceColumns.swap(myAdjusted, i, j);
+            PriceColumns.swap(myVolume, i, j);
+        }
+        myAscending = true;
+        myDescending = mySize <= 1;
+    }
+
+    private void track(final int previous, final int next) {
+        if (next < previous) {
+            myAscending = false;
+        } else if (next > previous) {
+            myDescending = false;
+        }
+    }
+
+}
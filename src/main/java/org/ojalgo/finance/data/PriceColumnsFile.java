@@ -0,0 +1,215 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Compact binary file storage of {@link PriceColumns}. The layout is a fixed size header (magic, version,
+ * updated millis and number of rows) followed by the epoch days and then the 6 value columns. The whole file
+ * is read/written with one heap buffer - the columns are copied to/from arrays anyway, and a file that is not
+ * mapped can be replaced (moved over) on every platform.
+ *
+ * @author apete
+ */
+final class PriceColumnsFile {
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int MAGIC = 0x6F6A5043; // "ojPC"
+    private static final int VERSION = 1;
+
+    /**
+     * @return The file name to use for this provider, symbol and resolution
+     */
+    static String name(final FinanceData data) {
+        return PriceColumnsFile.encode(data.getProvider()) + "-" + PriceColumnsFile.encode(data.getSymbol()) + "-"
+                + data.getResolution().name().toLowerCase(Locale.ROOT) + ".bin";
+    }
+
+    /**
+     * Any char that is not safe in a file name, and '_' itself, is escaped as '_' followed by 4 hex digits -
+     * different symbols (like "^GSPC" and "_GSPC") never get the same name.
+     */
+    static String encode(final String name) {
+
+        StringBuilder retVal = new StringBuilder(name.length());
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z')) || ((c >= '0') && (c <= '9')) || (c == '.') || (c == '-')) {
+                retVal.append(c);
+            } else {
+                retVal.append('_').append(String.format(Locale.ROOT, "%04X", (int) c));
+            }
+        }
+
+        return retVal.toString();
+    }
+
+    /**
+     * @return The columns, or null if the file does not exist or is not a valid file
+     */
+    static PriceColumnsFile read(final File file) throws IOException {
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long length = channel.size();
+            if ((length < HEADER_SIZE) || (length > Integer.MAX_VALUE)) {
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+                // read it all
+            }
+            if (buffer.hasRemaining()) {
+                return null;
+            }
+            // Cast to Buffer - the covariant overrides (Java 9+) don't exist on Java 8
+            ((Buffer) buffer).flip();
+
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+                return null;
+            }
+            long updated = buffer.getLong();
+            int size = buffer.getInt();
+
+            if (length != PriceColumnsFile.length(size)) {
+                return null;
+            }
+
+            int[] days = new int[size];
+            double[] open = new double[size];
+            double[] high = new double[size];
+            double[] low = new double[size];
+            double[] close = new double[size];
+            double[] adjusted = new double[size];
+            double[] volume = new double[size];
+
+            buffer.asIntBuffer().get(days);
+            ((Buffer) buffer).position(buffer.position() + (size * Integer.BYTES));
+
+            PriceColumnsFile.get(buffer, open);
+            PriceColumnsFile.get(buffer, high);
+            PriceColumnsFile.get(buffer, low);
+            PriceColumnsFile.get(buffer, close);
+            PriceColumnsFile.get(buffer, adjusted);
+            PriceColumnsFile.get(buffer, volume);
+
+            return new PriceColumnsFile(new PriceColumns(size, days, open, high, low, close, adjusted, volume), updated);
+        }
+    }
+
+    /**
+     * Writes to a temporary file that is then moved to replace the target - a concurrent reader never
+     * sees a partially written file. If anything fails the temporary file is deleted.
+     */
+    static void write(final File file, final PriceColumns columns, final long updated) throws IOException {
+
+        int size = columns.size();
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+
+        File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(PriceColumnsFile.length(size)));
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(updated);
+            buffer.putInt(size);
+
+            for (int i = 0; i < size; i++) {
+                buffer.putInt(columns.getEpochDay(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putDouble(columns.getOpen(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putDouble(columns.getHigh(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putDouble(columns.getLow(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putDouble(columns.getClose(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putDouble(columns.getAdjusted(i));
+            }
+            for (int i = 0; i < size; i++) {
+                buffer.putDouble(columns.getVolume(i));
+            }
+
+            ((Buffer) buffer).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+
+        } catch (IOException | RuntimeException cause) {
+            temporary.delete();
+            throw cause;
+        }
+
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException cause) {
+            temporary.delete();
+            throw cause;
+        }
+    }
+
+    private static void get(final ByteBuffer buffer, final double[] destination) {
+        buffer.asDoubleBuffer().get(destination);
+        ((Buffer) buffer).position(buffer.position() + (destination.length * Double.BYTES));
+    }
+
+    private static long length(final int size) {
+        return HEADER_SIZE + (size * (long) Integer.BYTES) + (6L * size * Double.BYTES);
+    }
+
+    final PriceColumns columns;
+    final long updated;
+
+    private PriceColumnsFile(final PriceColumns columns, final long updated) {
+        super();
+        this.columns = columns;
+        this.updated = updated;
+    }
+
+}
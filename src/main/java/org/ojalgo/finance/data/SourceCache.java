@@ -21,25 +21,199 @@
  */
 package org.ojalgo.finance.data;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.finance.data.fetcher.Validators;
+import org.ojalgo.netio.BasicLogger;
 import org.ojalgo.series.BasicSeries;
 import org.ojalgo.type.CalendarDate;
+import org.ojalgo.type.CalendarDateDuration;
 import org.ojalgo.type.CalendarDateUnit;
 
+/**
+ * An in-memory cache of price series. Optionally it can also have a persistent disk tier - one compact
+ * binary file per (provider, symbol, resolution). Entries restored from disk are subject to the same
+ * refresh interval as those in memory, and a warm restart serves fresh entries from disk without fetching
+ * or parsing anything.
+ * <p>
+ * In incremental mode a refresh only requests the data since the last cached date, and only the new rows
+ * are merged into the cached series.
+ * <p>
+ * The cache is thread safe. Loading is single-flight per key - concurrent requests for the same key share
+ * one fetch while requests for other keys proceed in parallel. Cache hits do not lock.
+ * <p>
+ * By default the cache is unbounded, and entries not used within one refresh interval are evicted. With a
+ * {@link #maximumWeight(long)} entries are instead kept until the total weight (number of points in the
+ * series) exceeds that limit, and then evicted according to the {@link Eviction} policy.
+ * <p>
+ * Intraday data, {@link #getIntraday(IntradayData)}, is kept as a rolling window - refreshed (incrementally)
+ * once per bar interval, and with bars older than the {@link #intradayWindow(CalendarDateDuration)} dropped.
+ * Intraday entries are evicted the same way as the others, and the bars count towards the total weight.
+ * <p>
+ * With {@link #hedging(boolean)} turned on, a primary source (see {@link #register(FinanceData, FinanceData)})
+ * that has not answered within a latency budget gets its secondary requested in parallel, and the first
+ * usable result is served. The fetch latencies are recorded per provider, {@link #getLatency(String)}, and
+ * unless a fixed {@link #hedgeBudget(CalendarDateDuration)} is set the budget is the 95th percentile of the
+ * primary provider's recent latencies.
+ */
 public final class SourceCache {
 
-    private static final class Value {
+    public enum Eviction {
+
+        /**
+         * Evict the least frequently used entries first (ties broken by recency)
+         */
+        LFU,
+        /**
+         * Evict the least recently used entries first
+         */
+        LRU;
+
+    }
+
+    /**
+     * Snapshot of an entry's usage - the live values may change while sorting
+     */
+    private static final class Candidate {
+
+        final long frequency;
+        final Object key;
+        final Map<?, ?> map;
+        final String provider;
+        final String symbol;
+        final long used;
+        final Usage value;
+
+        Candidate(final Map<?, ?> map, final Object key, final Usage value, final CalendarDate used, final String provider, final String symbol) {
+
+            super();
+
+            this.map = map;
+            this.key = key;
+            this.value = value;
+            this.used = used.millis;
+            this.provider = provider;
+            this.symbol = symbol;
+            frequency = value.frequency.get();
+        }
+
+    }
+
+    /**
+     * A coarser resolution derived (resampled) from the cached columns
+     */
+    private static final class Derived {
+
+        final PriceColumns columns;
+        final BasicSeries<LocalDate, Double> series;
+
+        Derived(final PriceColumns columns, final CalendarDateUnit resolution, final String name) {
+
+            super();
+
+            this.columns = columns;
+
+            series = BasicSeries.LOCAL_DATE.build(Primitive64Array.FACTORY);
+            series.name(name);
+            columns.supplyTo(series, resolution);
+        }
+
+    }
+
+    private static final class IntradayValue extends Usage {
+
+        volatile IntradayColumns columns = new IntradayColumns(0);
+        volatile long fetched = 0L;
+
+        @Override
+        void clear() {
+            // The columns are snapshots that may still be in use elsewhere - just let go of them
+            columns = new IntradayColumns(0);
+        }
+
+        @Override
+        long weight() {
+            return columns.size();
+        }
+
+    }
+
+    /**
+     * An asynchronous (hedged) load in progress - shared by all requests for the key until it completes
+     */
+    private static final class Loading {
+
+        final CompletableFuture<Value> future = new CompletableFuture<>();
+        final AtomicBoolean hedged = new AtomicBoolean();
+        final long started = System.currentTimeMillis();
+
+    }
+
+    /**
+     * What eviction needs to know about an entry
+     */
+    private static abstract class Usage {
+
+        final AtomicLong frequency = new AtomicLong();
+        /**
+         * Loads (or refreshes) in progress - not to be evicted
+         */
+        final AtomicInteger loading = new AtomicInteger();
+        /**
+         * Included in the cache's total weight, and whether evicted - guarded by the entry's lock
+         */
+        long counted = 0L;
+        boolean removed = false;
+        volatile CalendarDate used = null;
+
+        /**
+         * Called when evicted. Whatever was handed out may still be in use elsewhere - must not be modified.
+         */
+        abstract void clear();
+
+        void use(final CalendarDate now) {
+            used = now;
+            frequency.incrementAndGet();
+        }
+
+        /**
+         * The number of points
+         */
+        abstract long weight();
+
+    }
+
+    private static final class Value extends Usage {
 
+        volatile PriceColumns columns = new PriceColumns(0);
+        final Map<CalendarDateUnit, SourceCache.Derived> derived = new ConcurrentHashMap<>();
         final BasicSeries<LocalDate, Double> series;
-        CalendarDate updated = new CalendarDate();
-        CalendarDate used = null;
+        volatile CalendarDate updated = null;
+        final Validators validators = new Validators();
 
         Value(final String name) {
 
@@ -49,20 +223,85 @@ public final class SourceCache {
             series.name(name);
         }
 
+        @Override
+        void clear() {
+            // The series (and columns) may still be in use elsewhere - just let go of the derived resolutions
+            derived.clear();
+        }
+
+        @Override
+        long weight() {
+            long retVal = series.size();
+            for (Derived value : derived.values()) {
+                retVal += value.columns.size();
+            }
+            return retVal;
+        }
+
     }
 
+    private static final Comparator<Candidate> LFU = Comparator.comparingLong((final Candidate candidate) -> candidate.frequency)
+            .thenComparingLong(candidate -> candidate.used);
+    private static final Comparator<Candidate> LRU = Comparator.comparingLong(candidate -> candidate.used);
+
+    /**
+     * The hedge budget used until there are enough latency samples
+     */
+    private static final long DEFAULT_HEDGE_BUDGET = 2_000L;
+    /**
+     * The max number of concurrent hedged loads (of different keys), per executor - any more are queued
+     */
+    private static final int HEDGE_THREADS = 16;
+    private static final double HEDGE_PERCENTILE = 0.95;
+    /**
+     * The latency histograms are halved every this many fetches - the hedge budget follows a provider that
+     * slows down (or speeds up)
+     */
+    private static final int LATENCY_HALF_LIFE = 100;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+    private static final ThreadPoolExecutor PRIMARY_EXECUTOR = SourceCache.newExecutor("SourceCache-Primary");
+    /**
+     * Separate from the primaries - when those are slow, the only case hedging is for, the secondaries must
+     * not be queued behind them
+     */
+    private static final ThreadPoolExecutor SECONDARY_EXECUTOR = SourceCache.newExecutor("SourceCache-Secondary");
     private static final Timer TIMER = new Timer("SourceCache-Daemon", true);
 
     private final Map<FinanceData, SourceCache.Value> myCache = new ConcurrentHashMap<>();
+    private volatile LongSupplier myClock = System::currentTimeMillis;
+    private final File myDirectory;
+    private volatile Eviction myEviction = Eviction.LRU;
+    private final AtomicLong myEvictionCount = new AtomicLong();
     private final Map<FinanceData, FinanceData> myFallback = new ConcurrentHashMap<>();
+    private volatile long myHedgeBudget = -1L;
+    private final AtomicLong myHedgeCount = new AtomicLong();
+    private volatile boolean myHedging = false;
+    private final AtomicLong myHitCount = new AtomicLong();
+    private volatile boolean myIncremental = false;
+    private final Map<IntradayData, SourceCache.IntradayValue> myIntraday = new ConcurrentHashMap<>();
+    private volatile long myIntradayWindow = CalendarDateUnit.DAY.toDurationInMillis();
+    private final Map<String, LatencyHistogram> myLatencies = new ConcurrentHashMap<>();
+    private final Map<FinanceData, SourceCache.Loading> myLoading = new ConcurrentHashMap<>();
+    private volatile long myMaximumWeight = Long.MAX_VALUE;
+    private final AtomicLong myMissCount = new AtomicLong();
+    private final AtomicLong myWeight = new AtomicLong();
 
     private final CalendarDate.Resolution myRefreshInterval;
 
     public SourceCache(final CalendarDateUnit refreshInterval) {
+        this(refreshInterval, null);
+    }
+
+    /**
+     * @param refreshInterval How often to refresh (re-fetch) the data
+     * @param directory Where to store the disk tier files. If null there is no disk tier.
+     */
+    public SourceCache(final CalendarDateUnit refreshInterval, final File directory) {
 
         super();
 
         myRefreshInterval = refreshInterval;
+        myDirectory = directory;
 
         TIMER.schedule(new TimerTask() {
 
@@ -75,25 +314,318 @@ public final class SourceCache {
 
     }
 
-    public synchronized BasicSeries<LocalDate, Double> get(final FinanceData key) {
+    /**
+     * Evicts the entries not used within the refresh interval (unless the cache is bounded by weight).
+     * Normally run by a timer, once per refresh interval.
+     */
+    void cleanUp() {
 
-        final CalendarDate now = new CalendarDate();
+        if (myMaximumWeight != Long.MAX_VALUE) {
+            // Bounded - evict by weight only
+            return;
+        }
 
-        Value value = myCache.computeIfAbsent(key, k -> new SourceCache.Value(k.getSymbol()));
+        final CalendarDate now = this.now();
 
-        if ((value.used == null) || ((now.millis - value.updated.millis) > myRefreshInterval.toDurationInMillis())) {
-            this.update(value, key, now);
+        for (final Entry<FinanceData, SourceCache.Value> entry : myCache.entrySet()) {
+            FinanceData key = entry.getKey();
+            Value value = entry.getValue();
+            CalendarDate used = value.used;
+            // Never used values may be loading right now - only evict those that have been used
+            if ((used != null) && ((now.millis - used.millis) > myRefreshInterval.toDurationInMillis()) && this.isEvictable(key, value)) {
+                this.remove(myCache, key, value, key.getProvider(), key.getSymbol());
+            }
         }
 
-        if ((value.series.size() <= 1) && myFallback.containsKey(key)) {
-            return this.get(myFallback.get(key));
+        for (final Entry<IntradayData, SourceCache.IntradayValue> entry : myIntraday.entrySet()) {
+            IntradayData key = entry.getKey();
+            IntradayValue value = entry.getValue();
+            CalendarDate used = value.used;
+            if ((used != null) && ((now.millis - used.millis) > myRefreshInterval.toDurationInMillis()) && this.isEvictable(key, value)) {
+                this.remove(myIntraday, key, value, key.getProvider(), key.getSymbol());
+            }
+        }
+    }
+
+    /**
+     * The time (millis) used to decide which entries are stale or unused - the system clock unless set
+     * (tests).
+     */
+    SourceCache clock(final LongSupplier clock) {
+        myClock = clock;
+        return this;
+    }
+
+    /**
+     * Which entries to evict when the {@link #maximumWeight(long)} is exceeded. The default is
+     * {@link Eviction#LRU}.
+     */
+    public SourceCache eviction(final Eviction policy) {
+        myEviction = policy;
+        return this;
+    }
+
+    public BasicSeries<LocalDate, Double> get(final FinanceData key) {
+
+        final CalendarDate now = this.now();
+
+        return this.serve(key, this.getValue(key, now), now);
+    }
+
+    /**
+     * Same as calling {@link #get(FinanceData)} for each of the keys, but those that need to be (re)loaded
+     * are fetched with batch requests when possible - when there are several keys from a provider with a
+     * {@link org.ojalgo.finance.data.fetcher.BatchDataFetcher}.
+     *
+     * @return The series in the same order as the keys
+     */
+    public List<BasicSeries<LocalDate, Double>> getAll(final Collection<? extends FinanceData> keys) {
+
+        final CalendarDate now = this.now();
+
+        List<FinanceData> stale = new ArrayList<>();
+        for (FinanceData key : keys) {
+            Value value = myCache.get(key);
+            if ((value == null) || this.isStale(value, now)) {
+                stale.add(key);
+            }
+        }
+
+        // Already counted as misses when loaded - not to be counted again as hits
+        Map<FinanceData, Value> loaded = new HashMap<>();
+        if (stale.size() >= 2) {
+            for (Entry<FinanceData, PriceColumns> entry : DataSource.fetchBatched(stale).entrySet()) {
+                loaded.put(entry.getKey(), this.load(entry.getKey(), now, entry.getValue()));
+            }
+        }
+
+        List<BasicSeries<LocalDate, Double>> retVal = new ArrayList<>(keys.size());
+        for (FinanceData key : keys) {
+            Value value = loaded.get(key);
+            retVal.add(value != null ? this.serve(key, value, now) : this.get(key));
+        }
+        return retVal;
+    }
+
+    /**
+     * A coarser resolution than that of the key itself, derived from the cached data. The OHLCV values are
+     * aggregated, see {@link PriceColumns#resample(CalendarDateUnit)}, and the derived resolution is cached
+     * (until the next refresh). Daily, weekly and monthly views of the same data cost only one fetch.
+     * Asking for the same or a finer resolution than that of the key is the same as {@link #get(FinanceData)}.
+     */
+    public BasicSeries<LocalDate, Double> get(final FinanceData key, final CalendarDateUnit resolution) {
+
+        if (!SourceCache.isCoarser(resolution, key.getResolution())) {
+            return this.get(key);
+        }
+
+        final CalendarDate now = this.now();
+
+        Value value = this.getValue(key, now);
+
+        FinanceData fallback;
+        if ((value.series.size() <= 1) && ((fallback = myFallback.get(key)) != null)) {
+            return this.get(fallback, resolution);
         } else {
-            value.used = now;
-            return value.series;
+            value.use(now);
+            return this.getDerived(value, key, resolution).series;
+        }
+    }
+
+    /**
+     * The number of entries evicted, either because the {@link #maximumWeight(long)} was exceeded or because
+     * they were not used within the refresh interval
+     */
+    public long getEvictionCount() {
+        return myEvictionCount.get();
+    }
+
+    /**
+     * The number of times a secondary source was requested because the primary had not answered within the
+     * hedge budget
+     */
+    public long getHedgeCount() {
+        return myHedgeCount.get();
+    }
+
+    /**
+     * A rolling window of intraday bars. Refreshed, incrementally, at most once per bar interval. The
+     * returned instance is a snapshot - it is not modified by later refreshes.
+     */
+    public IntradayColumns getIntraday(final IntradayData key) {
+
+        IntradayValue value = myIntraday.get(key);
+        if (value == null) {
+            value = myIntraday.computeIfAbsent(key, k -> new SourceCache.IntradayValue());
+        }
+
+        long now = myClock.getAsLong();
+        long interval = key.getInterval().toDurationInMillis();
+
+        if ((now - value.fetched) > interval) {
+            myMissCount.incrementAndGet();
+            Instrumentation.LISTENER.onCacheMiss(key.getProvider(), key.getSymbol());
+            value.loading.incrementAndGet();
+            try {
+                synchronized (value) {
+                    if ((now - value.fetched) > interval) {
+
+                        long started = System.nanoTime();
+
+                        IntradayColumns columns = value.columns.copy();
+                        if (columns.isEmpty()) {
+                            columns = key.getIntradayColumns();
+                        } else {
+                            columns.merge(key.getIntradayColumns(columns.getEpochSecond(columns.size() - 1)));
+                        }
+
+                        if (!columns.isEmpty()) {
+                            columns.retain(columns.getEpochSecond(columns.size() - 1) - (myIntradayWindow / 1000L));
+                            value.columns = columns;
+                            this.reweigh(value);
+                        }
+                        value.fetched = now;
+
+                        Instrumentation.LISTENER.onRefresh(key.getProvider(), key.getSymbol(), System.nanoTime() - started);
+                    }
+                }
+            } finally {
+                value.loading.decrementAndGet();
+            }
+            if (myWeight.get() > myMaximumWeight) {
+                this.evict(key);
+            }
+        } else {
+            myHitCount.incrementAndGet();
+            Instrumentation.LISTENER.onCacheHit(key.getProvider(), key.getSymbol());
+        }
+
+        value.use(new CalendarDate(now));
+
+        return value.columns;
+    }
+
+    /**
+     * The number of requests served from the cache without (re)loading anything
+     */
+    public long getHitCount() {
+        return myHitCount.get();
+    }
+
+    /**
+     * @param provider As in {@link FinanceData#getProvider()}
+     * @return The fetch latencies of that provider, or null if nothing has been fetched from it. The counts
+     *         decay, see {@link LatencyHistogram#LatencyHistogram(int)}, so the percentiles are those of the
+     *         recent fetches.
+     */
+    public LatencyHistogram getLatency(final String provider) {
+        return myLatencies.get(provider);
+    }
+
+    /**
+     * The number of requests that had to load (restore from disk or fetch) the data
+     */
+    public long getMissCount() {
+        return myMissCount.get();
+    }
+
+    /**
+     * The current total weight - the total number of points in all cached series (including derived
+     * resolutions and intraday bars)
+     */
+    public long getWeight() {
+        return myWeight.get();
+    }
+
+    /**
+     * The same data as {@link #get(FinanceData)} but as (the originally parsed) primitive columns, and
+     * with all of open, high, low, close, adjusted close and volume.
+     */
+    public PriceColumns getPriceColumns(final FinanceData key) {
+
+        final CalendarDate now = this.now();
+
+        Value value = this.getValue(key, now);
+
+        FinanceData fallback;
+        if ((value.series.size() <= 1) && ((fallback = myFallback.get(key)) != null)) {
+            return this.getPriceColumns(fallback);
+        } else {
+            value.use(now);
+            return value.columns;
+        }
+    }
+
+    /**
+     * The same as {@link #get(FinanceData, CalendarDateUnit)} but as primitive columns, with all of open,
+     * high, low, close, adjusted close and volume aggregated.
+     */
+    public PriceColumns getPriceColumns(final FinanceData key, final CalendarDateUnit resolution) {
+
+        if (!SourceCache.isCoarser(resolution, key.getResolution())) {
+            return this.getPriceColumns(key);
+        }
+
+        final CalendarDate now = this.now();
+
+        Value value = this.getValue(key, now);
+
+        FinanceData fallback;
+        if ((value.series.size() <= 1) && ((fallback = myFallback.get(key)) != null)) {
+            return this.getPriceColumns(fallback, resolution);
+        } else {
+            value.use(now);
+            return this.getDerived(value, key, resolution).columns;
         }
     }
 
-    public synchronized void register(FinanceData primary, FinanceData secondary) {
+    /**
+     * A fixed hedge budget. If null (the default) the budget is derived from the primary provider's latency
+     * histogram.
+     */
+    public SourceCache hedgeBudget(final CalendarDateDuration budget) {
+        myHedgeBudget = budget != null ? budget.toDurationInMillis() : -1L;
+        return this;
+    }
+
+    /**
+     * Turn hedged requests on/off. When on, a stale (or not yet loaded) primary source that does not answer
+     * within the hedge budget has its secondary requested in parallel. Whichever first returns a usable
+     * result is served, and both results are cached.
+     */
+    public SourceCache hedging(final boolean hedging) {
+        myHedging = hedging;
+        return this;
+    }
+
+    /**
+     * Turn incremental refresh on/off. Note that incremental refreshes will not pick up changes to
+     * historical (adjusted) prices caused by dividends or splits.
+     */
+    public SourceCache incremental(final boolean incremental) {
+        myIncremental = incremental;
+        return this;
+    }
+
+    /**
+     * Bound the cache by total weight - the total number of points in all cached series. When a load
+     * pushes the total above this limit other entries are evicted according to the {@link Eviction}
+     * policy. A bounded cache does not evict entries simply because they have not been used for a while.
+     */
+    public SourceCache maximumWeight(final long maximumWeight) {
+        myMaximumWeight = maximumWeight;
+        return this;
+    }
+
+    /**
+     * How much intraday data to keep, counting back from the latest bar. The default is 1 day.
+     */
+    public SourceCache intradayWindow(final CalendarDateDuration window) {
+        myIntradayWindow = window.toDurationInMillis();
+        return this;
+    }
+
+    public void register(FinanceData primary, FinanceData secondary) {
 
         myCache.computeIfAbsent(primary, k -> new SourceCache.Value(k.getSymbol()));
 
@@ -102,25 +634,366 @@ public final class SourceCache {
         myFallback.put(primary, secondary);
     }
 
-    private void cleanUp() {
+    /**
+     * Evict entries, other than the one just loaded, until the total weight is within the limit. Entries
+     * that have never been used, or are being (re)loaded, are not considered. Only called when the running
+     * total exceeds the limit.
+     */
+    private synchronized void evict(final Object loaded) {
 
-        final CalendarDate now = new CalendarDate();
+        if (myWeight.get() <= myMaximumWeight) {
+            // Another thread already evicted
+            return;
+        }
 
-        for (final Entry<FinanceData, SourceCache.Value> entry : myCache.entrySet()) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (Entry<FinanceData, SourceCache.Value> entry : myCache.entrySet()) {
             FinanceData key = entry.getKey();
-            Value value = entry.getValue();
-            if ((value.used == null) || ((now.millis - value.used.millis) > myRefreshInterval.toDurationInMillis())) {
-                value.series.clear();
-                myCache.remove(key);
+            CalendarDate used = entry.getValue().used;
+            if ((used != null) && !key.equals(loaded) && this.isEvictable(key, entry.getValue())) {
+                candidates.add(new Candidate(myCache, key, entry.getValue(), used, key.getProvider(), key.getSymbol()));
+            }
+        }
+        for (Entry<IntradayData, SourceCache.IntradayValue> entry : myIntraday.entrySet()) {
+            IntradayData key = entry.getKey();
+            CalendarDate used = entry.getValue().used;
+            if ((used != null) && !key.equals(loaded) && this.isEvictable(key, entry.getValue())) {
+                candidates.add(new Candidate(myIntraday, key, entry.getValue(), used, key.getProvider(), key.getSymbol()));
+            }
+        }
+        candidates.sort(myEviction == Eviction.LFU ? LFU : LRU);
+
+        for (int i = 0; (myWeight.get() > myMaximumWeight) && (i < candidates.size()); i++) {
+            Candidate candidate = candidates.get(i);
+            this.remove(candidate.map, candidate.key, candidate.value, candidate.provider, candidate.symbol);
+        }
+    }
+
+    private Derived getDerived(final Value value, final FinanceData key, final CalendarDateUnit resolution) {
+
+        Derived retVal = value.derived.get(resolution);
+
+        if (retVal == null) {
+            // Same lock as update() - don't resample while the columns are being refreshed
+            synchronized (value) {
+                retVal = value.derived.computeIfAbsent(resolution, r -> new SourceCache.Derived(value.columns.resample(r), r, key.getSymbol()));
+                this.reweigh(value);
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * The value to serve the key with. Normally the key's own value, but with hedging turned on it may be the
+     * value of the secondary source.
+     */
+    private Value getValue(final FinanceData key, final CalendarDate now) {
+
+        FinanceData fallback;
+        if (myHedging && ((fallback = myFallback.get(key)) != null)) {
+            Value value = myCache.get(key);
+            if ((value == null) || this.isStale(value, now)) {
+                return this.hedge(key, fallback, now);
             }
         }
+
+        return this.load(key, now, null);
     }
 
-    private void update(final Value cacheValue, final FinanceData cacheKey, final CalendarDate now) {
-        BasicSeries<LocalDate, Double> priceSeries = cacheKey.getPriceSeries();
-        for (Entry<LocalDate, Double> entry : priceSeries.entrySet()) {
-            cacheValue.series.put(entry.getKey(), entry.getValue());
+    private long getHedgeBudget(final FinanceData key) {
+
+        if (myHedgeBudget >= 0L) {
+            return myHedgeBudget;
         }
+
+        LatencyHistogram latency = myLatencies.get(key.getProvider());
+        if ((latency == null) || (latency.getCount() < MIN_LATENCY_SAMPLES)) {
+            return DEFAULT_HEDGE_BUDGET;
+        }
+
+        return latency.getPercentile(HEDGE_PERCENTILE);
+    }
+
+    /**
+     * Loads the primary, and if that does not complete within the budget also the secondary. Returns the
+     * first usable (more than 1 point) value, or the primary's value if neither is usable. Concurrent
+     * requests share the in-flight loads, and the budget is counted from when the primary load started.
+     */
+    private Value hedge(final FinanceData primary, final FinanceData secondary, final CalendarDate now) {
+
+        Loading primaryLoading = this.loadAsync(primary, now, PRIMARY_EXECUTOR);
+        CompletableFuture<Value> primaryLoad = primaryLoading.future;
+
+        try {
+
+            long budget = this.getHedgeBudget(primary) - (System.currentTimeMillis() - primaryLoading.started);
+            try {
+                return primaryLoad.get(Math.max(0L, budget), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException timeout) {
+                if (primaryLoading.hedged.compareAndSet(false, true)) {
+                    myHedgeCount.incrementAndGet();
+                }
+            }
+
+            CompletableFuture<Value> secondaryLoad = this.loadAsync(secondary, now, SECONDARY_EXECUTOR).future;
+
+            CompletableFuture<Value> first = new CompletableFuture<>();
+            primaryLoad.thenAccept(value -> {
+                if (value.series.size() > 1) {
+                    first.complete(value);
+                }
+            });
+            secondaryLoad.thenAccept(value -> {
+                if (value.series.size() > 1) {
+                    first.complete(value);
+                }
+            });
+            CompletableFuture.allOf(primaryLoad, secondaryLoad).whenComplete((ignore, cause) -> {
+                if (cause != null) {
+                    first.completeExceptionally(cause);
+                } else {
+                    first.complete(primaryLoad.join());
+                }
+            });
+
+            return first.get();
+
+        } catch (ExecutionException cause) {
+            throw new RuntimeException(cause.getCause());
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * @param prefetched Already fetched (batched) data to use instead of fetching, or null
+     */
+    private Value load(final FinanceData key, final CalendarDate now, final PriceColumns prefetched) {
+
+        Value value = myCache.get(key);
+        if (value == null) {
+            value = myCache.computeIfAbsent(key, k -> new SourceCache.Value(k.getSymbol()));
+        }
+
+        if (this.isStale(value, now)) {
+            myMissCount.incrementAndGet();
+            Instrumentation.LISTENER.onCacheMiss(key.getProvider(), key.getSymbol());
+            // Per key lock - the first thread fetches, any others wait for that and then re-check
+            value.loading.incrementAndGet();
+            try {
+                synchronized (value) {
+
+                    if ((value.updated == null) && (myDirectory != null)) {
+                        this.restore(value, key);
+                    }
+
+                    if (this.isStale(value, now)) {
+                        long started = System.nanoTime();
+                        this.update(value, key, now, prefetched);
+                        Instrumentation.LISTENER.onRefresh(key.getProvider(), key.getSymbol(), System.nanoTime() - started);
+                    }
+                }
+            } finally {
+                value.loading.decrementAndGet();
+            }
+            if (myWeight.get() > myMaximumWeight) {
+                this.evict(key);
+            }
+        } else {
+            myHitCount.incrementAndGet();
+            Instrumentation.LISTENER.onCacheHit(key.getProvider(), key.getSymbol());
+        }
+
+        return value;
+    }
+
+    /**
+     * Loads on the executor, or returns the load already in progress for that key
+     */
+    private Loading loadAsync(final FinanceData key, final CalendarDate now, final Executor executor) {
+
+        Loading retVal = myLoading.get(key);
+
+        if (retVal == null) {
+            Loading created = new SourceCache.Loading();
+            retVal = myLoading.putIfAbsent(key, created);
+            if (retVal == null) {
+                retVal = created;
+                executor.execute(() -> {
+                    try {
+                        created.future.complete(this.load(key, now, null));
+                    } catch (Throwable cause) {
+                        created.future.completeExceptionally(cause);
+                    } finally {
+                        myLoading.remove(key, created);
+                    }
+                });
+            }
+        }
+
+        return retVal;
+    }
+
+    private static ThreadPoolExecutor newExecutor(final String name) {
+        ThreadPoolExecutor retVal = new ThreadPoolExecutor(HEDGE_THREADS, HEDGE_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        retVal.allowCoreThreadTimeOut(true);
+        return retVal;
+    }
+
+    private static boolean isCoarser(final CalendarDateUnit resolution, final CalendarDateUnit than) {
+        return resolution.toDurationInMillis() > than.toDurationInMillis();
+    }
+
+    /**
+     * Not while it is being loaded - that would detach the entry (and what it has handed out) from the cache
+     */
+    private boolean isEvictable(final Object key, final Usage value) {
+        return (value.loading.get() == 0) && !myLoading.containsKey(key);
+    }
+
+    private boolean isStale(final Value value, final CalendarDate now) {
+        CalendarDate updated = value.updated;
+        return (updated == null) || ((now.millis - updated.millis) > myRefreshInterval.toDurationInMillis());
+    }
+
+    private void restore(final Value cacheValue, final FinanceData cacheKey) {
+        try {
+            PriceColumnsFile file = PriceColumnsFile.read(new File(myDirectory, PriceColumnsFile.name(cacheKey)));
+            if (file != null) {
+                file.columns.supplyTo(cacheValue.series, cacheKey.getResolution());
+                cacheValue.columns = file.columns;
+                cacheValue.derived.clear();
+                this.reweigh(cacheValue);
+                cacheValue.updated = new CalendarDate(file.updated);
+            }
+        } catch (IOException cause) {
+            BasicLogger.error("Failed to restore {} from disk: {}", cacheKey.getSymbol(), cause.getMessage());
+        }
+    }
+
+    private CalendarDate now() {
+        return new CalendarDate(myClock.getAsLong());
+    }
+
+    /**
+     * Brings the running total weight up to date with that of the entry. Call holding the entry's lock.
+     */
+    private void reweigh(final Usage value) {
+        if (!value.removed) {
+            long weight = value.weight();
+            myWeight.addAndGet(weight - value.counted);
+            value.counted = weight;
+        }
+    }
+
+    private void remove(final Map<?, ?> map, final Object key, final Usage value, final String provider, final String symbol) {
+
+        synchronized (value) {
+            if (!map.remove(key, value)) {
+                return;
+            }
+            value.removed = true;
+            myWeight.addAndGet(-value.counted);
+            value.counted = 0L;
+            value.clear();
+        }
+
+        myEvictionCount.incrementAndGet();
+        Instrumentation.LISTENER.onCacheEviction(provider, symbol);
+    }
+
+    /**
+     * The value's series, or that of the fallback if the value has no data
+     */
+    private BasicSeries<LocalDate, Double> serve(final FinanceData key, final Value value, final CalendarDate now) {
+
+        FinanceData fallback;
+        if ((value.series.size() <= 1) && ((fallback = myFallback.get(key)) != null)) {
+            return this.get(fallback);
+        } else {
+            value.use(now);
+            return value.series;
+        }
+    }
+
+    private void update(final Value cacheValue, final FinanceData cacheKey, final CalendarDate now, final PriceColumns prefetched) {
+
+        long started = System.currentTimeMillis();
+
+        PriceColumns priceColumns;
+        int fromIndex;
+        boolean parsed = false;
+
+        if (prefetched != null) {
+            priceColumns = prefetched;
+            fromIndex = 0;
+        } else {
+
+            if (cacheValue.columns.isEmpty()) {
+                // Nothing to validate against - make an unconditional request
+                cacheValue.validators.reset();
+            }
+
+            boolean incremental = myIncremental && !cacheValue.columns.isEmpty();
+            LocalDate since = incremental ? cacheValue.columns.getDate(cacheValue.columns.size() - 1) : null;
+            PriceColumns fetched = cacheKey.getPriceColumns(since, cacheValue.validators);
+
+            if ((fetched == null) || !fetched.isEmpty()) {
+                // Only successful fetches - failures would distort the hedge budget
+                myLatencies.computeIfAbsent(cacheKey.getProvider(), provider -> new LatencyHistogram(LATENCY_HALF_LIFE)).record(System.currentTimeMillis() - started);
+            }
+
+            if (fetched == null) {
+                // 304 Not Modified - nothing to parse or merge
+                cacheValue.updated = now;
+                return;
+            }
+
+            parsed = !fetched.isEmpty();
+
+            if (incremental) {
+                // The cached columns are published (read without locking) - merge into a copy
+                priceColumns = cacheValue.columns.copy();
+                fromIndex = priceColumns.merge(fetched);
+            } else {
+                priceColumns = fetched;
+                fromIndex = 0;
+            }
+        }
+
+        priceColumns.supplyTo(cacheValue.series, cacheKey.getResolution(), fromIndex);
+
+        if (priceColumns.isEmpty() || (fromIndex == priceColumns.size())) {
+            // Fetch failed, or nothing new - keep whatever we had
+            cacheValue.updated = now;
+            if (parsed) {
+                cacheValue.validators.commit();
+            }
+            return;
+        }
+
+        cacheValue.columns = priceColumns;
+        cacheValue.derived.clear();
+        this.reweigh(cacheValue);
+        // Cache hits do not lock - publish the columns (and cleared derived) before marking it fresh
         cacheValue.updated = now;
+        if (parsed) {
+            // Only now is it safe to validate against this response
+            cacheValue.validators.commit();
+        }
+
+        if (myDirectory != null) {
+            try {
+                PriceColumnsFile.write(new File(myDirectory, PriceColumnsFile.name(cacheKey)), priceColumns, now.millis);
+            } catch (IOException cause) {
+                BasicLogger.error("Failed to store {} on disk: {}", cacheKey.getSymbol(), cause.getMessage());
+            }
+        }
     }
 }
@@ -1,8 +1,10 @@
 package org.ojalgo.finance.data.fetcher;
 
 import java.io.Reader;
+import java.net.URL;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
-import org.ojalgo.netio.ResourceLocator;
 import org.ojalgo.type.CalendarDateUnit;
 
 /**
@@ -10,8 +12,15 @@ import org.ojalgo.type.CalendarDateUnit;
  */
 public class AlphaVantageFetcher implements DataFetcher {
 
+    /**
+     * The compact output size is the latest 100 data points. Requests for data since less than this number
+     * of calendar days ago can use it.
+     */
+    private static final long COMPACT_DAYS = 100L;
+
+    private final String myApiKey;
+    private final boolean myFullOutputSize;
     private final CalendarDateUnit myResolution;
-    private final ResourceLocator myResourceLocator;
     private final String mySymbol;
 
     public AlphaVantageFetcher(final String symbol, final CalendarDateUnit resolution, final String apiKey, boolean fullOutputSize) {
@@ -20,26 +29,12 @@ public class AlphaVantageFetcher implements DataFetcher {
 
         mySymbol = symbol;
         myResolution = resolution;
+        myApiKey = apiKey;
+        myFullOutputSize = fullOutputSize;
+    }
 
-        myResourceLocator = new ResourceLocator().host("www.alphavantage.co").path("/query");
-
-        switch (resolution) {
-        case MONTH:
-            myResourceLocator.query("function", "TIME_SERIES_MONTHLY_ADJUSTED");
-            break;
-        case WEEK:
-            myResourceLocator.query("function", "TIME_SERIES_WEEKLY_ADJUSTED");
-            break;
-        default:
-            myResourceLocator.query("function", "TIME_SERIES_DAILY_ADJUSTED");
-            break;
-        }
-        myResourceLocator.query("symbol", symbol);
-        myResourceLocator.query("apikey", apiKey);
-        myResourceLocator.query("datatype", "csv");
-        if (fullOutputSize && (resolution == CalendarDateUnit.DAY) && !"demo".equals(apiKey)) {
-            myResourceLocator.query("outputsize", "full");
-        }
+    public String getProvider() {
+        return "AlphaVantage";
     }
 
     public CalendarDateUnit getResolution() {
@@ -47,11 +42,62 @@ public class AlphaVantageFetcher implements DataFetcher {
     }
 
     public Reader getStreamOfCSV() {
-        return myResourceLocator.getStreamReader();
+        return this.fetch(this.getURL(null), null);
+    }
+
+    public Reader getStreamOfCSV(final LocalDate since) {
+        return this.getStreamOfCSV(since, null);
+    }
+
+    /**
+     * Will use the compact output size (regardless of how this fetcher was configured) if that is enough.
+     */
+    public Reader getStreamOfCSV(final LocalDate since, final Validators validators) {
+        return this.fetch(this.getURL(since), validators);
     }
 
     public String getSymbol() {
         return mySymbol;
     }
 
+    /**
+     * @param since The first date of interest, or null to get everything
+     * @return The URL to request - compact output size if that is enough
+     */
+    URL getURL(final LocalDate since) {
+        if ((since != null) && (ChronoUnit.DAYS.between(since, LocalDate.now()) < COMPACT_DAYS)) {
+            return this.newURL(false);
+        } else {
+            return this.newURL(myFullOutputSize);
+        }
+    }
+
+    private Reader fetch(final URL url, final Validators validators) {
+        return RequestScheduler.of(this.getProvider()).transfer(() -> new HttpTransfer(url, validators));
+    }
+
+    private URL newURL(final boolean fullOutputSize) {
+
+        String function;
+        switch (myResolution) {
+        case MONTH:
+            function = "TIME_SERIES_MONTHLY_ADJUSTED";
+            break;
+        case WEEK:
+            function = "TIME_SERIES_WEEKLY_ADJUSTED";
+            break;
+        default:
+            function = "TIME_SERIES_DAILY_ADJUSTED";
+            break;
+        }
+
+        String outputSize = null;
+        if (fullOutputSize && (myResolution == CalendarDateUnit.DAY) && !"demo".equals(myApiKey)) {
+            outputSize = "full";
+        }
+
+        return HttpTransfer.url("www.alphavantage.co", "/query", "function", function, "symbol", mySymbol, "apikey", myApiKey, "datatype", "csv",
+                "outputsize", outputSize);
+    }
+
 }
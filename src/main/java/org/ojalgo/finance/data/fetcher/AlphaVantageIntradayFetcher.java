@@ -0,0 +1,129 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.Reader;
+import java.time.Instant;
+
+import org.ojalgo.netio.ResourceLocator;
+import org.ojalgo.type.CalendarDateDuration;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * AlphaVantage TIME_SERIES_INTRADAY - 1, 5, 15, 30 or 60 minute bars. The timestamps are US/Eastern.
+ *
+ * @author apete
+ */
+public class AlphaVantageIntradayFetcher implements IntradayFetcher {
+
+    /**
+     * The compact output size is the latest 100 bars
+     */
+    private static final int COMPACT_BARS = 100;
+
+    private final String myApiKey;
+    private final boolean myFullOutputSize;
+    private final CalendarDateDuration myInterval;
+    private final int myMinutes;
+    private final String mySymbol;
+
+    /**
+     * @param interval Must be 1, 5, 15, 30 or 60 minutes
+     * @param fullOutputSize The full output size is (up to) 30 days of bars
+     */
+    public AlphaVantageIntradayFetcher(final String symbol, final CalendarDateDuration interval, final String apiKey, final boolean fullOutputSize) {
+
+        super();
+
+        mySymbol = symbol;
+        myInterval = interval;
+        myApiKey = apiKey;
+        myFullOutputSize = fullOutputSize;
+
+        myMinutes = (int) (interval.toDurationInMillis() / CalendarDateUnit.MINUTE.toDurationInMillis());
+        switch (myMinutes) {
+        case 1:
+        case 5:
+        case 15:
+        case 30:
+        case 60:
+            break;
+        default:
+            throw new IllegalArgumentException("Interval must be 1, 5, 15, 30 or 60 minutes!");
+        }
+    }
+
+    public CalendarDateDuration getInterval() {
+        return myInterval;
+    }
+
+    public String getProvider() {
+        return "AlphaVantage";
+    }
+
+    /**
+     * @return MINUTE or HOUR
+     */
+    public CalendarDateUnit getResolution() {
+        return myMinutes == 60 ? CalendarDateUnit.HOUR : CalendarDateUnit.MINUTE;
+    }
+
+    public Reader getStreamOfCSV() {
+        return this.fetch(myFullOutputSize);
+    }
+
+    /**
+     * Will use the compact output size (regardless of how this fetcher was configured) if that is enough.
+     */
+    public Reader getStreamOfCSV(final Instant since) {
+        if ((since != null) && ((Instant.now().toEpochMilli() - since.toEpochMilli()) < (COMPACT_BARS * myInterval.toDurationInMillis()))) {
+            return this.fetch(false);
+        } else {
+            return this.getStreamOfCSV();
+        }
+    }
+
+    public String getSymbol() {
+        return mySymbol;
+    }
+
+    private Reader fetch(final boolean fullOutputSize) {
+        return RequestScheduler.of(this.getProvider()).execute(() -> this.newRequest(fullOutputSize).response());
+    }
+
+    private ResourceLocator.Request newRequest(final boolean fullOutputSize) {
+
+        ResourceLocator.Request retVal = ResourceLocator.session().request().host("www.alphavantage.co").path("/query");
+
+        retVal.query("function", "TIME_SERIES_INTRADAY");
+        retVal.query("symbol", mySymbol);
+        retVal.query("interval", myMinutes + "min");
+        retVal.query("apikey", myApiKey);
+        retVal.query("datatype", "csv");
+        if (fullOutputSize && !"demo".equals(myApiKey)) {
+            retVal.query("outputsize", "full");
+        }
+
+        return retVal;
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Locale;
+
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Serves the CSV data from a local archive of recorded provider responses - no network access. The files
+ * are named "&lt;provider&gt;-&lt;symbol&gt;-&lt;daily|weekly|monthly&gt;.csv" (same as the test resources), for
+ * example "Yahoo-AAPL-daily.csv". A replayed file is read into memory, not mapped, so a later recording can
+ * replace it (on every platform) while what was already replayed is still being read.
+ * <p>
+ * In record mode every (full) fetch is delegated to a live fetcher and the response is written to the
+ * archive before it is served from there. Incremental fetches, {@link #getStreamOfCSV(LocalDate)},
+ * are passed through without recording.
+ *
+ * @author apete
+ */
+public final class ArchiveFetcher implements DataFetcher {
+
+    /**
+     * Decodes chars directly from the file's bytes - UTF-8, the same as when recording
+     */
+    static final class DecodingReader extends Reader {
+
+        private ByteBuffer myBuffer;
+        private final CharsetDecoder myDecoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        /**
+         * Decoded but not yet read chars - only used when asked for fewer chars than a code point decodes to
+         */
+        private final CharBuffer myPending = CharBuffer.allocate(2);
+
+        DecodingReader(final ByteBuffer buffer) {
+            super();
+            myBuffer = buffer;
+            // Cast to Buffer - the covariant overrides (Java 9+) don't exist on Java 8
+            ((Buffer) myPending).flip();
+        }
+
+        @Override
+        public void close() {
+            myBuffer = null;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+
+            if (myBuffer == null) {
+                throw new IOException("Closed!");
+            }
+
+            if (len <= 0) {
+                return 0;
+            }
+
+            if (myPending.hasRemaining()) {
+                int count = Math.min(len, myPending.remaining());
+                myPending.get(cbuf, off, count);
+                return count;
+            }
+
+            if (!myBuffer.hasRemaining()) {
+                return -1;
+            }
+
+            CharBuffer target = CharBuffer.wrap(cbuf, off, len);
+            myDecoder.decode(myBuffer, target, true);
+            int count = target.position() - off;
+
+            if (count == 0) {
+                // No room for a surrogate pair
+                ((Buffer) myPending).clear();
+                myDecoder.decode(myBuffer, myPending, true);
+                ((Buffer) myPending).flip();
+                return this.read(cbuf, off, len);
+            }
+
+            return count;
+        }
+
+    }
+
+    /**
+     * @return The archive file name for this provider, symbol and resolution
+     */
+    public static String name(final String provider, final String symbol, final CalendarDateUnit resolution) {
+
+        String suffix;
+        switch (resolution) {
+        case DAY:
+            suffix = "daily";
+            break;
+        case WEEK:
+            suffix = "weekly";
+            break;
+        case MONTH:
+            suffix = "monthly";
+            break;
+        default:
+            suffix = resolution.name().toLowerCase(Locale.ROOT);
+            break;
+        }
+
+        return provider + "-" + symbol.replaceAll("[^A-Za-z0-9._^-]", "_") + "-" + suffix + ".csv";
+    }
+
+    /**
+     * Record mode - fetches from the live fetcher and tees the responses into the archive.
+     */
+    public static ArchiveFetcher recording(final DataFetcher live, final File directory) {
+        return new ArchiveFetcher(directory, live.getProvider(), live.getSymbol(), live.getResolution(), live);
+    }
+
+    private final File myFile;
+    private final DataFetcher myLive;
+    private final String myProvider;
+    private final CalendarDateUnit myResolution;
+    private final String mySymbol;
+
+    /**
+     * Replay mode
+     */
+    public ArchiveFetcher(final File directory, final String provider, final String symbol, final CalendarDateUnit resolution) {
+        this(directory, provider, symbol, resolution, null);
+    }
+
+    private ArchiveFetcher(final File directory, final String provider, final String symbol, final CalendarDateUnit resolution, final DataFetcher live) {
+
+        super();
+
+        myProvider = provider;
+        mySymbol = symbol;
+        myResolution = resolution;
+        myLive = live;
+        myFile = new File(directory, ArchiveFetcher.name(provider, symbol, resolution));
+    }
+
+    public File getFile() {
+        return myFile;
+    }
+
+    public String getProvider() {
+        return myProvider;
+    }
+
+    public CalendarDateUnit getResolution() {
+        return myResolution;
+    }
+
+    public Reader getStreamOfCSV() {
+        try {
+            if (myLive != null) {
+                this.record();
+            }
+            return this.replay();
+        } catch (IOException cause) {
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public Reader getStreamOfCSV(final LocalDate since) {
+        if ((myLive != null) && (since != null)) {
+            return myLive.getStreamOfCSV(since);
+        } else {
+            return this.getStreamOfCSV();
+        }
+    }
+
+    public String getSymbol() {
+        return mySymbol;
+    }
+
+    public boolean isRecording() {
+        return myLive != null;
+    }
+
+    /**
+     * Writes to a temporary file that is then moved to replace the archive file - a concurrent reader never
+     * sees a partially written file, and a failed fetch does not destroy what was already recorded.
+     */
+    private void record() throws IOException {
+
+        File directory = myFile.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+
+        File temporary = File.createTempFile(myFile.getName(), ".tmp", directory);
+
+        try (Reader reader = myLive.getStreamOfCSV();
+                Writer writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+
+            if (reader == null) {
+                throw new IOException("No response from " + myProvider + " for " + mySymbol + "!");
+            }
+
+            char[] buffer = new char[8192];
+            for (int count; (count = reader.read(buffer)) >= 0;) {
+                writer.write(buffer, 0, count);
+            }
+
+        } catch (IOException | RuntimeException cause) {
+            temporary.delete();
+            throw cause;
+        }
+
+        try {
+            Files.move(temporary.toPath(), myFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException cause) {
+            temporary.delete();
+            throw cause;
+        }
+    }
+
+    private Reader replay() throws IOException {
+
+        if (!myFile.isFile()) {
+            throw new FileNotFoundException(myFile.getPath());
+        }
+
+        return new DecodingReader(ByteBuffer.wrap(Files.readAllBytes(myFile.toPath())));
+    }
+
+}
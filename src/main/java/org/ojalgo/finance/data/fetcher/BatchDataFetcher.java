@@ -0,0 +1,59 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.Reader;
+import java.util.Collection;
+
+import org.ojalgo.finance.data.parser.BatchParser;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Fetches the data for several symbols in one request. A {@link DataFetcher} whose provider has a batch
+ * endpoint exposes it with {@link DataFetcher#getBatchFetcher()}, and then DataSource.Coordinated and
+ * SourceCache use it automatically when several sources from that provider are requested together.
+ *
+ * @author apete
+ */
+public interface BatchDataFetcher {
+
+    /**
+     * @return The maximum number of symbols per request
+     */
+    default int getMaxSymbols() {
+        return 100;
+    }
+
+    /**
+     * @return Identifies the data provider - the same as {@link DataFetcher#getProvider()}
+     */
+    String getProvider();
+
+    /**
+     * @param symbols At most {@link #getMaxSymbols()} symbols
+     * @return A stream reader of CSV where each line begins with the symbol, followed by the same fields as
+     *         the single symbol response - to be demultiplexed by a {@link BatchParser}. Returns null if the
+     *         request failed.
+     */
+    Reader getStreamOfCSV(Collection<String> symbols, CalendarDateUnit resolution);
+
+}
@@ -22,11 +22,29 @@
 package org.ojalgo.finance.data.fetcher;
 
 import java.io.Reader;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.ojalgo.type.CalendarDateUnit;
 
 public interface DataFetcher {
 
+    /**
+     * @return The batch (multi-symbol) fetcher of this provider, or null if there is none. The default is
+     *         none.
+     */
+    default BatchDataFetcher getBatchFetcher() {
+        return null;
+    }
+
+    /**
+     * @return Identifies the data provider (Yahoo, AlphaVantage, IEXTrading...)
+     */
+    default String getProvider() {
+        return this.getClass().getSimpleName();
+    }
+
     /**
      * @return Typically DAY(ly), WEEK(ly) or MONTH(ly)
      */
@@ -37,6 +55,44 @@ public interface DataFetcher {
      */
     Reader getStreamOfCSV();
 
+    /**
+     * Request only the data from (and including) a specific date. Typically used to incrementally refresh
+     * already fetched data. The returned stream may contain more data than requested. This default
+     * implementation simply returns everything.
+     *
+     * @param since The first date of interest, or null to get everything
+     * @return A stream reader that can be sent to a CSV parser
+     */
+    default Reader getStreamOfCSV(final LocalDate since) {
+        return this.getStreamOfCSV();
+    }
+
+    /**
+     * A conditional request - the committed validators of a previous response (to the same URL) are sent
+     * with the request, and those of this response are pending until {@link Validators#commit()}. If the
+     * provider answers 304 Not Modified the data has not changed since that previous response, and
+     * {@link Validators#NOT_MODIFIED} is returned. This default implementation ignores the validators.
+     *
+     * @param since The first date of interest, or null to get everything
+     * @param validators Remembered from previous responses (to the same caller)
+     * @return A stream reader that can be sent to a CSV parser, or {@link Validators#NOT_MODIFIED}
+     */
+    default Reader getStreamOfCSV(final LocalDate since, final Validators validators) {
+        return this.getStreamOfCSV(since);
+    }
+
+    /**
+     * Asynchronous version of {@link #getStreamOfCSV(LocalDate)}. This default implementation runs the
+     * (blocking) request as a task on the executor. A fetcher with a non-blocking HTTP client should override
+     * it.
+     *
+     * @param since The first date of interest, or null to get everything
+     * @param executor Where to run the request
+     */
+    default CompletableFuture<Reader> getStreamOfCSVAsync(final LocalDate since, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> this.getStreamOfCSV(since), executor);
+    }
+
     /**
      * @return Data identifier
      */
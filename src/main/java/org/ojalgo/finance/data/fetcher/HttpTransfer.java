@@ -0,0 +1,138 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A GET request that negotiates gzip compression and, if there are {@link Validators}, is conditional.
+ * Cookies are handled by the default {@link java.net.CookieHandler}, the same as with the ResourceLocator
+ * sessions.
+ *
+ * @author apete
+ */
+final class HttpTransfer implements RequestScheduler.Exchange {
+
+    private static final String GZIP = "gzip";
+    private static final int TIMEOUT = 60_000;
+
+    /**
+     * @param query Parameter name/value pairs - null values are skipped
+     */
+    static URL url(final String host, final String path, final String... query) {
+
+        StringBuilder builder = new StringBuilder("https://").append(host).append(path);
+
+        char separator = '?';
+        try {
+            for (int i = 0; (i + 1) < query.length; i += 2) {
+                if (query[i + 1] != null) {
+                    builder.append(separator).append(query[i]).append('=').append(URLEncoder.encode(query[i + 1], StandardCharsets.UTF_8.name()));
+                    separator = '&';
+                }
+            }
+            return new URL(builder.toString());
+        } catch (UnsupportedEncodingException | MalformedURLException cause) {
+            throw new IllegalArgumentException(cause);
+        }
+    }
+
+    private final HttpURLConnection myConnection;
+    private final URL myURL;
+    private final Validators myValidators;
+
+    /**
+     * @param validators May be null - then the request is unconditional
+     */
+    HttpTransfer(final URL url, final Validators validators) throws IOException {
+
+        super();
+
+        myConnection = (HttpURLConnection) url.openConnection();
+        myURL = url;
+        myValidators = validators;
+
+        myConnection.setConnectTimeout(TIMEOUT);
+        myConnection.setReadTimeout(TIMEOUT);
+        myConnection.setRequestProperty("Accept-Encoding", GZIP);
+        if (validators != null) {
+            validators.apply(url, myConnection);
+        }
+    }
+
+    /**
+     * Drains and closes the (error) response body, so that the connection can be reused. If there is no
+     * body the connection is disconnected.
+     */
+    public void discard() throws IOException {
+
+        InputStream stream = myConnection.getErrorStream();
+
+        if (stream != null) {
+            try (InputStream body = stream) {
+                byte[] buffer = new byte[4096];
+                while (body.read(buffer) >= 0) {
+                    // drain
+                }
+            }
+        } else {
+            myConnection.disconnect();
+        }
+    }
+
+    public String getHeader(final String name) {
+        return myConnection.getHeaderField(name);
+    }
+
+    public int getStatusCode() throws IOException {
+        return myConnection.getResponseCode();
+    }
+
+    /**
+     * Only called for successful responses. Remembers the validators (pending until committed by whoever
+     * parses and stores the data) and decompresses the body if needed.
+     */
+    public Reader getStreamReader() throws IOException {
+
+        if (myValidators != null) {
+            myValidators.receive(myURL, myConnection);
+        }
+
+        InputStream stream = myConnection.getInputStream();
+        if (GZIP.equalsIgnoreCase(myConnection.getContentEncoding())) {
+            stream = new GZIPInputStream(stream);
+        }
+
+        return new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.Reader;
+import java.util.Collection;
+
+import org.ojalgo.netio.ResourceLocator;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * The IEX Trading market batch endpoint - the daily chart of up to 100 symbols per request. In CSV format
+ * the batch response is assumed to have the symbol as its first column, followed by the same columns as the
+ * single symbol chart. That has not been verified against the live endpoint, which is why batching is
+ * opt-in, see {@link IEXTradingFetcher#IEXTradingFetcher(String, boolean)}. If the format differs no rows
+ * are demultiplexed, and each symbol is then fetched on its own.
+ *
+ * @author apete
+ */
+final class IEXTradingBatchFetcher implements BatchDataFetcher {
+
+    static final IEXTradingBatchFetcher INSTANCE = new IEXTradingBatchFetcher();
+
+    private IEXTradingBatchFetcher() {
+        super();
+    }
+
+    public String getProvider() {
+        return "IEXTrading";
+    }
+
+    /**
+     * IEX Trading only has daily data, regardless of the resolution.
+     */
+    public Reader getStreamOfCSV(final Collection<String> symbols, final CalendarDateUnit resolution) {
+        return RequestScheduler.of(this.getProvider()).execute(() -> this.newRequest(symbols).response());
+    }
+
+    private ResourceLocator.Request newRequest(final Collection<String> symbols) {
+        return ResourceLocator.session().request().host("cloud.iexapis.com").path("/1.0/stock/market/batch").query("symbols", String.join(",", symbols))
+                .query("types", "chart").query("range", "5y").query("format", "csv");
+    }
+
+}
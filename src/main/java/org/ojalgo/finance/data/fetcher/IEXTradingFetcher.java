@@ -1,8 +1,10 @@
 package org.ojalgo.finance.data.fetcher;
 
 import java.io.Reader;
+import java.net.URL;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
-import org.ojalgo.netio.ResourceLocator;
 import org.ojalgo.type.CalendarDateUnit;
 
 /**
@@ -10,7 +12,40 @@ import org.ojalgo.type.CalendarDateUnit;
  */
 public class IEXTradingFetcher implements DataFetcher {
 
-    private final ResourceLocator myResourceLocator;
+    private static final String RANGE_1M = "1m";
+    private static final String RANGE_1Y = "1y";
+    private static final String RANGE_2Y = "2y";
+    private static final String RANGE_3M = "3m";
+    private static final String RANGE_5Y = "5y";
+    private static final String RANGE_6M = "6m";
+
+    /**
+     * The shortest chart range that covers the specified date
+     */
+    private static String range(final LocalDate since) {
+
+        if (since == null) {
+            return RANGE_5Y;
+        }
+
+        long days = ChronoUnit.DAYS.between(since, LocalDate.now());
+
+        if (days < 28L) {
+            return RANGE_1M;
+        } else if (days < 90L) {
+            return RANGE_3M;
+        } else if (days < 181L) {
+            return RANGE_6M;
+        } else if (days < 365L) {
+            return RANGE_1Y;
+        } else if (days < 730L) {
+            return RANGE_2Y;
+        } else {
+            return RANGE_5Y;
+        }
+    }
+
+    private final boolean myBatch;
     private final String mySymbol;
 
     /**
@@ -19,12 +54,30 @@ public class IEXTradingFetcher implements DataFetcher {
      * @param symbol Symbol of stock
      */
     public IEXTradingFetcher(final String symbol) {
+        this(symbol, false);
+    }
+
+    /**
+     * @param symbol Symbol of stock
+     * @param batch Allow batch requests - see {@link IEXTradingBatchFetcher} for the assumed response format
+     */
+    public IEXTradingFetcher(final String symbol, final boolean batch) {
 
         super();
 
         mySymbol = symbol;
+        myBatch = batch;
+    }
+
+    /**
+     * @return The batch fetcher if enabled with the constructor, otherwise null
+     */
+    public BatchDataFetcher getBatchFetcher() {
+        return myBatch ? IEXTradingBatchFetcher.INSTANCE : null;
+    }
 
-        myResourceLocator = new ResourceLocator().host("cloud.iexapis.com").path("/1.0/stock/" + symbol + "/chart/5y").query("format", "csv");
+    public String getProvider() {
+        return "IEXTrading";
     }
 
     /**
@@ -37,10 +90,33 @@ public class IEXTradingFetcher implements DataFetcher {
     }
 
     public Reader getStreamOfCSV() {
-        return myResourceLocator.getStreamReader();
+        return this.fetch(this.getURL(null), null);
+    }
+
+    public Reader getStreamOfCSV(final LocalDate since) {
+        return this.getStreamOfCSV(since, null);
+    }
+
+    /**
+     * Will request the shortest chart range that covers the specified date.
+     */
+    public Reader getStreamOfCSV(final LocalDate since, final Validators validators) {
+        return this.fetch(this.getURL(since), validators);
     }
 
     public String getSymbol() {
         return mySymbol;
     }
+
+    /**
+     * @param since The first date of interest, or null to get everything
+     * @return The URL to request - the shortest chart range that covers the date
+     */
+    URL getURL(final LocalDate since) {
+        return HttpTransfer.url("cloud.iexapis.com", "/1.0/stock/" + mySymbol + "/chart/" + IEXTradingFetcher.range(since), "format", "csv");
+    }
+
+    private Reader fetch(final URL url, final Validators validators) {
+        return RequestScheduler.of(this.getProvider()).transfer(() -> new HttpTransfer(url, validators));
+    }
 }
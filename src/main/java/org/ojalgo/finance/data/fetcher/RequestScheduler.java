@@ -0,0 +1,423 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.ojalgo.netio.BasicLogger;
+import org.ojalgo.netio.ResourceLocator;
+
+/**
+ * Schedules the requests to one data provider. All fetchers of the same provider share one instance, see
+ * {@link #of(String)}.
+ * <ul>
+ * <li>A token bucket limits the request rate - callers block until a token is available.
+ * <li>Throttled (HTTP 429, or an AlphaVantage "Note"/"Information" response body) and transient (HTTP 5xx,
+ * I/O failure) errors are retried with exponential backoff - never sooner than a Retry-After header asks
+ * for, and not at all if that is more than the max backoff. The body of a response that is not used is
+ * drained and closed. Other client errors (HTTP 4xx) and other non-CSV response bodies (e.g. an AlphaVantage
+ * "Error Message" for an invalid API key or symbol) are not retried.
+ * <li>A request that fails (also after the retries) throws an {@link IllegalStateException}.
+ * <li>A 304 Not Modified response, to a conditional request, results in {@link Validators#NOT_MODIFIED}.
+ * <li>Queue depth, wait time, retry and failure counts are available as metrics.
+ * </ul>
+ * The default is no rate limit, except for AlphaVantage (5 requests per minute) and IEXTrading (100 requests
+ * per second), and 4 retries starting with a 1s backoff.
+ *
+ * @author apete
+ */
+public final class RequestScheduler {
+
+    /**
+     * One attempt at a request - what the scheduler needs from the response.
+     */
+    interface Exchange {
+
+        /**
+         * Called when the response body is not used - drain/close it so that the connection can be reused.
+         */
+        default void discard() throws IOException {
+            // Nothing to release
+        }
+
+        /**
+         * @return The value of that response header, or null
+         */
+        default String getHeader(final String name) {
+            return null;
+        }
+
+        int getStatusCode() throws IOException;
+
+        Reader getStreamReader() throws IOException;
+
+    }
+
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(1L);
+    private static final int PEEK_LIMIT = 256;
+    private static final Map<String, RequestScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+
+    static {
+        RequestScheduler.of("AlphaVantage").rate(5, TimeUnit.MINUTES);
+        RequestScheduler.of("IEXTrading").rate(100, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return The (shared) scheduler of that provider - created if it didn't already exist.
+     */
+    public static RequestScheduler of(final String provider) {
+        return SCHEDULERS.computeIfAbsent(provider, RequestScheduler::new);
+    }
+
+    /**
+     * Quietly - the attempt has already failed
+     */
+    private static void discard(final Exchange response) {
+        if (response != null) {
+            try {
+                response.discard();
+            } catch (IOException | RuntimeException cause) {
+                BasicLogger.error("Failed to discard response: {}", cause.getMessage());
+            }
+        }
+    }
+
+    private static boolean isCSV(final String body) {
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (!Character.isWhitespace(c) && (c != '\uFEFF')) {
+                // JSON or HTML is an error message
+                return (c != '{') && (c != '<');
+            }
+        }
+        return true;
+    }
+
+    /**
+     * AlphaVantage returns its rate limit messages as JSON, with status 200, keyed "Note" or "Information".
+     * Any other non-CSV body is a permanent error.
+     */
+    private static boolean isThrottled(final String body) {
+        return body.contains("\"Note\"") || body.contains("\"Information\"");
+    }
+
+    /**
+     * @param value A Retry-After header value - either delay-seconds or an HTTP-date
+     * @return How long (ms) the provider asked us to wait, or 0 if not specified (or not understood)
+     */
+    static long retryAfter(final String value) {
+
+        if (value == null) {
+            return 0L;
+        }
+
+        String trimmed = value.trim();
+        try {
+            return Math.max(0L, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                return Math.max(0L, ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException notDate) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * @return The beginning of the response body - not consumed from the reader
+     */
+    private static String peek(final BufferedReader reader) throws IOException {
+        reader.mark(PEEK_LIMIT);
+        try {
+            char[] buffer = new char[PEEK_LIMIT];
+            int length = 0;
+            for (int count; (length < PEEK_LIMIT) && ((count = reader.read(buffer, length, PEEK_LIMIT - length)) >= 0);) {
+                length += count;
+            }
+            return new String(buffer, 0, length);
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private volatile long myBackoff = 1_000L;
+    private final AtomicLong myFailureCount = new AtomicLong();
+    private long myLastRefill = System.nanoTime();
+    private final String myProvider;
+    private final AtomicInteger myQueueDepth = new AtomicInteger();
+    private double myRate = Double.POSITIVE_INFINITY;
+    private final AtomicLong myRequestCount = new AtomicLong();
+    private final AtomicLong myRetryCount = new AtomicLong();
+    private volatile int myRetries = 4;
+    private double myTokens = 1.0;
+    private double myTokensMax = 1.0;
+    private final AtomicLong myWaitTime = new AtomicLong();
+
+    RequestScheduler(final String provider) {
+        super();
+        myProvider = provider;
+    }
+
+    /**
+     * @param initial The delay before the first retry - doubled for every subsequent retry (max 1 minute).
+     */
+    public RequestScheduler backoff(final long initial, final TimeUnit unit) {
+        myBackoff = unit.toMillis(initial);
+        return this;
+    }
+
+    /**
+     * Blocks until the rate limit permits, executes the request and verifies the response. Retries with
+     * exponential backoff if the request was throttled or failed.
+     *
+     * @param request Creates and executes a request - called once per attempt
+     * @return A reader of the (verified) response body
+     * @throws IllegalStateException If all attempts failed, or the request was rejected
+     */
+    public Reader execute(final Supplier<ResourceLocator.Response> request) {
+        return this.exchange(() -> {
+            ResourceLocator.Response response = request.get();
+            return new Exchange() {
+
+                public int getStatusCode() {
+                    return response.getStatusCode();
+                }
+
+                public Reader getStreamReader() {
+                    return response.getStreamReader();
+                }
+
+                public void discard() throws IOException {
+                    Reader reader = response.getStreamReader();
+                    if (reader != null) {
+                        reader.close();
+                    }
+                }
+
+            };
+        });
+    }
+
+    /**
+     * @return The number of requests that failed also after all retries
+     */
+    public long getFailureCount() {
+        return myFailureCount.get();
+    }
+
+    public String getProvider() {
+        return myProvider;
+    }
+
+    /**
+     * @return The number of callers currently waiting for (or executing) a request
+     */
+    public int getQueueDepth() {
+        return myQueueDepth.get();
+    }
+
+    /**
+     * @return The total number of attempts (including retries)
+     */
+    public long getRequestCount() {
+        return myRequestCount.get();
+    }
+
+    public long getRetryCount() {
+        return myRetryCount.get();
+    }
+
+    /**
+     * @return The total time (ms) callers have waited for the rate limit or backoff
+     */
+    public long getWaitTime() {
+        return myWaitTime.get();
+    }
+
+    /**
+     * Token bucket rate limit. The bucket size (max burst) is the same as the number of requests.
+     *
+     * @param requests The number of requests permitted...
+     * @param per ...per unit of time
+     */
+    public synchronized RequestScheduler rate(final int requests, final TimeUnit per) {
+        myRate = (double) requests / per.toNanos(1L);
+        myTokensMax = requests;
+        myTokens = requests;
+        myLastRefill = System.nanoTime();
+        return this;
+    }
+
+    /**
+     * @param retries The max number of retries per request
+     */
+    public RequestScheduler retries(final int retries) {
+        myRetries = retries;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return myProvider + " queue=" + this.getQueueDepth() + " requests=" + this.getRequestCount() + " retries=" + this.getRetryCount()
+                + " failures=" + this.getFailureCount() + " wait=" + this.getWaitTime() + "ms";
+    }
+
+    /**
+     * The same as {@link #execute(Supplier)} but for {@link HttpTransfer} requests, that may be conditional
+     * and/or compressed.
+     *
+     * @return A reader of the (verified and decompressed) response body, or {@link Validators#NOT_MODIFIED}
+     * @throws IllegalStateException If all attempts failed, or the request was rejected
+     */
+    Reader transfer(final Callable<HttpTransfer> request) {
+        return this.exchange(request);
+    }
+
+    /**
+     * What {@link #execute(Supplier)} and {@link #transfer(Callable)} both do
+     */
+    Reader exchange(final Callable<? extends Exchange> request) {
+
+        myQueueDepth.incrementAndGet();
+        try {
+
+            long backoff = myBackoff;
+            // What the provider asked for (Retry-After) - the minimum wait before the next attempt
+            long retryAfter = 0L;
+
+            String failure = "failed after " + myRetries + " retries";
+            Exception lastCause = null;
+
+            for (int attempt = 0; attempt <= myRetries; attempt++) {
+
+                if (attempt > 0) {
+                    myRetryCount.incrementAndGet();
+                    this.sleep(Math.max(backoff, retryAfter));
+                    backoff = Math.min(2L * backoff, MAX_BACKOFF);
+                    retryAfter = 0L;
+                }
+
+                this.sleep(TimeUnit.NANOSECONDS.toMillis(this.reserve()));
+                myRequestCount.incrementAndGet();
+
+                Exchange response = null;
+                try {
+
+                    response = request.call();
+                    int status = response.getStatusCode();
+                    if (status == 304) {
+                        return Validators.NOT_MODIFIED;
+                    } else if ((status == 429) || (status >= 500)) {
+                        retryAfter = RequestScheduler.retryAfter(response.getHeader("Retry-After"));
+                        RequestScheduler.discard(response);
+                        if (retryAfter > MAX_BACKOFF) {
+                            // Don't retry sooner than asked to, and don't block the caller that long
+                            failure = "throttled - retry after " + TimeUnit.MILLISECONDS.toSeconds(retryAfter) + "s";
+                            break;
+                        }
+                        continue;
+                    } else if (status >= 400) {
+                        // Client error - retrying will not help
+                        RequestScheduler.discard(response);
+                        failure = "rejected with status " + status;
+                        break;
+                    }
+
+                    Reader reader = response.getStreamReader();
+                    if (reader == null) {
+                        RequestScheduler.discard(response);
+                        continue;
+                    }
+
+                    BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+                    String body = RequestScheduler.peek(buffered);
+                    if (RequestScheduler.isCSV(body)) {
+                        return buffered;
+                    }
+                    buffered.close();
+                    if (!RequestScheduler.isThrottled(body)) {
+                        // Error message - retrying will not help
+                        failure = "rejected: " + body.trim();
+                        break;
+                    }
+
+                } catch (Exception cause) {
+                    BasicLogger.error("{} request failed: {}", myProvider, cause.getMessage());
+                    lastCause = cause;
+                    RequestScheduler.discard(response);
+                }
+            }
+
+            myFailureCount.incrementAndGet();
+            BasicLogger.error("{} request {}!", myProvider, failure);
+            throw new IllegalStateException(myProvider + " request " + failure + "!", lastCause);
+
+        } finally {
+            myQueueDepth.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a token, going into debt if none is available.
+     *
+     * @return How long (ns) to wait before the token is actually available
+     */
+    private synchronized long reserve() {
+
+        if (Double.isInfinite(myRate)) {
+            return 0L;
+        }
+
+        long now = System.nanoTime();
+        myTokens = Math.min(myTokensMax, myTokens + ((now - myLastRefill) * myRate));
+        myLastRefill = now;
+
+        myTokens -= 1.0;
+
+        return myTokens >= 0.0 ? 0L : (long) (-myTokens / myRate);
+    }
+
+    private void sleep(final long millis) {
+        if (millis > 0L) {
+            myWaitTime.addAndGet(millis);
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException cause) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * The HTTP cache validators (ETag and Last-Modified) of a response to a data request. Sent back with the
+ * next request (If-None-Match and If-Modified-Since) so that the provider can answer 304 Not Modified,
+ * rather than the full CSV, if nothing has changed. One instance per cached data set - see
+ * {@link DataFetcher#getStreamOfCSV(java.time.LocalDate, Validators)}.
+ * <p>
+ * The validators of a response are pending until {@link #commit()} is called, which should only be done
+ * once the response has been successfully parsed and stored. Otherwise an error message, or anything else
+ * that could not be used, would be validated against and never fetched again. The validators are only sent
+ * with requests to the same URL as the response they are from.
+ *
+ * @author apete
+ */
+public final class Validators {
+
+    /**
+     * Returned, instead of a stream reader, when the provider answered 304 Not Modified. It is empty, and
+     * closing it does nothing.
+     */
+    public static final Reader NOT_MODIFIED = new Reader() {
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) {
+            return -1;
+        }
+
+    };
+
+    private String myETag = null;
+    private String myLastModified = null;
+    private String myPendingETag = null;
+    private String myPendingLastModified = null;
+    private String myPendingURL = null;
+    private String myURL = null;
+
+    public Validators() {
+        super();
+    }
+
+    /**
+     * Start using the validators of the latest response - call this when that response has been successfully
+     * parsed and stored. Does nothing if there is no pending response.
+     */
+    public synchronized void commit() {
+        if (myPendingURL != null) {
+            myETag = myPendingETag;
+            myLastModified = myPendingLastModified;
+            myURL = myPendingURL;
+            this.clearPending();
+        }
+    }
+
+    /**
+     * @return The committed ETag, or null
+     */
+    public synchronized String getETag() {
+        return myETag;
+    }
+
+    /**
+     * @return The committed Last-Modified, or null
+     */
+    public synchronized String getLastModified() {
+        return myLastModified;
+    }
+
+    /**
+     * @return true if nothing has been committed - the next request will be unconditional
+     */
+    public synchronized boolean isEmpty() {
+        return (myETag == null) && (myLastModified == null);
+    }
+
+    /**
+     * Forget the validators - the next request will be unconditional.
+     */
+    public synchronized void reset() {
+        myETag = null;
+        myLastModified = null;
+        myURL = null;
+        this.clearPending();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ETag=" + myETag + " Last-Modified=" + myLastModified + " URL=" + myURL;
+    }
+
+    private void clearPending() {
+        myPendingETag = null;
+        myPendingLastModified = null;
+        myPendingURL = null;
+    }
+
+    /**
+     * Set the conditional request headers - if the committed validators are from the same URL. A new request
+     * replaces any pending (not committed) response.
+     */
+    synchronized void apply(final URL url, final HttpURLConnection connection) {
+
+        this.clearPending();
+
+        if (url.toExternalForm().equals(myURL)) {
+            if (myETag != null) {
+                connection.setRequestProperty("If-None-Match", myETag);
+            }
+            if (myLastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", myLastModified);
+            }
+        }
+    }
+
+    /**
+     * Remember the validators of a (200 OK) response - pending until {@link #commit()}
+     */
+    synchronized void receive(final URL url, final HttpURLConnection connection) {
+        myPendingETag = connection.getHeaderField("ETag");
+        myPendingLastModified = connection.getHeaderField("Last-Modified");
+        myPendingURL = url.toExternalForm();
+    }
+
+}
@@ -21,10 +21,28 @@
  */
 package org.ojalgo.finance.data.fetcher;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
+import java.net.CookieHandler;
+import java.net.CookieManager;
+import java.net.CookieStore;
+import java.net.HttpCookie;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
+import org.ojalgo.finance.data.Instrumentation;
 import org.ojalgo.netio.BasicLogger;
 import org.ojalgo.netio.ResourceLocator;
 import org.ojalgo.netio.ResourceLocator.Request;
@@ -38,10 +56,10 @@ public class YahooSession {
     public static class Fetcher implements DataFetcher {
 
         private final CalendarDateUnit myResolution;
-        private final ResourceLocator.Session mySession;
+        private final YahooSession mySession;
         private final String mySymbol;
 
-        Fetcher(ResourceLocator.Session session, String symbol, CalendarDateUnit resolution) {
+        Fetcher(YahooSession session, String symbol, CalendarDateUnit resolution) {
             super();
             mySession = session;
             mySymbol = symbol;
@@ -49,66 +67,45 @@ public class YahooSession {
 
         }
 
+        public String getProvider() {
+            return "Yahoo";
+        }
+
         public CalendarDateUnit getResolution() {
             return myResolution;
         }
 
         public Reader getStreamOfCSV() {
+            return this.getStreamOfCSV(null);
+        }
 
-            if (debug) {
-                BasicLogger.debug();
-                BasicLogger.debug("Begin getStreamOfCSV");
-                BasicLogger.debug();
-            }
-
-            String crumb = mySession.getParameterValue(CRUMB);
-            if ((crumb == null) || (crumb.length() <= 0)) {
-                // No crumb, and assume no cookie either
-
-                Request challengeRequest = YahooSession.buildChallengeRequest(mySession, mySymbol);
-                Response challengeResponse = challengeRequest.response();
-
-                if (debug) {
-                    challengeRequest.print(BasicLogger.DEBUG);
-                    challengeResponse.print(BasicLogger.DEBUG);
-                }
+        /**
+         * Sets the "period1" request parameter to the specified date, rather than 30 years ago.
+         */
+        public Reader getStreamOfCSV(final LocalDate since) {
+            return this.getStreamOfCSV(since, null);
+        }
 
-                if ((challengeResponse.toString() != null) && !challengeRequest.equals(challengeResponse.getRequest())) {
-                    // Was redirect (to ask for consent)
+        public Reader getStreamOfCSV(final LocalDate since, final Validators validators) {
 
-                    YahooSession.scrapeChallengeResponse(mySession, challengeResponse);
+            mySession.handshake(mySymbol, null);
 
-                    Request consentRequest = YahooSession.buildConsentRequest(mySession, challengeRequest);
-                    Response consentResponse = consentRequest.response();
+            ResourceLocator.Session session = mySession.mySession;
 
-                    if ((consentResponse.toString() != null) && debug) {
-                        consentRequest.print(BasicLogger.DEBUG);
-                        consentResponse.print(BasicLogger.DEBUG);
-                    }
-                }
+            return RequestScheduler.of(this.getProvider()).transfer(() -> {
 
-                Request crumbRequest = YahooSession.buildCrumbRequest(mySession);
-                Response crumbResponse = crumbRequest.response();
+                String crumb = session.getParameterValue(CRUMB);
+                HttpTransfer transfer = new HttpTransfer(YahooSession.buildDataURL(session, mySymbol, myResolution, since), validators);
 
-                if (debug) {
-                    crumbRequest.print(BasicLogger.DEBUG);
-                    crumbResponse.print(BasicLogger.DEBUG);
+                int status = transfer.getStatusCode();
+                if ((status == 401) || (status == 403)) {
+                    // Crumb/cookie no longer accepted - redo the handshake and try again
+                    mySession.handshake(mySymbol, crumb);
+                    transfer = new HttpTransfer(YahooSession.buildDataURL(session, mySymbol, myResolution, since), validators);
                 }
 
-                YahooSession.scrapeCrumbResponse(mySession, crumbResponse);
-            }
-
-            if (debug) {
-                BasicLogger.debug();
-                BasicLogger.debug("Should be ok now - crumb and cookie");
-                mySession.print(BasicLogger.DEBUG);
-                BasicLogger.debug();
-            }
-
-            ResourceLocator.Request request = YahooSession.buildDataRequest(mySession, mySymbol, myResolution);
-            ResourceLocator.Response response = request.response();
-
-            return response.getStreamReader();
+                return transfer;
+            });
         }
 
         public String getSymbol() {
@@ -117,6 +114,7 @@ public class YahooSession {
 
     }
 
+    private static final String COOKIE = "cookie.";
     private static final CalendarDateDuration DURATION_30_YEARS = new CalendarDateDuration(30, CalendarDateUnit.YEAR);
 
     private static final String END = "\">";
@@ -125,6 +123,7 @@ public class YahooSession {
     private static final String INPUT_TYPE_HIDDEN_NAME_BRAND_BID_VALUE = "<input type=\"hidden\" name=\"brandBid\" value=\"";
     private static final String INPUT_TYPE_HIDDEN_NAME_CSRF_TOKEN_VALUE = "<input type=\"hidden\" name=\"csrfToken\" value=\"";
     private static final String INTERVAL = "interval";
+    private static final String PARAMETER = "parameter.";
     private static final String QUERY1_FINANCE_YAHOO_COM = "query1.finance.yahoo.com";
 
     static final String BRAND_BID = "brandBid";
@@ -133,6 +132,9 @@ public class YahooSession {
     static boolean debug = false;
     static final String SESSION_ID = "sessionId";
 
+    private static final String[] PARAMETERS = { BRAND_BID, CRUMB, CSRF_TOKEN, SESSION_ID };
+    private static final YahooSession SHARED = new YahooSession();
+
     /**
      * A request that requires consent and will set the "B" cookie, but not the crumb
      */
@@ -178,31 +180,56 @@ public class YahooSession {
     }
 
     static ResourceLocator.Request buildDataRequest(Session session, String symbol, CalendarDateUnit resolution) {
+        return YahooSession.buildDataRequest(session, symbol, resolution, null);
+    }
+
+    /**
+     * @param since The first date to request data for. If null it will be 30 years ago.
+     */
+    static ResourceLocator.Request buildDataRequest(Session session, String symbol, CalendarDateUnit resolution, LocalDate since) {
+
+        String[] query = YahooSession.buildDataQuery(session, resolution, since);
 
         ResourceLocator.Request request = session.request().host(QUERY1_FINANCE_YAHOO_COM).path("/v7/finance/download/" + symbol);
+        for (int i = 0; i < query.length; i += 2) {
+            request.query(query[i], query[i + 1]);
+        }
+
+        return request;
+    }
+
+    /**
+     * The same as {@link #buildDataRequest(Session, String, CalendarDateUnit, LocalDate)} but as a URL, for
+     * an {@link HttpTransfer}. The session's cookies are in the default {@link CookieHandler}.
+     */
+    static URL buildDataURL(Session session, String symbol, CalendarDateUnit resolution, LocalDate since) {
+        return HttpTransfer.url(QUERY1_FINANCE_YAHOO_COM, "/v7/finance/download/" + symbol, YahooSession.buildDataQuery(session, resolution, since));
+    }
 
+    /**
+     * @return Query parameter name/value pairs
+     */
+    private static String[] buildDataQuery(Session session, CalendarDateUnit resolution, LocalDate since) {
+
+        String interval;
         switch (resolution) {
         case MONTH:
-            request.query(INTERVAL, 1 + "mo");
+            interval = 1 + "mo";
             break;
         case WEEK:
-            request.query(INTERVAL, 1 + "wk");
+            interval = 1 + "wk";
             break;
         default:
-            request.query(INTERVAL, 1 + "d");
+            interval = 1 + "d";
             break;
         }
 
-        request.query("events", "history");
-
         final Instant now = Instant.now();
-        final Instant past = now.minus(DURATION_30_YEARS.toDurationInMillis(), ChronoUnit.MILLIS);
-
-        request.query("period1", Long.toString(past.getEpochSecond()));
-        request.query("period2", Long.toString(now.getEpochSecond()));
-        request.query(CRUMB, session.getParameterValue(CRUMB));
+        final Instant past = since != null ? since.atStartOfDay(ZoneOffset.UTC).toInstant()
+                : now.minus(DURATION_30_YEARS.toDurationInMillis(), ChronoUnit.MILLIS);
 
-        return request;
+        return new String[] { INTERVAL, interval, "events", "history", "period1", Long.toString(past.getEpochSecond()), "period2",
+                Long.toString(now.getEpochSecond()), CRUMB, session.getParameterValue(CRUMB) };
     }
 
     static void scrapeChallengeResponse(ResourceLocator.Session session, ResourceLocator.Response challengeResponse) {
@@ -235,14 +262,266 @@ public class YahooSession {
         session.parameter(CRUMB, crumbResponse.toString());
     }
 
-    private final ResourceLocator.Session mySession = ResourceLocator.session();
+    /**
+     * Restores the session parameters (crumb...) and cookies from a file written by
+     * {@link #store(ResourceLocator.Session, File)}. Cookies are added to the default {@link CookieHandler},
+     * if that is a {@link CookieManager}.
+     *
+     * @return true if there was anything to restore
+     */
+    static boolean restore(ResourceLocator.Session session, File file) {
+
+        if (!file.exists()) {
+            return false;
+        }
+
+        Properties properties = YahooSession.load(file);
+
+        for (String key : PARAMETERS) {
+            String value = properties.getProperty(PARAMETER + key);
+            if (value != null) {
+                session.parameter(key, value);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+
+        CookieHandler handler = CookieHandler.getDefault();
+        if (handler instanceof CookieManager) {
+            CookieStore store = ((CookieManager) handler).getCookieStore();
+            for (int i = 0; properties.getProperty(COOKIE + i + ".name") != null; i++) {
+                String prefix = COOKIE + i;
+                long maxAge = -1L;
+                String expires = properties.getProperty(prefix + ".expires");
+                if (expires != null) {
+                    maxAge = TimeUnit.MILLISECONDS.toSeconds(Long.parseLong(expires) - now);
+                    if (maxAge <= 0L) {
+                        // Expired since it was stored
+                        continue;
+                    }
+                }
+                HttpCookie cookie = new HttpCookie(properties.getProperty(prefix + ".name"), properties.getProperty(prefix + ".value"));
+                cookie.setDomain(properties.getProperty(prefix + ".domain"));
+                cookie.setPath(properties.getProperty(prefix + ".path"));
+                cookie.setMaxAge(maxAge);
+                cookie.setSecure(Boolean.parseBoolean(properties.getProperty(prefix + ".secure")));
+                cookie.setVersion(0);
+                store.add(null, cookie);
+            }
+        }
+
+        String crumb = session.getParameterValue(CRUMB);
+        return (crumb != null) && (crumb.length() > 0);
+    }
+
+    /**
+     * @return One (JVM wide) instance, shared by everyone using it, so that the handshake is done only once -
+     *         until a data request is rejected.
+     */
+    public static YahooSession shared() {
+        return SHARED;
+    }
+
+    /**
+     * Writes the session parameters (crumb...) and the (not expired) Yahoo cookies of the default
+     * {@link CookieHandler} to a file. Cookies are stored with their absolute expiry time.
+     */
+    static void store(ResourceLocator.Session session, File file) {
+
+        long now = System.currentTimeMillis();
+        Properties previous = YahooSession.load(file);
+
+        Properties properties = new Properties();
+
+        for (String key : PARAMETERS) {
+            String value = session.getParameterValue(key);
+            if (value != null) {
+                properties.setProperty(PARAMETER + key, value);
+            }
+        }
+
+        CookieHandler handler = CookieHandler.getDefault();
+        if (handler instanceof CookieManager) {
+            int i = 0;
+            for (HttpCookie cookie : ((CookieManager) handler).getCookieStore().getCookies()) {
+                String domain = cookie.getDomain();
+                if (!cookie.hasExpired() && (domain != null) && domain.contains("yahoo")) {
+                    String prefix = COOKIE + i++;
+                    properties.setProperty(prefix + ".name", cookie.getName());
+                    properties.setProperty(prefix + ".value", cookie.getValue());
+                    properties.setProperty(prefix + ".domain", domain);
+                    if (cookie.getPath() != null) {
+                        properties.setProperty(prefix + ".path", cookie.getPath());
+                    }
+                    long expires = YahooSession.expires(cookie, previous, now);
+                    if (expires >= 0L) {
+                        properties.setProperty(prefix + ".expires", Long.toString(expires));
+                    }
+                    properties.setProperty(prefix + ".secure", Boolean.toString(cookie.getSecure()));
+                }
+            }
+        }
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            properties.store(writer, "Yahoo session");
+        } catch (IOException cause) {
+            BasicLogger.error("Failed to store Yahoo session: {}", cause.getMessage());
+        }
+    }
+
+    /**
+     * The max age of a cookie is relative to when it was received (or restored). A cookie that is still the
+     * same as one in the previously stored file keeps the expiry stored there.
+     *
+     * @return The absolute expiry time (epoch millis), or -1 for a session cookie
+     */
+    private static long expires(HttpCookie cookie, Properties previous, long now) {
+
+        if (cookie.getMaxAge() < 0L) {
+            return -1L;
+        }
+
+        for (int i = 0; previous.getProperty(COOKIE + i + ".name") != null; i++) {
+            String prefix = COOKIE + i;
+            String expires = previous.getProperty(prefix + ".expires");
+            if ((expires != null) && cookie.getName().equals(previous.getProperty(prefix + ".name"))
+                    && cookie.getValue().equals(previous.getProperty(prefix + ".value"))
+                    && cookie.getDomain().equals(previous.getProperty(prefix + ".domain"))) {
+                return Long.parseLong(expires);
+            }
+        }
+
+        return now + TimeUnit.SECONDS.toMillis(cookie.getMaxAge());
+    }
+
+    private static Properties load(File file) {
+
+        Properties retVal = new Properties();
+
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                retVal.load(reader);
+            } catch (IOException cause) {
+                BasicLogger.error("Failed to restore Yahoo session: {}", cause.getMessage());
+            }
+        }
+
+        return retVal;
+    }
 
+    private final File myFile;
+    private final ResourceLocator.Session mySession;
+
+    /**
+     * A new, separate, session. To share one session, and thus the handshake, use {@link #shared()}.
+     */
     public YahooSession() {
+        this(ResourceLocator.session(), null);
+    }
+
+    /**
+     * Same as {@link #YahooSession()} but also persists the session parameters and cookies to a file, and
+     * restores them from that file. That way a restart does not require a new handshake.
+     */
+    public YahooSession(File file) {
+        this(ResourceLocator.session(), file);
+    }
+
+    YahooSession(ResourceLocator.Session session, File file) {
+
         super();
+
+        mySession = session;
+        myFile = file;
+
+        if (myFile != null) {
+            synchronized (mySession) {
+                String crumb = mySession.getParameterValue(CRUMB);
+                if ((crumb == null) || (crumb.length() <= 0)) {
+                    YahooSession.restore(mySession, myFile);
+                }
+            }
+        }
     }
 
     public Fetcher newFetcher(String symbol, CalendarDateUnit resolution) {
-        return new Fetcher(mySession, symbol, resolution);
+        return new Fetcher(this, symbol, resolution);
+    }
+
+    /**
+     * Does the challenge, consent and crumb requests if there is no crumb, or if the current crumb is the
+     * one that was rejected. Concurrent fetchers share the session - only one of them does the handshake.
+     *
+     * @param rejected The crumb that was rejected by a data request, or null
+     */
+    void handshake(String symbol, String rejected) {
+
+        synchronized (mySession) {
+
+            String crumb = mySession.getParameterValue(CRUMB);
+
+            if ((rejected != null) && rejected.equals(crumb)) {
+                mySession.parameter(CRUMB, "");
+                crumb = null;
+            }
+
+            if ((crumb != null) && (crumb.length() > 0)) {
+                return;
+            }
+
+            long started = System.nanoTime();
+
+            if (debug) {
+                BasicLogger.debug();
+                BasicLogger.debug("Begin handshake");
+                BasicLogger.debug();
+            }
+
+            Request challengeRequest = YahooSession.buildChallengeRequest(mySession, symbol);
+            Response challengeResponse = challengeRequest.response();
+
+            if (debug) {
+                challengeRequest.print(BasicLogger.DEBUG);
+                challengeResponse.print(BasicLogger.DEBUG);
+            }
+
+            if ((challengeResponse.toString() != null) && !challengeRequest.equals(challengeResponse.getRequest())) {
+                // Was redirect (to ask for consent)
+
+                YahooSession.scrapeChallengeResponse(mySession, challengeResponse);
+
+                Request consentRequest = YahooSession.buildConsentRequest(mySession, challengeRequest);
+                Response consentResponse = consentRequest.response();
+
+                if ((consentResponse.toString() != null) && debug) {
+                    consentRequest.print(BasicLogger.DEBUG);
+                    consentResponse.print(BasicLogger.DEBUG);
+                }
+            }
+
+            Request crumbRequest = YahooSession.buildCrumbRequest(mySession);
+            Response crumbResponse = crumbRequest.response();
+
+            if (debug) {
+                crumbRequest.print(BasicLogger.DEBUG);
+                crumbResponse.print(BasicLogger.DEBUG);
+            }
+
+            YahooSession.scrapeCrumbResponse(mySession, crumbResponse);
+
+            if (debug) {
+                BasicLogger.debug();
+                BasicLogger.debug("Should be ok now - crumb and cookie");
+                mySession.print(BasicLogger.DEBUG);
+                BasicLogger.debug();
+            }
+
+            if (myFile != null) {
+                YahooSession.store(mySession, myFile);
+            }
+
+            Instrumentation.LISTENER.onHandshake("Yahoo", System.nanoTime() - started);
+        }
     }
 
 }
@@ -6,14 +6,13 @@ import java.time.format.DateTimeFormatter;
 import org.ojalgo.RecoverableCondition;
 import org.ojalgo.finance.data.DatePrice;
 import org.ojalgo.netio.ASCII;
-import org.ojalgo.netio.BasicParser;
 
 /**
  * https://www.alphavantage.co/documentation/
  *
  * @author stefanvanegmond
  */
-public class AlphaVantageParser implements BasicParser<AlphaVantageParser.Data> {
+public class AlphaVantageParser implements DatePriceParser<AlphaVantageParser.Data> {
 
     public static final class Data extends DatePrice {
 
@@ -48,6 +47,66 @@ public class AlphaVantageParser implements BasicParser<AlphaVantageParser.Data>
         super();
     }
 
+    @Override
+    public void parse(final char[] chars, final int begin, final int end, final DatePriceParser.Sink sink) {
+
+        // timestamp,open,high,low,close,adjusted_close,volume,dividend_amount,split_coefficient
+
+        int inclBegin = begin;
+        int exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        int epochDay = CharScanner.parseEpochDay(chars, inclBegin, exclEnd);
+        if (epochDay == CharScanner.INVALID_DAY) {
+            return;
+        }
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double open = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double high = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double low = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double close = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double adjustedClose = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double volume = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        sink.accept(epochDay, open, high, low, close, adjustedClose, volume);
+    }
+
     @Override
     public AlphaVantageParser.Data parse(String line) throws RecoverableCondition {
 
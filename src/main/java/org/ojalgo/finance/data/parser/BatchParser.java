@@ -0,0 +1,97 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.parser;
+
+import java.io.Reader;
+import java.util.function.Function;
+
+import org.ojalgo.netio.ASCII;
+
+/**
+ * Demultiplexes a batch (multi-symbol) response. Each line is expected to begin with the symbol, followed by
+ * a comma and then the same fields as a single symbol response. The symbol is stripped, and the rest of the
+ * line is parsed by the single symbol parser and sent to that symbol's sink.
+ *
+ * @author apete
+ */
+public final class BatchParser {
+
+    private final DatePriceParser<?> myParser;
+
+    /**
+     * @param parser Parses the (single symbol) lines
+     */
+    public BatchParser(final DatePriceParser<?> parser) {
+        super();
+        myParser = parser;
+    }
+
+    /**
+     * Reads everything from the reader, and closes it when done. The sinks are looked up once per
+     * consecutive run of rows with the same symbol.
+     *
+     * @param sinks Maps a symbol to the sink for its rows, or to null if rows with that symbol should be
+     *        ignored
+     */
+    public void parse(final Reader reader, final Function<String, DatePriceParser.Sink> sinks) {
+
+        String[] symbol = { null };
+        DatePriceParser.Sink[] sink = { null };
+
+        CharScanner.scan(reader, (chars, begin, end) -> {
+
+            int comma = CharScanner.indexOf(chars, begin, end, ASCII.COMMA);
+            if (comma < 0) {
+                return;
+            }
+
+            int first = begin;
+            int limit = comma;
+            if (((limit - first) >= 2) && (chars[first] == '"') && (chars[limit - 1] == '"')) {
+                first++;
+                limit--;
+            }
+
+            if (!BatchParser.matches(symbol[0], chars, first, limit)) {
+                symbol[0] = new String(chars, first, limit - first);
+                sink[0] = sinks.apply(symbol[0]);
+            }
+
+            if (sink[0] != null) {
+                myParser.parse(chars, comma + 1, end, sink[0]);
+            }
+        });
+    }
+
+    private static boolean matches(final String symbol, final char[] chars, final int begin, final int end) {
+        if ((symbol == null) || (symbol.length() != (end - begin))) {
+            return false;
+        }
+        for (int i = begin; i < end; i++) {
+            if (symbol.charAt(i - begin) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Low level, allocation free, decoding of CSV lines held in a char buffer.
+ *
+ * @author apete
+ */
+final class CharScanner {
+
+    @FunctionalInterface
+    interface LineHandler {
+
+        void handle(char[] chars, int begin, int end);
+
+    }
+
+    /**
+     * Returned by {@link #parseEpochDay(char[], int, int)} when the text is not a valid ISO date
+     */
+    static final int INVALID_DAY = Integer.MIN_VALUE;
+    static final long INVALID_SECOND = Long.MIN_VALUE;
+
+    private static final int CAPACITY = 8192;
+    private static final char CR = '\r';
+    private static final int DAYS_0000_TO_1970 = 719_528;
+    private static final char LF = '\n';
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_SCALE = 22;
+    private static final int MAX_MANTISSA_DIGITS = 17;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int p = 1; p < POWERS_OF_TEN.length; p++) {
+            POWERS_OF_TEN[p] = POWERS_OF_TEN[p - 1] * 10.0;
+        }
+    }
+
+    /**
+     * @return The index of the first occurrence of the character in the range, or -1 if not found
+     */
+    static int indexOf(final char[] chars, final int begin, final int end, final char character) {
+        for (int i = begin; i < end; i++) {
+            if (chars[i] == character) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same result as {@link Double#parseDouble(String)} but without creating a String. Anything that is not
+     * a number, such as "null" or an empty field, results in NaN (without throwing/catching any exception).
+     * The (rare) inputs that can't be decoded exactly on the fast path are delegated to
+     * {@link Double#parseDouble(String)}.
+     */
+    static double parseDouble(final char[] chars, final int begin, final int end) {
+
+        int i = begin;
+        if (i >= end) {
+            return Double.NaN;
+        }
+
+        boolean negative = false;
+        char c = chars[i];
+        if (c == '-') {
+            negative = true;
+            i++;
+        } else if (c == '+') {
+            i++;
+        }
+
+        long mantissa = 0L;
+        int significant = 0;
+        int scale = 0;
+        boolean digits = false;
+        boolean point = false;
+
+        for (; i < end; i++) {
+            c = chars[i];
+            if ((c >= '0') && (c <= '9')) {
+                digits = true;
+                if ((mantissa != 0L) || (c != '0')) {
+                    if (++significant > MAX_MANTISSA_DIGITS) {
+                        return CharScanner.parseDoubleSlowly(chars, begin, end);
+                    }
+                }
+                mantissa = (mantissa * 10L) + (c - '0');
+                if (point) {
+                    scale++;
+                }
+            } else if ((c == '.') && !point) {
+                point = true;
+            } else if ((((c == 'e') || (c == 'E')) && digits) || (c <= ' ')) {
+                return CharScanner.parseDoubleSlowly(chars, begin, end);
+            } else {
+                return Double.NaN;
+            }
+        }
+
+        if (!digits) {
+            return Double.NaN;
+        }
+
+        if ((mantissa > MAX_EXACT_MANTISSA) || (scale > MAX_EXACT_SCALE)) {
+            return CharScanner.parseDoubleSlowly(chars, begin, end);
+        }
+
+        // Both operands are exact - the division is correctly rounded, just as Double.parseDouble(String)
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes an ISO date, yyyy-MM-dd, without creating a {@link java.time.LocalDate} instance.
+     *
+     * @return The same value as {@link java.time.LocalDate#toEpochDay()} or {@link #INVALID_DAY}
+     */
+    static int parseEpochDay(final char[] chars, final int begin, final int end) {
+
+        if (((end - begin) != 10) || (chars[begin + 4] != '-') || (chars[begin + 7] != '-')) {
+            return INVALID_DAY;
+        }
+
+        int year = CharScanner.parseDigits(chars, begin, begin + 4);
+        int month = CharScanner.parseDigits(chars, begin + 5, begin + 7);
+        int day = CharScanner.parseDigits(chars, begin + 8, begin + 10);
+
+        if ((year < 0) || (month < 1) || (month > 12) || (day < 1) || (day > CharScanner.lengthOfMonth(year, month))) {
+            return INVALID_DAY;
+        }
+
+        return CharScanner.toEpochDay(year, month, day);
+    }
+
+    /**
+     * Decodes a date-time, yyyy-MM-dd HH:mm:ss or yyyy-MM-dd HH:mm (the separator may also be 'T'), without
+     * creating any {@link java.time.LocalDateTime} instance. There is no time zone - the returned value is
+     * the number of seconds since 1970-01-01 00:00:00 in whatever time zone the text was.
+     *
+     * @return The local epoch second or {@link #INVALID_SECOND}
+     */
+    static long parseLocalEpochSecond(final char[] chars, final int begin, final int end) {
+
+        int length = end - begin;
+        if (((length != 16) && (length != 19)) || ((chars[begin + 10] != ' ') && (chars[begin + 10] != 'T')) || (chars[begin + 13] != ':')) {
+            return INVALID_SECOND;
+        }
+
+        int epochDay = CharScanner.parseEpochDay(chars, begin, begin + 10);
+        int hour = CharScanner.parseDigits(chars, begin + 11, begin + 13);
+        int minute = CharScanner.parseDigits(chars, begin + 14, begin + 16);
+        int second = 0;
+        if (length == 19) {
+            if (chars[begin + 16] != ':') {
+                return INVALID_SECOND;
+            }
+            second = CharScanner.parseDigits(chars, begin + 17, begin + 19);
+        }
+
+        if ((epochDay == INVALID_DAY) || (hour < 0) || (hour > 23) || (minute < 0) || (minute > 59) || (second < 0) || (second > 59)) {
+            return INVALID_SECOND;
+        }
+
+        return (epochDay * 86_400L) + (hour * 3_600L) + (minute * 60L) + second;
+    }
+
+    /**
+     * Reads everything from the reader, and calls the handler once for each line. The line terminators are
+     * not included. The buffer is reused (and grown if a single line doesn't fit) so the handler must not
+     * keep a reference to the char array. The reader is closed when done.
+     */
+    static void scan(final Reader reader, final LineHandler handler) {
+
+        try (Reader input = reader) {
+
+            char[] buffer = new char[CAPACITY];
+            int begin = 0;
+            int cursor = 0;
+            int limit = 0;
+
+            for (int read = input.read(buffer, limit, buffer.length - limit); read >= 0; read = input.read(buffer, limit, buffer.length - limit)) {
+
+                limit += read;
+
+                begin = CharScanner.lines(buffer, begin, cursor, limit, handler);
+                cursor = limit;
+
+                if (begin > 0) {
+                    System.arraycopy(buffer, begin, buffer, 0, limit - begin);
+                    limit -= begin;
+                    cursor -= begin;
+                    begin = 0;
+                } else if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+
+            CharScanner.handle(buffer, begin, limit, handler);
+
+        } catch (IOException cause) {
+            throw new RuntimeException(cause);
+        }
+    }
+
+    static int toEpochDay(final int year, final int month, final int day) {
+
+        long total = (365L * year) + (((year + 3) / 4) - ((year + 99) / 100)) + ((year + 399) / 400);
+        total += ((367 * month) - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!CharScanner.isLeapYear(year)) {
+                total--;
+            }
+        }
+
+        return (int) (total - DAYS_0000_TO_1970);
+    }
+
+    /**
+     * Calls the handler for each complete (LF terminated) line in the chars, and returns where the
+     * incomplete last line (if any) begins.
+     *
+     * @param begin Where the first line begins
+     * @param from Where to start looking for line terminators (everything before that has already been
+     *        scanned)
+     * @param end The end (exclusive) of the valid chars
+     * @return The beginning of the first line not handled
+     */
+    static int lines(final char[] chars, final int begin, final int from, final int end, final LineHandler handler) {
+        int retVal = begin;
+        for (int cursor = from; cursor < end; cursor++) {
+            if (chars[cursor] == LF) {
+                CharScanner.handle(chars, retVal, cursor, handler);
+                retVal = cursor + 1;
+            }
+        }
+        return retVal;
+    }
+
+    static void handle(final char[] chars, final int begin, final int end, final LineHandler handler) {
+        int exclEnd = end;
+        if ((exclEnd > begin) && (chars[exclEnd - 1] == CR)) {
+            exclEnd--;
+        }
+        if (exclEnd > begin) {
+            handler.handle(chars, begin, exclEnd);
+        }
+    }
+
+    private static boolean isLeapYear(final int year) {
+        return ((year & 3) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+    }
+
+    private static int lengthOfMonth(final int year, final int month) {
+        switch (month) {
+        case 2:
+            return CharScanner.isLeapYear(year) ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * @return The non-negative value of the digits, or -1 if any of the chars is not a digit
+     */
+    private static int parseDigits(final char[] chars, final int begin, final int end) {
+        int retVal = 0;
+        for (int i = begin; i < end; i++) {
+            char c = chars[i];
+            if ((c < '0') || (c > '9')) {
+                return -1;
+            }
+            retVal = (retVal * 10) + (c - '0');
+        }
+        return retVal;
+    }
+
+    private static double parseDoubleSlowly(final char[] chars, final int begin, final int end) {
+        try {
+            return Double.parseDouble(new String(chars, begin, end - begin));
+        } catch (NumberFormatException cause) {
+            return Double.NaN;
+        }
+    }
+
+    private CharScanner() {
+        super();
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.parser;
+
+import java.io.Reader;
+
+import org.ojalgo.finance.data.DatePrice;
+import org.ojalgo.netio.BasicParser;
+
+/**
+ * A {@link BasicParser} that, in addition to creating one {@link DatePrice} instance per line, can decode
+ * the lines directly from a char buffer and emit the values to a primitive {@link Sink}. No intermediate
+ * strings or row objects are created.
+ *
+ * @author apete
+ */
+public interface DatePriceParser<T extends DatePrice> extends BasicParser<T> {
+
+    /**
+     * Receives the (primitive) values of one parsed line. Values that could not be parsed are NaN.
+     */
+    @FunctionalInterface
+    interface Sink {
+
+        /**
+         * @param epochDay The date as in {@link java.time.LocalDate#toEpochDay()}
+         * @param adjusted The adjusted close, or simply the close if the provider does not supply an adjusted
+         *        value. This is what {@link DatePrice#getPrice()} returns.
+         */
+        void accept(int epochDay, double open, double high, double low, double close, double adjusted, double volume);
+
+    }
+
+    /**
+     * Parse a single line, delimited by begin (inclusive) and end (exclusive), within the char array. Lines
+     * that can't be parsed (the header line for instance) are silently ignored.
+     */
+    void parse(char[] chars, int begin, int end, DatePriceParser.Sink sink);
+
+    /**
+     * Reads everything from the reader, using a reusable char buffer, and sends each successfully parsed
+     * line to the sink. The reader is closed when done.
+     */
+    default void parse(final Reader reader, final DatePriceParser.Sink sink) {
+        CharScanner.scan(reader, (chars, begin, end) -> this.parse(chars, begin, end, sink));
+    }
+
+    /**
+     * Same as {@link #parse(Reader, Sink)}, but also counts the (non-empty) lines that could not be parsed.
+     * A first line that can't be parsed is assumed to be a header, and is not counted, unless no other line
+     * could be parsed either.
+     *
+     * @return The number of lines that could not be parsed
+     */
+    default int parseCountingFailures(final Reader reader, final DatePriceParser.Sink sink) {
+
+        int[] counts = { 0, 0 }; // lines, rows
+        boolean[] header = { false };
+
+        DatePriceParser.Sink counting = (epochDay, open, high, low, close, adjusted, volume) -> {
+            counts[1]++;
+            sink.accept(epochDay, open, high, low, close, adjusted, volume);
+        };
+
+        CharScanner.scan(reader, (chars, begin, end) -> {
+            int rows = counts[1];
+            this.parse(chars, begin, end, counting);
+            if ((counts[0]++ == 0) && (counts[1] == rows)) {
+                header[0] = true;
+            }
+        });
+
+        int failures = counts[0] - counts[1];
+        return (header[0] && (counts[1] > 0)) ? failures - 1 : failures;
+    }
+
+}
@@ -6,14 +6,13 @@ import java.time.format.DateTimeFormatter;
 import org.ojalgo.RecoverableCondition;
 import org.ojalgo.finance.data.DatePrice;
 import org.ojalgo.netio.ASCII;
-import org.ojalgo.netio.BasicParser;
 
 /**
  * https://iextrading.com/developer/docs/#chart
  *
  * @author stefanvanegmond
  */
-public class IEXTradingParser implements BasicParser<IEXTradingParser.Data> {
+public class IEXTradingParser implements DatePriceParser<IEXTradingParser.Data> {
 
     public static final class Data extends DatePrice {
 
@@ -47,6 +46,60 @@ public class IEXTradingParser implements BasicParser<IEXTradingParser.Data> {
         super();
     }
 
+    @Override
+    public void parse(final char[] chars, final int begin, final int end, final DatePriceParser.Sink sink) {
+
+        // date,open,high,low,close,volume,unadjustedVolume,change,changePercent,vwap,label,changeOverTime
+
+        int inclBegin = begin;
+        int exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        int epochDay = CharScanner.parseEpochDay(chars, inclBegin, exclEnd);
+        if (epochDay == CharScanner.INVALID_DAY) {
+            return;
+        }
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double open = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double high = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double low = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double close = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double volume = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        // No adjusted close - the close is the price
+        sink.accept(epochDay, open, high, low, close, close, volume);
+    }
+
     @Override
     public IEXTradingParser.Data parse(String line) throws RecoverableCondition {
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.parser;
+
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+import org.ojalgo.netio.ASCII;
+
+/**
+ * Parses intraday (minute or hour) bars - timestamp,open,high,low,close,volume - where the timestamp is
+ * yyyy-MM-dd HH:mm:ss (or yyyy-MM-dd HH:mm) in the specified time zone. That is the layout of
+ * AlphaVantage's TIME_SERIES_INTRADAY CSV. The timestamps are emitted as epoch seconds. Like the
+ * {@link DatePriceParser} implementations it parses directly from a reusable char buffer and emits primitive
+ * values - no intermediate String or row objects.
+ *
+ * @author apete
+ */
+public final class IntradayParser {
+
+    @FunctionalInterface
+    public interface Sink {
+
+        void accept(long epochSecond, double open, double high, double low, double close, double volume);
+
+    }
+
+    /**
+     * Converts local epoch seconds to (UTC) epoch seconds. The zone offset is cached per local hour.
+     */
+    private static final class ZoneConverter {
+
+        private long myHour = Long.MIN_VALUE;
+        private long myOffset = 0L;
+        private final ZoneRules myRules;
+
+        ZoneConverter(final ZoneId zone) {
+            super();
+            myRules = zone.getRules();
+        }
+
+        long toEpochSecond(final long localEpochSecond) {
+            long hour = Math.floorDiv(localEpochSecond, 3_600L);
+            if (hour != myHour) {
+                myHour = hour;
+                myOffset = myRules.getOffset(LocalDateTime.ofEpochSecond(hour * 3_600L, 0, ZoneOffset.UTC)).getTotalSeconds();
+            }
+            return localEpochSecond - myOffset;
+        }
+
+    }
+
+    private final ZoneId myZone;
+
+    /**
+     * @param zone The time zone of the timestamps. AlphaVantage uses US/Eastern (America/New_York).
+     */
+    public IntradayParser(final ZoneId zone) {
+        super();
+        myZone = zone;
+    }
+
+    public ZoneId getZone() {
+        return myZone;
+    }
+
+    /**
+     * Reads everything from the reader, and calls the sink once for each valid row. Lines that don't parse
+     * (the header) are skipped. The reader is closed when done.
+     */
+    public void parse(final Reader reader, final IntradayParser.Sink sink) {
+        ZoneConverter converter = new ZoneConverter(myZone);
+        CharScanner.scan(reader, (chars, begin, end) -> IntradayParser.parse(chars, begin, end, converter, sink));
+    }
+
+    private static void parse(final char[] chars, final int begin, final int end, final ZoneConverter converter, final IntradayParser.Sink sink) {
+
+        // timestamp,open,high,low,close,volume
+
+        int inclBegin = begin;
+        int exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        long localEpochSecond = CharScanner.parseLocalEpochSecond(chars, inclBegin, exclEnd);
+        if (localEpochSecond == CharScanner.INVALID_SECOND) {
+            return;
+        }
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double open = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double high = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double low = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double close = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            exclEnd = end;
+        }
+        double volume = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        sink.accept(converter.toEpochSecond(localEpochSecond), open, high, low, close, volume);
+    }
+
+}
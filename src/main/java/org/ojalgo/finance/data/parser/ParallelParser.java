@@ -0,0 +1,181 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.ojalgo.finance.data.PriceColumns;
+
+/**
+ * Parses very large local (ASCII) price files in parallel. The file is memory-mapped and split into chunks
+ * at line boundaries. Each chunk is parsed, on a {@link ForkJoinPool}, into its own {@link PriceColumns}
+ * instance, and the chunks are then concatenated in file order and sorted by date.
+ * <p>
+ * Since the chunks are concatenated in file order the merge step is a plain copy, and the final sort is a
+ * no-op for ascending files and an in-place reversal for descending files. Only files with unordered rows
+ * need a full sort.
+ * <p>
+ * For small files (less than a couple of chunks) this is not faster than simply parsing from a reader.
+ *
+ * @author apete
+ */
+public final class ParallelParser {
+
+    /**
+     * 8MB
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 23;
+
+    private static final byte LF = '\n';
+
+    private final int myChunkSize;
+    private final ForkJoinPool myPool;
+
+    public ParallelParser() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelParser(final ForkJoinPool pool) {
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param pool The pool to parse the chunks on
+     * @param chunkSize The (approximate) number of bytes per chunk
+     */
+    public ParallelParser(final ForkJoinPool pool, final int chunkSize) {
+
+        super();
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        myPool = pool;
+        myChunkSize = chunkSize;
+    }
+
+    /**
+     * @param file The (ASCII) file to parse
+     * @param parser The provider specific line parser
+     * @return All the successfully parsed lines, sorted by date
+     */
+    public PriceColumns parse(final File file, final DatePriceParser<?> parser) throws IOException {
+
+        List<ForkJoinTask<PriceColumns>> tasks = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            long size = channel.size();
+
+            for (long begin = 0L, end; begin < size; begin = end) {
+
+                end = ParallelParser.boundary(channel, Math.min(begin + myChunkSize, size), size);
+
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, begin, end - begin);
+
+                tasks.add(myPool.submit(() -> ParallelParser.parse(chunk, parser)));
+            }
+        }
+
+        int total = 0;
+        List<PriceColumns> parts = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<PriceColumns> task : tasks) {
+            PriceColumns part = task.join();
+            total += part.size();
+            parts.add(part);
+        }
+
+        PriceColumns retVal = new PriceColumns(total);
+
+        for (PriceColumns part : parts) {
+            for (int i = 0, limit = part.size(); i < limit; i++) {
+                retVal.accept(part.getEpochDay(i), part.getOpen(i), part.getHigh(i), part.getLow(i), part.getClose(i), part.getAdjusted(i),
+                        part.getVolume(i));
+            }
+        }
+
+        retVal.sort();
+
+        return retVal;
+    }
+
+    /**
+     * @return The position just after the first LF at, or after, the start position (or the file size if
+     *         there is no such LF)
+     */
+    static long boundary(final FileChannel channel, final long start, final long size) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        for (long position = start; position < size;) {
+
+            // Cast to Buffer - the covariant override (Java 9+) doesn't exist on Java 8
+            ((Buffer) buffer).clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == LF) {
+                    return position + i + 1;
+                }
+            }
+
+            position += read;
+        }
+
+        return size;
+    }
+
+    static PriceColumns parse(final ByteBuffer chunk, final DatePriceParser<?> parser) {
+
+        int length = chunk.remaining();
+
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (chunk.get(i) & 0xFF);
+        }
+
+        // Roughly 50 bytes per line
+        PriceColumns retVal = new PriceColumns(Math.max(16, length / 50));
+
+        CharScanner.LineHandler handler = (line, begin, end) -> parser.parse(line, begin, end, retVal);
+
+        int last = CharScanner.lines(chars, 0, 0, length, handler);
+        CharScanner.handle(chars, last, length, handler);
+
+        return retVal;
+    }
+
+}
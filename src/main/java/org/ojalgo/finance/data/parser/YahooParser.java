@@ -27,12 +27,11 @@ import java.time.format.DateTimeFormatter;
 import org.ojalgo.RecoverableCondition;
 import org.ojalgo.finance.data.DatePrice;
 import org.ojalgo.netio.ASCII;
-import org.ojalgo.netio.BasicParser;
 
 /**
  * @author apete
  */
-public class YahooParser implements BasicParser<YahooParser.Data> {
+public class YahooParser implements DatePriceParser<YahooParser.Data> {
 
     public static final class Data extends DatePrice {
 
@@ -66,6 +65,62 @@ public class YahooParser implements BasicParser<YahooParser.Data> {
         super();
     }
 
+    @Override
+    public void parse(final char[] chars, final int begin, final int end, final DatePriceParser.Sink sink) {
+
+        // Date,Open,High,Low,Close,Adj Close,Volume
+
+        int inclBegin = begin;
+        int exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        int epochDay = CharScanner.parseEpochDay(chars, inclBegin, exclEnd);
+        if (epochDay == CharScanner.INVALID_DAY) {
+            return;
+        }
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double open = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double high = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double low = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double close = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        exclEnd = CharScanner.indexOf(chars, inclBegin, end, ASCII.COMMA);
+        if (exclEnd < 0) {
+            return;
+        }
+        double adjustedClose = CharScanner.parseDouble(chars, inclBegin, exclEnd);
+
+        inclBegin = exclEnd + 1;
+        double volume = CharScanner.parseDouble(chars, inclBegin, end);
+
+        sink.accept(epochDay, open, high, low, close, adjustedClose, volume);
+    }
+
     @Override
     public YahooParser.Data parse(final String line) throws RecoverableCondition {
 
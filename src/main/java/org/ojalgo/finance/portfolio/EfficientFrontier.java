@@ -78,7 +78,11 @@ public final class EfficientFrontier extends OptimisedPortfolio {
         super.reset();
 
         final boolean tmpAllowed = this.isShortingAllowed();
-        myOptimisationModel.getVariables().forEach(v -> v.lower(tmpAllowed ? null : BigMath.ZERO));
+        // Only the asset weights - in factor form the exposure variables that follow are free
+        final int tmpLength = this.size();
+        for (int i = 0; i < tmpLength; i++) {
+            myOptimisationModel.getVariable(i).lower(tmpAllowed ? null : BigMath.ZERO);
+        }
 
     }
 
@@ -44,7 +44,11 @@ abstract class EquilibriumModel extends FinancePortfolio implements FinancePortf
 
         super();
 
-        myMarketEquilibrium = new MarketEquilibrium(portfolioContext.getCovariances());
+        if (portfolioContext instanceof FactorContext) {
+            myMarketEquilibrium = new MarketEquilibrium((FactorContext) portfolioContext);
+        } else {
+            myMarketEquilibrium = new MarketEquilibrium(portfolioContext.getCovariances());
+        }
     }
 
     protected EquilibriumModel(final MarketEquilibrium marketEquilibrium) {
@@ -216,6 +220,10 @@ abstract class EquilibriumModel extends FinancePortfolio implements FinancePortf
         myReturnVariance = null;
     }
 
+    final FactorContext getFactorContext() {
+        return myMarketEquilibrium.getFactorContext();
+    }
+
     final boolean isDefaultRiskAversion() {
         return myMarketEquilibrium.isDefaultRiskAversion();
     }
@@ -0,0 +1,347 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.portfolio;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.ojalgo.finance.FinanceUtils;
+import org.ojalgo.function.constant.PrimitiveMath;
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.structure.Access1D;
+import org.ojalgo.structure.Access2D;
+
+/**
+ * A portfolio context where the asset covariances are given by a factor model: C = B F B<sup>T</sup> + D,
+ * where B is the nxk matrix of factor loadings (exposures), F the kxk factor covariance matrix and D the
+ * diagonal matrix of specific (idiosyncratic) variances. With k much smaller than n this is a lot less data
+ * than the dense nxn covariance matrix, and portfolio variances and marginal risks are calculated in O(nk)
+ * rather than O(n<sup>2</sup>).
+ * <p>
+ * The dense covariance (and correlation) matrix is only materialised if, and when, it is asked for. A
+ * {@link MarkowitzModel} (or {@link MarketEquilibrium}) created from a FactorContext does not need it - the
+ * optimisation problem is formulated in factor form, with k additional factor exposure variables.
+ *
+ * @author apete
+ */
+public final class FactorContext implements FinancePortfolio.Context {
+
+    private static double[] toArray(final List<BigDecimal> weights) {
+        double[] retVal = new double[weights.size()];
+        for (int i = 0; i < retVal.length; i++) {
+            retVal[i] = weights.get(i).doubleValue();
+        }
+        return retVal;
+    }
+
+    private final Primitive64Matrix myAssetReturns;
+    private Primitive64Matrix myAssetVolatilities = null;
+    private Primitive64Matrix myCorrelations = null;
+    private Primitive64Matrix myCovariances = null;
+    /**
+     * kxk
+     */
+    private final double[] myFactorCovariances;
+    private final int myFactors;
+    /**
+     * nxk, one row of k loadings per asset
+     */
+    private final double[] myLoadings;
+    private final int mySize;
+    private final double[] mySpecificVariances;
+
+    /**
+     * @param assetReturns The n (excess) asset returns
+     * @param loadings The nxk factor loadings
+     * @param factorCovariances The kxk factor covariances
+     * @param specificVariances The n specific variances
+     */
+    public FactorContext(final Access1D<?> assetReturns, final Access2D<?> loadings, final Access2D<?> factorCovariances, final Access1D<?> specificVariances) {
+
+        super();
+
+        mySize = (int) assetReturns.count();
+        myFactors = (int) loadings.countColumns();
+
+        if (loadings.countRows() != mySize || specificVariances.count() != mySize || factorCovariances.countRows() != myFactors
+                || factorCovariances.countColumns() != myFactors) {
+            throw new IllegalArgumentException("Wrong dimensions!");
+        }
+
+        myAssetReturns = FinancePortfolio.MATRIX_FACTORY.columns(assetReturns);
+
+        myLoadings = new double[mySize * myFactors];
+        for (int i = 0; i < mySize; i++) {
+            for (int f = 0; f < myFactors; f++) {
+                myLoadings[i * myFactors + f] = loadings.doubleValue(i, f);
+            }
+        }
+
+        myFactorCovariances = new double[myFactors * myFactors];
+        for (int g = 0; g < myFactors; g++) {
+            for (int f = 0; f < myFactors; f++) {
+                myFactorCovariances[f * myFactors + g] = factorCovariances.doubleValue(f, g);
+            }
+        }
+
+        mySpecificVariances = new double[mySize];
+        for (int i = 0; i < mySize; i++) {
+            mySpecificVariances[i] = specificVariances.doubleValue(i);
+        }
+    }
+
+    /**
+     * The derivatives of the portfolio volatility with respect to the asset weights: C w / sqrt(w<sup>T</sup>
+     * C w). Multiplied by the weights they sum to the portfolio volatility. O(nk)
+     */
+    public Primitive64Matrix calculateMarginalRisks(final Access1D<?> weights) {
+
+        double[] tmpWeights = this.toArray(weights);
+
+        double[] tmpProduct = this.multiply(tmpWeights);
+
+        double tmpVolatility = PrimitiveMath.SQRT.invoke(this.variance(tmpWeights));
+
+        Primitive64Matrix.DenseReceiver retVal = FinancePortfolio.MATRIX_FACTORY.makeDense(mySize);
+        for (int i = 0; i < mySize; i++) {
+            retVal.set(i, tmpVolatility > PrimitiveMath.ZERO ? tmpProduct[i] / tmpVolatility : PrimitiveMath.ZERO);
+        }
+        return retVal.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    public double calculatePortfolioReturn(final FinancePortfolio weightsPortfolio) {
+        return FinancePortfolio.MATRIX_FACTORY.rows(weightsPortfolio.getWeights()).multiply(this.getAssetReturns()).doubleValue(0);
+    }
+
+    /**
+     * w<sup>T</sup> C w = (B<sup>T</sup>w)<sup>T</sup> F (B<sup>T</sup>w) + w<sup>T</sup> D w in O(nk)
+     */
+    public double calculatePortfolioVariance(final Access1D<?> weights) {
+        return this.variance(this.toArray(weights));
+    }
+
+    public double calculatePortfolioVariance(final FinancePortfolio weightsPortfolio) {
+        return this.variance(FactorContext.toArray(weightsPortfolio.getWeights()));
+    }
+
+    public int countFactors() {
+        return myFactors;
+    }
+
+    public Primitive64Matrix getAssetReturns() {
+        return myAssetReturns;
+    }
+
+    /**
+     * Calculated from the diagonal of the factor model, without materialising the covariance matrix.
+     */
+    public Primitive64Matrix getAssetVolatilities() {
+        if (myAssetVolatilities == null) {
+            Primitive64Matrix.DenseReceiver tmpVolatilities = FinancePortfolio.MATRIX_FACTORY.makeDense(mySize);
+            for (int i = 0; i < mySize; i++) {
+                tmpVolatilities.set(i, PrimitiveMath.SQRT.invoke(PrimitiveMath.MAX.invoke(this.covariance(i, i), PrimitiveMath.ZERO)));
+            }
+            myAssetVolatilities = tmpVolatilities.get();
+        }
+        return myAssetVolatilities;
+    }
+
+    /**
+     * Will materialise the dense covariance matrix
+     */
+    public Primitive64Matrix getCorrelations() {
+        if (myCorrelations == null) {
+            myCorrelations = FinanceUtils.toCorrelations(this.getCovariances(), false);
+        }
+        return myCorrelations;
+    }
+
+    /**
+     * Will materialise the dense nxn covariance matrix, O(n<sup>2</sup>k), the first time it is called.
+     */
+    public Primitive64Matrix getCovariances() {
+        if (myCovariances == null) {
+
+            double[] tmpScaled = this.scale();
+
+            Primitive64Matrix.DenseReceiver tmpCovariances = FinancePortfolio.MATRIX_FACTORY.makeDense(mySize, mySize);
+            for (int j = 0; j < mySize; j++) {
+                int tmpOffsetJ = j * myFactors;
+                for (int i = 0; i <= j; i++) {
+                    int tmpOffsetI = i * myFactors;
+                    double tmpCovariance = i == j ? mySpecificVariances[i] : PrimitiveMath.ZERO;
+                    for (int f = 0; f < myFactors; f++) {
+                        tmpCovariance += tmpScaled[tmpOffsetI + f] * myLoadings[tmpOffsetJ + f];
+                    }
+                    tmpCovariances.set(i, j, tmpCovariance);
+                    tmpCovariances.set(j, i, tmpCovariance);
+                }
+            }
+            myCovariances = tmpCovariances.get();
+        }
+        return myCovariances;
+    }
+
+    public double getFactorCovariance(final int row, final int col) {
+        return myFactorCovariances[row * myFactors + col];
+    }
+
+    public double getLoading(final int asset, final int factor) {
+        return myLoadings[asset * myFactors + factor];
+    }
+
+    public double getSpecificVariance(final int asset) {
+        return mySpecificVariances[asset];
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * @return true if the dense covariance matrix has been built
+     */
+    boolean isMaterialised() {
+        return myCovariances != null;
+    }
+
+    /**
+     * C w in O(nk)
+     */
+    Primitive64Matrix multiply(final Access1D<?> weights) {
+
+        double[] tmpProduct = this.multiply(this.toArray(weights));
+
+        Primitive64Matrix.DenseReceiver retVal = FinancePortfolio.MATRIX_FACTORY.makeDense(mySize);
+        for (int i = 0; i < mySize; i++) {
+            retVal.set(i, tmpProduct[i]);
+        }
+        return retVal.get();
+    }
+
+    private double covariance(final int row, final int col) {
+        double retVal = row == col ? mySpecificVariances[row] : PrimitiveMath.ZERO;
+        for (int g = 0; g < myFactors; g++) {
+            double tmpLoading = myLoadings[col * myFactors + g];
+            for (int f = 0; f < myFactors; f++) {
+                retVal += myLoadings[row * myFactors + f] * myFactorCovariances[f * myFactors + g] * tmpLoading;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * B<sup>T</sup>w
+     */
+    private double[] exposures(final double[] weights) {
+        double[] retVal = new double[myFactors];
+        for (int i = 0; i < mySize; i++) {
+            double tmpWeight = weights[i];
+            int tmpOffset = i * myFactors;
+            for (int f = 0; f < myFactors; f++) {
+                retVal[f] += myLoadings[tmpOffset + f] * tmpWeight;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * B F B<sup>T</sup>w + D w
+     */
+    private double[] multiply(final double[] weights) {
+
+        double[] tmpExposures = this.exposures(weights);
+
+        double[] tmpFactorProduct = new double[myFactors];
+        for (int f = 0; f < myFactors; f++) {
+            double tmpSum = PrimitiveMath.ZERO;
+            for (int g = 0; g < myFactors; g++) {
+                tmpSum += myFactorCovariances[f * myFactors + g] * tmpExposures[g];
+            }
+            tmpFactorProduct[f] = tmpSum;
+        }
+
+        double[] retVal = new double[mySize];
+        for (int i = 0; i < mySize; i++) {
+            int tmpOffset = i * myFactors;
+            double tmpSum = mySpecificVariances[i] * weights[i];
+            for (int f = 0; f < myFactors; f++) {
+                tmpSum += myLoadings[tmpOffset + f] * tmpFactorProduct[f];
+            }
+            retVal[i] = tmpSum;
+        }
+        return retVal;
+    }
+
+    /**
+     * B F, one row of k values per asset
+     */
+    private double[] scale() {
+        double[] retVal = new double[mySize * myFactors];
+        for (int i = 0; i < mySize; i++) {
+            int tmpOffset = i * myFactors;
+            for (int g = 0; g < myFactors; g++) {
+                double tmpSum = PrimitiveMath.ZERO;
+                for (int f = 0; f < myFactors; f++) {
+                    tmpSum += myLoadings[tmpOffset + f] * myFactorCovariances[f * myFactors + g];
+                }
+                retVal[tmpOffset + g] = tmpSum;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Only the first n values are used - an optimisation result in factor form also contains the factor
+     * exposures.
+     */
+    private double[] toArray(final Access1D<?> weights) {
+        if (weights.count() < mySize) {
+            throw new IllegalArgumentException("Wrong dimensions!");
+        }
+        double[] retVal = new double[mySize];
+        for (int i = 0; i < mySize; i++) {
+            retVal[i] = weights.doubleValue(i);
+        }
+        return retVal;
+    }
+
+    private double variance(final double[] weights) {
+
+        double[] tmpExposures = this.exposures(weights);
+
+        double retVal = PrimitiveMath.ZERO;
+        for (int g = 0; g < myFactors; g++) {
+            double tmpSum = PrimitiveMath.ZERO;
+            for (int f = 0; f < myFactors; f++) {
+                tmpSum += tmpExposures[f] * myFactorCovariances[f * myFactors + g];
+            }
+            retVal += tmpSum * tmpExposures[g];
+        }
+        for (int i = 0; i < mySize; i++) {
+            retVal += mySpecificVariances[i] * weights[i] * weights[i];
+        }
+        return retVal;
+    }
+
+}
@@ -24,6 +24,7 @@ package org.ojalgo.finance.portfolio;
 import java.math.BigDecimal;
 
 import org.ojalgo.array.operation.COPY;
+import org.ojalgo.finance.CovarianceRepair;
 import org.ojalgo.finance.FinanceUtils;
 import org.ojalgo.function.constant.BigMath;
 import org.ojalgo.function.constant.PrimitiveMath;
@@ -49,6 +50,10 @@ import org.ojalgo.type.TypeUtils;
  * The name MarketEquilibrium is actually a bit misleading. By altering the risk aversion factor this class
  * can/will describe the weights/returns equilibrium for any investor.
  * </p>
+ * <p>
+ * When created from a {@link FactorContext} the (dense) covariance matrix is only materialised if it's
+ * actually needed. Portfolio variances and asset returns are calculated using the factor model.
+ * </p>
  *
  * @see #calculateAssetReturns(Primitive64Matrix)
  * @see #calculateAssetWeights(Primitive64Matrix)
@@ -86,7 +91,8 @@ public class MarketEquilibrium {
     }
 
     private final String[] myAssetKeys;
-    private final Primitive64Matrix myCovariances;
+    private Primitive64Matrix myCovariances;
+    private final FactorContext myFactorContext;
     private BigDecimal myRiskAversion;
 
     public MarketEquilibrium(final Access2D<?> covarianceMatrix) {
@@ -97,6 +103,10 @@ public class MarketEquilibrium {
         this(MarketEquilibrium.makeSymbols((int) covarianceMatrix.countRows()), covarianceMatrix, riskAversionFactor);
     }
 
+    public MarketEquilibrium(final FactorContext factorContext) {
+        this(MarketEquilibrium.makeSymbols(factorContext.size()), factorContext, DEFAULT_RISK_AVERSION);
+    }
+
     public MarketEquilibrium(final String[] assetNamesOrKeys, final Access2D<?> covarianceMatrix) {
         this(assetNamesOrKeys, covarianceMatrix, DEFAULT_RISK_AVERSION);
     }
@@ -111,12 +121,31 @@ public class MarketEquilibrium {
         } else {
             myCovariances = Primitive64Matrix.FACTORY.copy(covarianceMatrix);
         }
+        myFactorContext = null;
+
+        myRiskAversion = TypeUtils.toBigDecimal(riskAversionFactor);
+    }
+
+    public MarketEquilibrium(final String[] assetNamesOrKeys, final FactorContext factorContext, final Comparable<?> riskAversionFactor) {
+
+        super();
+
+        myAssetKeys = COPY.copyOf(assetNamesOrKeys);
+        myCovariances = null;
+        myFactorContext = factorContext;
 
         myRiskAversion = TypeUtils.toBigDecimal(riskAversionFactor);
     }
 
     MarketEquilibrium(final MarketEquilibrium marketEquilibrium) {
-        this(marketEquilibrium.getAssetKeys(), marketEquilibrium.getCovariances(), marketEquilibrium.getRiskAversion().get());
+
+        super();
+
+        myAssetKeys = marketEquilibrium.getAssetKeys();
+        myCovariances = marketEquilibrium.myCovariances;
+        myFactorContext = marketEquilibrium.myFactorContext;
+
+        myRiskAversion = marketEquilibrium.myRiskAversion;
     }
 
     /**
@@ -126,7 +155,7 @@ public class MarketEquilibrium {
     public Primitive64Matrix calculateAssetReturns(final Primitive64Matrix assetWeights) {
         final Primitive64Matrix tmpAssetWeights = myRiskAversion.compareTo(DEFAULT_RISK_AVERSION) == 0 ? assetWeights
                 : assetWeights.multiply(myRiskAversion.doubleValue());
-        return myCovariances.multiply(tmpAssetWeights);
+        return this.multiply(tmpAssetWeights);
     }
 
     /**
@@ -135,7 +164,7 @@ public class MarketEquilibrium {
      * instrument weights.
      */
     public Primitive64Matrix calculateAssetWeights(final Primitive64Matrix assetReturns) {
-        final Primitive64Matrix tmpAssetWeights = myCovariances.solve(assetReturns);
+        final Primitive64Matrix tmpAssetWeights = this.getCovariances().solve(assetReturns);
         if (myRiskAversion.compareTo(DEFAULT_RISK_AVERSION) == 0) {
             return tmpAssetWeights;
         } else {
@@ -148,6 +177,10 @@ public class MarketEquilibrium {
      */
     public Scalar<?> calculatePortfolioVariance(final Primitive64Matrix assetWeights) {
 
+        if (myFactorContext != null) {
+            return PrimitiveScalar.valueOf(myFactorContext.calculatePortfolioVariance(assetWeights));
+        }
+
         Primitive64Matrix tmpLeft;
         Primitive64Matrix tmpRight;
 
@@ -178,13 +211,15 @@ public class MarketEquilibrium {
      * small eigenvalues to make it positive definite.
      */
     public MarketEquilibrium clean() {
+        return this.clean(new CovarianceRepair());
+    }
 
-        final Primitive64Matrix tmpAssetVolatilities = FinanceUtils.toVolatilities(myCovariances, true);
-        final Primitive64Matrix tmpCleanedCorrelations = FinanceUtils.toCorrelations(myCovariances, true);
-
-        final Primitive64Matrix tmpCovariances = FinanceUtils.toCovariances(tmpAssetVolatilities, tmpCleanedCorrelations);
-
-        return new MarketEquilibrium(myAssetKeys, tmpCovariances, myRiskAversion);
+    /**
+     * The same as {@link #clean()}, but reusing the (cached decomposition and work arrays of the) input
+     * repair instance.
+     */
+    public MarketEquilibrium clean(final CovarianceRepair repair) {
+        return new MarketEquilibrium(myAssetKeys, repair.clean(this.getCovariances()), myRiskAversion);
     }
 
     public MarketEquilibrium copy() {
@@ -199,7 +234,14 @@ public class MarketEquilibrium {
         return COPY.copyOf(myAssetKeys);
     }
 
+    /**
+     * If this instance was created from a {@link FactorContext} this will materialise the dense covariance
+     * matrix.
+     */
     public Primitive64Matrix getCovariances() {
+        if (myCovariances == null) {
+            myCovariances = myFactorContext.getCovariances();
+        }
         return myCovariances;
     }
 
@@ -221,10 +263,16 @@ public class MarketEquilibrium {
     }
 
     public int size() {
+        if (myFactorContext != null) {
+            return myFactorContext.size();
+        }
         return (int) Math.min(myCovariances.countRows(), myCovariances.countColumns());
     }
 
     public Primitive64Matrix toCorrelations() {
+        if (myFactorContext != null) {
+            return myFactorContext.getCorrelations();
+        }
         return FinanceUtils.toCorrelations(myCovariances, false);
     }
 
@@ -234,7 +282,7 @@ public class MarketEquilibrium {
      */
     Scalar<?> calculateImpliedRiskAversion(final Primitive64Matrix assetWeights, final Primitive64Matrix assetReturns) {
 
-        Scalar<?> retVal = myCovariances.multiply(assetWeights).solve(assetReturns).toScalar(0, 0);
+        Scalar<?> retVal = this.multiply(assetWeights).solve(assetReturns).toScalar(0, 0);
 
         if (retVal.isSmall(PrimitiveMath.ONE)) {
             retVal = BigScalar.ONE;
@@ -245,8 +293,22 @@ public class MarketEquilibrium {
         return retVal;
     }
 
+    /**
+     * @return The factor model, or null if this instance was created from a dense covariance matrix
+     */
+    FactorContext getFactorContext() {
+        return myFactorContext;
+    }
+
     boolean isDefaultRiskAversion() {
         return myRiskAversion.compareTo(DEFAULT_RISK_AVERSION) == 0;
     }
 
+    private Primitive64Matrix multiply(final Primitive64Matrix assetWeights) {
+        if (myFactorContext != null && assetWeights.countColumns() == 1L) {
+            return myFactorContext.multiply(assetWeights);
+        }
+        return this.getCovariances().multiply(assetWeights);
+    }
+
 }
@@ -83,6 +83,10 @@ import org.ojalgo.type.context.NumberContext;
  * To get the optimal asset weighs you simply call {@link #getWeights()} or {@link #getAssetWeights()}.
  * </p>
  * <p>
+ * If the model is created from a {@link FactorContext} the optimisation problem is formulated in factor form,
+ * and the dense covariance matrix is never materialised.
+ * </p>
+ * <p>
  * If the results are not what you expect the first thing you should try is to turn on optimisation model
  * validation: <code>model.optimisation().validate(true);</code>
  * </p>
@@ -319,11 +323,30 @@ public final class MarkowitzModel extends OptimisedPortfolio {
     }
 
     Scalar<?> calculatePortfolioReturn(final Access1D<?> weightsVctr, final Primitive64Matrix returnsVctr) {
-        return super.calculatePortfolioReturn(MATRIX_FACTORY.columns(weightsVctr), returnsVctr);
+        return super.calculatePortfolioReturn(this.toAssetWeights(weightsVctr), returnsVctr);
     }
 
     Scalar<?> calculatePortfolioVariance(final Access1D<?> weightsVctr) {
-        return super.calculatePortfolioVariance(MATRIX_FACTORY.columns(weightsVctr));
+        return super.calculatePortfolioVariance(this.toAssetWeights(weightsVctr));
+    }
+
+    /**
+     * In factor form the optimisation result also contains the factor exposures - only the first
+     * {@link #size()} values are asset weights.
+     */
+    private Primitive64Matrix toAssetWeights(final Access1D<?> weightsVctr) {
+
+        final int tmpSize = this.size();
+
+        if (weightsVctr.count() == tmpSize) {
+            return MATRIX_FACTORY.columns(weightsVctr);
+        }
+
+        final Primitive64Matrix.DenseReceiver retVal = MATRIX_FACTORY.makeDense(tmpSize);
+        for (int i = 0; i < tmpSize; i++) {
+            retVal.set(i, weightsVctr.doubleValue(i));
+        }
+        return retVal.get();
     }
 
 }
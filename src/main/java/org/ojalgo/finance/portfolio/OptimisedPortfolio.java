@@ -97,6 +97,7 @@ abstract class OptimisedPortfolio extends EquilibriumModel {
     }
 
     static final String BALANCE = "Balance";
+    static final String FACTOR = "Factor_";
     static final String VARIANCE = "Variance";
 
     private final Primitive64Matrix myExpectedExcessReturns;
@@ -220,10 +221,44 @@ abstract class OptimisedPortfolio extends EquilibriumModel {
         retVal.addVariables(tmpVariables);
 
         final Expression myOptimisationVariance = retVal.addExpression(VARIANCE);
-        final Primitive64Matrix tmpCovariances = this.getCovariances();
-        for (int j = 0; j < tmpLength; j++) {
+
+        final FactorContext tmpFactorContext = this.getFactorContext();
+        if (tmpFactorContext != null) {
+
+            // Factor form: one (free) variable per factor exposure, y = B^T w, and the variance
+            // y^T F y + w^T D w has k^2 + n quadratic terms rather than n^2.
+
+            final int tmpFactors = tmpFactorContext.countFactors();
+
+            for (int f = 0; f < tmpFactors; f++) {
+                retVal.addVariable(new Variable(FACTOR + f));
+            }
+
             for (int i = 0; i < tmpLength; i++) {
-                myOptimisationVariance.set(i, j, tmpCovariances.get(i, j));
+                myOptimisationVariance.set(i, i, tmpFactorContext.getSpecificVariance(i));
+            }
+            for (int g = 0; g < tmpFactors; g++) {
+                for (int f = 0; f < tmpFactors; f++) {
+                    myOptimisationVariance.set(tmpLength + f, tmpLength + g, tmpFactorContext.getFactorCovariance(f, g));
+                }
+            }
+
+            for (int f = 0; f < tmpFactors; f++) {
+                final Expression tmpExposureExpression = retVal.addExpression(FACTOR + f);
+                tmpExposureExpression.set(tmpLength + f, ONE);
+                for (int i = 0; i < tmpLength; i++) {
+                    tmpExposureExpression.set(i, -tmpFactorContext.getLoading(i, f));
+                }
+                tmpExposureExpression.level(ZERO);
+            }
+
+        } else {
+
+            final Primitive64Matrix tmpCovariances = this.getCovariances();
+            for (int j = 0; j < tmpLength; j++) {
+                for (int i = 0; i < tmpLength; i++) {
+                    myOptimisationVariance.set(i, j, tmpCovariances.get(i, j));
+                }
             }
         }
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.random.SampleSet;
+import org.ojalgo.structure.Access1D;
+import org.ojalgo.type.CalendarDateUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the blocked covariance matrix product,
+ * {@link FinanceUtils#makeCovarianceMatrix(double[][], CalendarDateUnit)}, with what it replaced - one
+ * {@link SampleSet#getCovariance(SampleSet)} call per pair of assets. The returns are random, 10 years of
+ * daily data. Measured in milliseconds per matrix.
+ *
+ * @author apete
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CovarianceBenchmark {
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CovarianceBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Param({ "100", "500", "1000" })
+    public int assets;
+
+    @Param({ "2500" })
+    public int days;
+
+    private double[][] myReturns;
+
+    @Benchmark
+    public Primitive64Matrix blocked() {
+        return FinanceUtils.makeCovarianceMatrix(myReturns, CalendarDateUnit.DAY);
+    }
+
+    @Benchmark
+    public Primitive64Matrix sampleSets() {
+
+        double toYearFactor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) CalendarDateUnit.DAY.toDurationInMillis();
+
+        SampleSet[] sampleSets = new SampleSet[assets];
+        for (int i = 0; i < assets; i++) {
+            sampleSets[i] = SampleSet.wrap(Access1D.wrap(myReturns[i]));
+        }
+
+        Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(assets, assets);
+        for (int j = 0; j < assets; j++) {
+            for (int i = 0; i < assets; i++) {
+                retVal.set(i, j, toYearFactor * sampleSets[i].getCovariance(sampleSets[j]));
+            }
+        }
+        return retVal.get();
+    }
+
+    @Setup
+    public void setup() {
+
+        Random random = new Random(123L);
+
+        myReturns = new double[assets][days];
+        for (int i = 0; i < assets; i++) {
+            for (int t = 0; t < days; t++) {
+                myReturns[i][t] = 0.0005 + 0.01 * random.nextGaussian();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.function.constant.PrimitiveMath;
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.matrix.decomposition.Eigenvalue;
+import org.ojalgo.matrix.store.MatrixStore;
+import org.ojalgo.matrix.store.PhysicalStore;
+import org.ojalgo.matrix.store.Primitive64Store;
+import org.ojalgo.type.context.NumberContext;
+
+/**
+ * @author apete
+ */
+public class CovarianceRepairTest extends FinanceTests {
+
+    private static final NumberContext ACCURACY = NumberContext.getGeneral(12, 14);
+    private static final NumberContext NEAREST_ACCURACY = NumberContext.getGeneral(8, 8);
+
+    private static double smallestEigenvalue(final Primitive64Matrix matrix) {
+        Eigenvalue<Double> evd = Eigenvalue.PRIMITIVE.make(matrix, true);
+        evd.decompose(matrix);
+        MatrixStore<Double> mtrxD = evd.getD();
+        double retVal = Double.POSITIVE_INFINITY;
+        for (int ij = 0; ij < matrix.countRows(); ij++) {
+            retVal = Math.min(retVal, mtrxD.doubleValue(ij, ij));
+        }
+        return retVal;
+    }
+
+    /**
+     * Symmetric, unit diagonal, but not positive semidefinite
+     */
+    private static Primitive64Matrix makeInvalidCorrelations(final int size, final Random random) {
+        Primitive64Matrix.DenseReceiver retVal = Primitive64Matrix.FACTORY.makeDense(size, size);
+        for (int j = 0; j < size; j++) {
+            retVal.set(j, j, PrimitiveMath.ONE);
+            for (int i = j + 1; i < size; i++) {
+                double value = Math.max(-1.0, Math.min(1.0, 0.3 + 0.6 * random.nextGaussian()));
+                retVal.set(i, j, value);
+                retVal.set(j, i, value);
+            }
+        }
+        return retVal.get();
+    }
+
+    /**
+     * The decomposition is reused for the same (immutable) instance, or the same instance and version, and
+     * only then.
+     */
+    @Test
+    public void testCache() {
+
+        Primitive64Matrix covariances = Primitive64Matrix.FACTORY.rows(DirtyCovarianceMatrices.NextGen50);
+        Primitive64Matrix expected = new CovarianceRepair().clean(covariances);
+
+        CovarianceRepair repair = new CovarianceRepair();
+
+        TestUtils.assertEquals(expected, repair.clean(covariances), ACCURACY);
+        TestUtils.assertEquals(1, repair.getDecompositions());
+
+        // Hits
+        TestUtils.assertEquals(expected, repair.clean(covariances), ACCURACY);
+        repair.toCorrelations(covariances);
+        TestUtils.assertEquals(1, repair.getDecompositions());
+
+        // Same instance, new version - miss, and then a hit
+        TestUtils.assertEquals(expected, repair.clean(covariances, 1L), ACCURACY);
+        TestUtils.assertEquals(2, repair.getDecompositions());
+        TestUtils.assertEquals(expected, repair.clean(covariances, 1L), ACCURACY);
+        TestUtils.assertEquals(2, repair.getDecompositions());
+
+        // Equal contents, but another instance - miss
+        Primitive64Matrix copy = Primitive64Matrix.FACTORY.copy(covariances);
+        TestUtils.assertEquals(expected, repair.clean(copy), ACCURACY);
+        TestUtils.assertEquals(3, repair.getDecompositions());
+
+        // nearestCorrelation(...) overwrites the cached decomposition - miss
+        repair.nearestCorrelation(FinanceUtils.toCorrelations(covariances, false));
+        TestUtils.assertEquals(expected, repair.clean(copy), ACCURACY);
+        TestUtils.assertEquals(4, repair.getDecompositions());
+
+        // Mutable, and no version - never cached
+        Primitive64Store mutable = Primitive64Store.FACTORY.copy(covariances);
+        TestUtils.assertEquals(expected, repair.clean(mutable), ACCURACY);
+        TestUtils.assertEquals(expected, repair.clean(mutable), ACCURACY);
+        TestUtils.assertEquals(6, repair.getDecompositions());
+    }
+
+    @Test
+    public void testClean() {
+
+        Primitive64Matrix covariances = Primitive64Matrix.FACTORY.rows(DirtyCovarianceMatrices.NextGen50);
+
+        Primitive64Matrix expected = FinanceUtils.toCovariances(FinanceUtils.toVolatilities(covariances, true), FinanceUtils.toCorrelations(covariances, true));
+
+        CovarianceRepair repair = new CovarianceRepair();
+
+        TestUtils.assertEquals(expected, repair.clean(covariances), ACCURACY);
+    }
+
+    /**
+     * Flooring by adding the correction for the small eigenvalues should give the same result as the full
+     * reconstruction V max(D, limit) V<sup>T</sup>.
+     */
+    @Test
+    public void testFloor() {
+
+        Primitive64Matrix covariances = Primitive64Matrix.FACTORY.rows(DirtyCovarianceMatrices.NextGen50);
+        int size = (int) covariances.countRows();
+
+        Eigenvalue<Double> evd = Eigenvalue.PRIMITIVE.make(covariances, true);
+        evd.decompose(covariances);
+        MatrixStore<Double> mtrxV = evd.getV();
+        PhysicalStore<Double> mtrxD = evd.getD().copy();
+        double largest = PrimitiveMath.ZERO;
+        for (int ij = 0; ij < size; ij++) {
+            largest = Math.max(largest, Math.abs(mtrxD.doubleValue(ij, ij)));
+        }
+        double limit = largest * size * PrimitiveMath.RELATIVELY_SMALL;
+        for (int ij = 0; ij < size; ij++) {
+            if (mtrxD.doubleValue(ij, ij) < limit) {
+                mtrxD.set(ij, ij, limit);
+            }
+        }
+        MatrixStore<Double> reconstructed = mtrxV.multiply(mtrxD).multiply(mtrxV.transpose());
+        Primitive64Matrix expected = FinanceUtils.toCorrelations(Primitive64Store.FACTORY.copy(reconstructed), false);
+
+        CovarianceRepair repair = new CovarianceRepair();
+
+        TestUtils.assertEquals(expected, repair.toCorrelations(covariances), ACCURACY);
+        TestUtils.assertEquals(expected, FinanceUtils.toCorrelations(covariances, true), ACCURACY);
+
+        // Cached
+        TestUtils.assertEquals(expected, repair.toCorrelations(covariances), ACCURACY);
+    }
+
+    @Test
+    public void testNearestCorrelation() {
+
+        Random random = new Random(123L);
+        int size = 20;
+
+        Primitive64Matrix original = CovarianceRepairTest.makeInvalidCorrelations(size, random);
+        TestUtils.assertTrue(CovarianceRepairTest.smallestEigenvalue(original) < PrimitiveMath.ZERO);
+
+        CovarianceRepair repair = new CovarianceRepair();
+        Primitive64Matrix nearest = repair.nearestCorrelation(original);
+
+        TestUtils.assertTrue(CovarianceRepairTest.smallestEigenvalue(nearest) > -1E-8);
+        for (int ij = 0; ij < size; ij++) {
+            TestUtils.assertEquals(PrimitiveMath.ONE, nearest.doubleValue(ij, ij), ACCURACY);
+        }
+        TestUtils.assertEquals(nearest, nearest.transpose(), ACCURACY);
+
+        // A slightly perturbed matrix - warm started from the previous solution
+
+        Primitive64Matrix.DenseReceiver perturbed = Primitive64Matrix.FACTORY.makeDense(size, size);
+        for (int j = 0; j < size; j++) {
+            perturbed.set(j, j, PrimitiveMath.ONE);
+            for (int i = j + 1; i < size; i++) {
+                double value = original.doubleValue(i, j) + 0.01 * random.nextGaussian();
+                perturbed.set(i, j, value);
+                perturbed.set(j, i, value);
+            }
+        }
+
+        Primitive64Matrix warm = repair.nearestCorrelation(perturbed.get());
+        int warmIterations = repair.getIterations();
+
+        CovarianceRepair cold = new CovarianceRepair();
+        Primitive64Matrix expected = cold.nearestCorrelation(perturbed.get());
+
+        TestUtils.assertEquals(expected, warm, NEAREST_ACCURACY);
+        TestUtils.assertTrue(warmIterations < cold.getIterations());
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.type.CalendarDateUnit;
+import org.ojalgo.type.context.NumberContext;
+
+/**
+ * @author apete
+ */
+public class EWMACovarianceTest extends FinanceTests {
+
+    private static final NumberContext ACCURACY = NumberContext.getGeneral(12, 14);
+
+    @Test
+    public void testAgainstWeightedSums() {
+
+        int size = 7;
+        int length = 300;
+        double decay = EWMACovariance.DAILY_DECAY;
+
+        Random random = new Random(123L);
+        double[][] returns = new double[length][size];
+        for (int t = 0; t < length; t++) {
+            for (int i = 0; i < size; i++) {
+                returns[t][i] = 0.01 * random.nextGaussian() + (i > 0 ? 0.5 * returns[t][i - 1] : 0.0);
+            }
+        }
+
+        EWMACovariance estimator = new EWMACovariance(size, decay, CalendarDateUnit.DAY);
+        for (int t = 0; t < length; t++) {
+            estimator.add(returns[t]);
+        }
+
+        TestUtils.assertEquals(length, estimator.count());
+
+        double toYearFactor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) CalendarDateUnit.DAY.toDurationInMillis();
+
+        // The most recent observation has the largest weight
+        double[][] sums = new double[size][size];
+        double sumOfWeights = 0.0;
+        for (int t = 0; t < length; t++) {
+            double weight = (1.0 - decay) * Math.pow(decay, length - 1 - t);
+            sumOfWeights += weight;
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    sums[i][j] += weight * returns[t][i] * returns[t][j];
+                }
+            }
+        }
+
+        Primitive64Matrix.DenseReceiver expected = Primitive64Matrix.FACTORY.makeDense(size, size);
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                expected.set(i, j, toYearFactor * sums[i][j] / sumOfWeights);
+            }
+        }
+
+        TestUtils.assertEquals(expected.get(), estimator.getCovariances(), ACCURACY);
+
+        estimator.reset();
+        TestUtils.assertEquals(0, estimator.count());
+    }
+
+    /**
+     * With a single observation the (bias corrected) estimate is just r * r^T
+     */
+    @Test
+    public void testFirstObservation() {
+
+        double[] returns = { 0.01, -0.02, 0.005 };
+
+        EWMACovariance estimator = new EWMACovariance(3, EWMACovariance.toDecay(30.0), CalendarDateUnit.YEAR);
+        estimator.add(returns);
+
+        Primitive64Matrix actual = estimator.getCovariances();
+
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < 3; i++) {
+                TestUtils.assertEquals(returns[i] * returns[j], actual.doubleValue(i, j), ACCURACY);
+            }
+        }
+
+        TestUtils.assertEquals(0.5, Math.pow(estimator.getDecay(), 30.0), ACCURACY);
+    }
+
+}
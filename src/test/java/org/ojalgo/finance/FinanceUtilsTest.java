@@ -21,6 +21,8 @@
  */
 package org.ojalgo.finance;
 
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
 import org.ojalgo.TestUtils;
 import org.ojalgo.function.constant.PrimitiveMath;
@@ -28,6 +30,8 @@ import org.ojalgo.matrix.Primitive64Matrix;
 import org.ojalgo.matrix.decomposition.SingularValue;
 import org.ojalgo.netio.BasicLogger;
 import org.ojalgo.optimisation.integer.NextGenSysModTest;
+import org.ojalgo.random.SampleSet;
+import org.ojalgo.structure.Access1D;
 import org.ojalgo.type.CalendarDateUnit;
 import org.ojalgo.type.context.NumberContext;
 
@@ -148,4 +152,56 @@ public class FinanceUtilsTest extends FinanceTests {
         }
 
     }
+
+    /**
+     * The blocked matrix product gives the same results as pairwise SampleSet covariances. The number of
+     * assets is not a multiple of the block size.
+     */
+    @Test
+    public void testCovarianceMatrix() {
+
+        Random random = new Random(123L);
+
+        int size = BlockedCovariance.BLOCK + 13;
+        int length = BlockedCovariance.CHUNK + 245;
+
+        double[][] returns = new double[size][length];
+        for (int i = 0; i < size; i++) {
+            for (int t = 0; t < length; t++) {
+                returns[i][t] = 0.0005 + 0.01 * random.nextGaussian();
+            }
+        }
+
+        double toYearFactor = (double) CalendarDateUnit.YEAR.toDurationInMillis() / (double) CalendarDateUnit.DAY.toDurationInMillis();
+
+        Primitive64Matrix.DenseReceiver expected = Primitive64Matrix.FACTORY.makeDense(size, size);
+        for (int j = 0; j < size; j++) {
+            SampleSet colSet = SampleSet.wrap(Access1D.wrap(returns[j]));
+            for (int i = 0; i < size; i++) {
+                SampleSet rowSet = SampleSet.wrap(Access1D.wrap(returns[i]));
+                expected.set(i, j, toYearFactor * rowSet.getCovariance(colSet));
+            }
+        }
+
+        Primitive64Matrix actual = FinanceUtils.makeCovarianceMatrix(returns, CalendarDateUnit.DAY);
+
+        TestUtils.assertEquals(expected.get(), actual, ACCEPTABLE_ACCURACY);
+        TestUtils.assertEquals(actual, actual.transpose(), IDENTICAL_ACCURACY);
+    }
+
+    /**
+     * Too few observations for a sample covariance - NaN, the same as SampleSet
+     */
+    @Test
+    public void testCovarianceMatrixTooShort() {
+
+        double[][] returns = { { 0.01 }, { -0.02 }, { 0.03 } };
+
+        Primitive64Matrix actual = FinanceUtils.makeCovarianceMatrix(returns, CalendarDateUnit.DAY);
+
+        TestUtils.assertEquals(3L, actual.countRows());
+        for (int ij = 0; ij < actual.count(); ij++) {
+            TestUtils.assertTrue(Double.isNaN(actual.doubleValue(ij)));
+        }
+    }
 }
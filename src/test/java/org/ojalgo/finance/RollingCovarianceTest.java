@@ -0,0 +1,144 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.type.CalendarDateUnit;
+import org.ojalgo.type.context.NumberContext;
+
+/**
+ * @author apete
+ */
+public class RollingCovarianceTest extends FinanceTests {
+
+    private static final NumberContext ACCURACY = NumberContext.getGeneral(12, 14);
+
+    private static double[][] makeReturns(final int size, final int length) {
+
+        Random random = new Random(123L);
+
+        double[][] retVal = new double[size][length];
+        for (int t = 0; t < length; t++) {
+            for (int i = 0; i < size; i++) {
+                retVal[i][t] = 0.0005 + 0.01 * random.nextGaussian() + (i > 0 ? 0.5 * retVal[i - 1][t] : 0.0);
+            }
+        }
+        return retVal;
+    }
+
+    private static double[] observation(final double[][] returns, final int index) {
+        double[] retVal = new double[returns.length];
+        for (int i = 0; i < returns.length; i++) {
+            retVal[i] = returns[i][index];
+        }
+        return retVal;
+    }
+
+    private static double[][] window(final double[][] returns, final int first, final int limit) {
+        double[][] retVal = new double[returns.length][];
+        for (int i = 0; i < returns.length; i++) {
+            retVal[i] = Arrays.copyOfRange(returns[i], first, limit);
+        }
+        return retVal;
+    }
+
+    @Test
+    public void testDrop() {
+
+        double[][] returns = RollingCovarianceTest.makeReturns(5, 100);
+
+        RollingCovariance estimator = new RollingCovariance(5, 60, CalendarDateUnit.WEEK);
+        for (int t = 0; t < 60; t++) {
+            estimator.add(RollingCovarianceTest.observation(returns, t));
+        }
+
+        for (int k = 0; k < 20; k++) {
+            estimator.drop();
+        }
+
+        TestUtils.assertEquals(40, estimator.count());
+        TestUtils.assertFalse(estimator.isFull());
+
+        Primitive64Matrix expected = FinanceUtils.makeCovarianceMatrix(RollingCovarianceTest.window(returns, 20, 60), CalendarDateUnit.WEEK);
+        TestUtils.assertEquals(expected, estimator.getCovariances(), ACCURACY);
+    }
+
+    @Test
+    public void testExpanding() {
+
+        double[][] returns = RollingCovarianceTest.makeReturns(9, 500);
+
+        RollingCovariance estimator = new RollingCovariance(9, CalendarDateUnit.DAY);
+        for (int t = 0; t < 500; t++) {
+            estimator.add(RollingCovarianceTest.observation(returns, t));
+        }
+
+        TestUtils.assertEquals(500, estimator.count());
+
+        Primitive64Matrix expected = FinanceUtils.makeCovarianceMatrix(returns, CalendarDateUnit.DAY);
+        TestUtils.assertEquals(expected, estimator.getCovariances(), ACCURACY);
+
+        try {
+            estimator.drop();
+            TestUtils.fail("No window - nothing to drop!");
+        } catch (IllegalStateException cause) {
+            // Expected
+        }
+    }
+
+    /**
+     * Adding to a full window drops the oldest observation - the estimate should always match a full
+     * recalculation over the same window.
+     */
+    @Test
+    public void testWindow() {
+
+        int size = 9;
+        int window = 250;
+
+        double[][] returns = RollingCovarianceTest.makeReturns(size, 1000);
+
+        RollingCovariance estimator = new RollingCovariance(size, window, CalendarDateUnit.DAY);
+
+        for (int t = 0; t < 1000; t++) {
+
+            estimator.add(RollingCovarianceTest.observation(returns, t));
+
+            if ((t + 1) % window == 0 || t == 999) {
+
+                int first = Math.max(0, t + 1 - window);
+
+                TestUtils.assertEquals(t + 1 - first, estimator.count());
+                TestUtils.assertTrue(estimator.isFull());
+
+                Primitive64Matrix expected = FinanceUtils.makeCovarianceMatrix(RollingCovarianceTest.window(returns, first, t + 1), CalendarDateUnit.DAY);
+                TestUtils.assertEquals(expected, estimator.getCovariances(), ACCURACY);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ojalgo.TestUtils;
+import org.ojalgo.finance.data.fetcher.ArchiveFetcher;
+import org.ojalgo.finance.data.fetcher.DataFetcher;
+import org.ojalgo.series.BasicSeries;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Replays the test resources (recorded provider responses) - no network access.
+ *
+ * @author apete
+ */
+public class ArchiveTest extends FinanceDataTests {
+
+    static final File ARCHIVE = new File(PriceColumnsTest.PATH);
+
+    @TempDir
+    File directory;
+
+    public ArchiveTest() {
+        super();
+    }
+
+    /**
+     * Many concurrent loads using the async API - same results as the blocking calls.
+     */
+    @Test
+    public void testAsync() {
+
+        ExecutorService executor = DataSource.newExecutor();
+
+        try {
+
+            List<DataSource> sources = new ArrayList<>();
+            List<CompletableFuture<BasicSeries<LocalDate, Double>>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                for (CalendarDateUnit resolution : new CalendarDateUnit[] { CalendarDateUnit.DAY, CalendarDateUnit.WEEK, CalendarDateUnit.MONTH }) {
+                    DataSource source = DataSource.newArchive(ARCHIVE, i % 2 == 0 ? "Yahoo" : "AlphaVantage", "AAPL", resolution);
+                    sources.add(source);
+                    futures.add(source.getPriceSeriesAsync(executor));
+                }
+            }
+
+            for (int i = 0; i < sources.size(); i++) {
+                BasicSeries<LocalDate, Double> series = futures.get(i).join();
+                TestUtils.assertEquals(sources.get(i).getPriceSeries().size(), series.size());
+                TestUtils.assertEquals("AAPL", series.getName());
+            }
+
+            // Not in the archive - empty, not failed
+            TestUtils.assertTrue(DataSource.newArchive(ARCHIVE, "Yahoo", "MSFT", CalendarDateUnit.DAY).getPriceColumnsAsync(null, executor).join().isEmpty());
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Recorded as, and replayed from, UTF-8
+     */
+    @Test
+    public void testNonASCII() throws IOException {
+
+        String content = "Symbol,Name\nNESN,Nestl\u00E9\nEUR,\u20AC\nSMILE,\uD83D\uDE00\n";
+
+        DataFetcher live = new DataFetcher() {
+
+            public CalendarDateUnit getResolution() {
+                return CalendarDateUnit.DAY;
+            }
+
+            public Reader getStreamOfCSV() {
+                return new StringReader(content);
+            }
+
+            public String getSymbol() {
+                return "TEST";
+            }
+
+        };
+
+        ArchiveFetcher recording = ArchiveFetcher.recording(live, directory);
+        try (Reader reader = recording.getStreamOfCSV()) {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[64];
+            for (int count; (count = reader.read(buffer)) >= 0;) {
+                builder.append(buffer, 0, count);
+            }
+            TestUtils.assertEquals(content, builder.toString());
+        }
+
+        // One char at the time - the surrogate pair is split between reads
+        ArchiveFetcher replay = new ArchiveFetcher(directory, live.getProvider(), "TEST", CalendarDateUnit.DAY);
+        try (Reader reader = replay.getStreamOfCSV()) {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[1];
+            for (int count; (count = reader.read(buffer)) >= 0;) {
+                builder.append(buffer, 0, count);
+            }
+            TestUtils.assertEquals(content, builder.toString());
+        }
+    }
+
+    @Test
+    public void testRecord() throws IOException {
+
+        DataSource live = DataSource.newArchive(ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.WEEK);
+        DataSource recording = DataSource.newRecording(live, directory);
+
+        TestUtils.assertEquals(1980, recording.getPriceColumns().size());
+
+        String name = ArchiveFetcher.name("Yahoo", "AAPL", CalendarDateUnit.WEEK);
+        TestUtils.assertEquals("Yahoo-AAPL-weekly.csv", name);
+        TestUtils.assertTrue(Arrays.equals(Files.readAllBytes(new File(ARCHIVE, name).toPath()), Files.readAllBytes(new File(directory, name).toPath())));
+
+        DataSource replay = DataSource.newArchive(directory, "Yahoo", "AAPL", CalendarDateUnit.WEEK);
+        TestUtils.assertEquals(1980, replay.getPriceColumns().size());
+    }
+
+    /**
+     * A new recording replaces the archive file while an earlier replay of it is still being read
+     */
+    @Test
+    public void testRecordWhileReplaying() throws IOException {
+
+        String[] content = { "Date,Close\n2018-11-08,208.49\n" };
+
+        DataFetcher live = new DataFetcher() {
+
+            public CalendarDateUnit getResolution() {
+                return CalendarDateUnit.DAY;
+            }
+
+            public Reader getStreamOfCSV() {
+                return new StringReader(content[0]);
+            }
+
+            public String getSymbol() {
+                return "TEST";
+            }
+
+        };
+
+        ArchiveFetcher recording = ArchiveFetcher.recording(live, directory);
+
+        try (Reader first = recording.getStreamOfCSV()) {
+
+            char[] buffer = new char[64];
+            int count = first.read(buffer, 0, 5);
+
+            content[0] = "Date,Close\n2018-11-09,204.47\n";
+            try (Reader second = recording.getStreamOfCSV()) {
+                StringBuilder builder = new StringBuilder();
+                for (int read; (read = second.read(buffer)) >= 0;) {
+                    builder.append(buffer, 0, read);
+                }
+                TestUtils.assertEquals(content[0], builder.toString());
+            }
+
+            StringBuilder builder = new StringBuilder("Date,");
+            for (int read; (read = first.read(buffer)) >= 0;) {
+                builder.append(buffer, 0, read);
+            }
+            TestUtils.assertEquals(5, count);
+            TestUtils.assertEquals("Date,Close\n2018-11-08,208.49\n", builder.toString());
+        }
+    }
+
+    @Test
+    public void testReplay() {
+
+        TestUtils.assertEquals(9562, DataSource.newArchive(ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.DAY).getPriceColumns().size());
+        TestUtils.assertEquals(1089, DataSource.newArchive(ARCHIVE, "AlphaVantage", "MSFT", CalendarDateUnit.WEEK).getPriceColumns().size());
+        TestUtils.assertTrue(!DataSource.newArchive(ARCHIVE, "IEXTrading", "AAPL", CalendarDateUnit.DAY).getPriceColumns().isEmpty());
+
+        // Not in the archive
+        TestUtils.assertTrue(DataSource.newArchive(ARCHIVE, "Yahoo", "MSFT", CalendarDateUnit.DAY).getPriceColumns().isEmpty());
+    }
+
+}
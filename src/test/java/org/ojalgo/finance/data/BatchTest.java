@@ -0,0 +1,284 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.finance.data.fetcher.BatchDataFetcher;
+import org.ojalgo.finance.data.fetcher.DataFetcher;
+import org.ojalgo.finance.data.parser.YahooParser;
+import org.ojalgo.series.BasicSeries;
+import org.ojalgo.series.primitive.CoordinatedSet;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Batched fetching against a local stand-in for a provider's batch endpoint - no network access.
+ *
+ * @author apete
+ */
+public class BatchTest extends FinanceDataTests {
+
+    /**
+     * Serves the test resources, one file per symbol, and records the symbols of each request. Also counts
+     * the single symbol requests of its {@link StandInFetcher}s.
+     */
+    static final class StandInBatchFetcher implements BatchDataFetcher {
+
+        final List<List<String>> requests = new ArrayList<>();
+        final AtomicInteger singles = new AtomicInteger();
+
+        private final int myMaxSymbols;
+
+        StandInBatchFetcher(final int maxSymbols) {
+            super();
+            myMaxSymbols = maxSymbols;
+        }
+
+        public int getMaxSymbols() {
+            return myMaxSymbols;
+        }
+
+        public String getProvider() {
+            return "StandIn";
+        }
+
+        public Reader getStreamOfCSV(final Collection<String> symbols, final CalendarDateUnit resolution) {
+
+            requests.add(new ArrayList<>(symbols));
+
+            StringBuilder builder = new StringBuilder();
+            for (String symbol : symbols) {
+                File file = BatchTest.file(symbol);
+                if (file.exists()) {
+                    try {
+                        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                            builder.append('"').append(symbol).append('"').append(',').append(line).append('\n');
+                        }
+                    } catch (IOException cause) {
+                        throw new RuntimeException(cause);
+                    }
+                }
+            }
+            return new StringReader(builder.toString());
+        }
+
+    }
+
+    static final class StandInFetcher implements DataFetcher {
+
+        private final StandInBatchFetcher myBatchFetcher;
+        private final String mySymbol;
+
+        StandInFetcher(final String symbol, final StandInBatchFetcher batchFetcher) {
+            super();
+            mySymbol = symbol;
+            myBatchFetcher = batchFetcher;
+        }
+
+        public BatchDataFetcher getBatchFetcher() {
+            return myBatchFetcher;
+        }
+
+        public String getProvider() {
+            return myBatchFetcher.getProvider();
+        }
+
+        public CalendarDateUnit getResolution() {
+            return CalendarDateUnit.DAY;
+        }
+
+        public Reader getStreamOfCSV() {
+            myBatchFetcher.singles.incrementAndGet();
+            try {
+                return Files.newBufferedReader(BatchTest.file(mySymbol).toPath(), StandardCharsets.UTF_8);
+            } catch (IOException cause) {
+                return null;
+            }
+        }
+
+        public String getSymbol() {
+            return mySymbol;
+        }
+
+    }
+
+    static File file(final String symbol) {
+        switch (symbol) {
+        case "AAPL":
+            return new File(PriceColumnsTest.PATH + "Yahoo-AAPL-daily.csv");
+        case "MSFT":
+            return new File(PriceColumnsTest.PATH + "Yahoo-AAPL-weekly.csv");
+        case "IBM":
+            return new File(PriceColumnsTest.PATH + "Yahoo-AAPL-monthly.csv");
+        default:
+            return new File(PriceColumnsTest.PATH + symbol + ".csv");
+        }
+    }
+
+    private static List<DataSource> sources(final StandInBatchFetcher batchFetcher, final String... symbols) {
+        List<DataSource> retVal = new ArrayList<>();
+        for (String symbol : symbols) {
+            retVal.add(new DataSource(new StandInFetcher(symbol, batchFetcher), new YahooParser()));
+        }
+        return retVal;
+    }
+
+    public BatchTest() {
+        super();
+    }
+
+    /**
+     * Requests are chunked by {@link BatchDataFetcher#getMaxSymbols()}
+     */
+    @Test
+    public void testChunking() {
+
+        StandInBatchFetcher batchFetcher = new StandInBatchFetcher(2);
+        List<DataSource> sources = BatchTest.sources(batchFetcher, "AAPL", "MSFT", "IBM");
+
+        Map<FinanceData, PriceColumns> batched = DataSource.fetchBatched(sources);
+
+        TestUtils.assertEquals(3, batched.size());
+        TestUtils.assertEquals(2, batchFetcher.requests.size());
+        TestUtils.assertEquals(Arrays.asList("AAPL", "MSFT"), batchFetcher.requests.get(0));
+        TestUtils.assertEquals(Arrays.asList("IBM"), batchFetcher.requests.get(1));
+    }
+
+    /**
+     * DataSource.Coordinated fetches (through its cache) with batch requests.
+     */
+    @Test
+    public void testCoordinated() {
+
+        StandInBatchFetcher batchFetcher = new StandInBatchFetcher(100);
+        List<DataSource> sources = BatchTest.sources(batchFetcher, "AAPL", "MSFT", "IBM");
+
+        DataSource.Coordinated coordinated = DataSource.coordinated();
+        for (DataSource source : sources) {
+            coordinated.add(source);
+        }
+
+        CoordinatedSet<LocalDate> coordinatedSet = coordinated.get();
+        for (int s = 0; s < 3; s++) {
+            TestUtils.assertTrue(coordinatedSet.getSeries(s).size() > 0);
+        }
+
+        TestUtils.assertEquals(1, batchFetcher.requests.size());
+        TestUtils.assertEquals(Arrays.asList("AAPL", "MSFT", "IBM"), batchFetcher.requests.get(0));
+        TestUtils.assertEquals(0, batchFetcher.singles.get());
+    }
+
+    /**
+     * SourceCache.getAll fetches the stale keys with batch requests, and those not in the batch response one
+     * by one. Each key is counted once - a miss when (re)loaded, otherwise a hit.
+     */
+    @Test
+    public void testGetAll() {
+
+        StandInBatchFetcher batchFetcher = new StandInBatchFetcher(100);
+        List<DataSource> sources = BatchTest.sources(batchFetcher, "AAPL", "MSFT", "IBM", "MISSING");
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY);
+
+        List<BasicSeries<LocalDate, Double>> all = cache.getAll(sources);
+
+        TestUtils.assertEquals(4, all.size());
+        TestUtils.assertEquals(9562, all.get(0).size());
+        TestUtils.assertEquals(1980, all.get(1).size());
+        TestUtils.assertEquals(0, all.get(3).size());
+
+        TestUtils.assertEquals(1, batchFetcher.requests.size());
+        // Only MISSING is fetched on its own
+        TestUtils.assertEquals(1, batchFetcher.singles.get());
+
+        TestUtils.assertEquals(4L, cache.getMissCount());
+        TestUtils.assertEquals(0L, cache.getHitCount());
+
+        cache.getAll(sources.subList(0, 3));
+
+        TestUtils.assertEquals(1, batchFetcher.requests.size());
+        TestUtils.assertEquals(4L, cache.getMissCount());
+        TestUtils.assertEquals(3L, cache.getHitCount());
+    }
+
+    /**
+     * Several sources from the same provider are fetched with one request, and the demultiplexed data is the
+     * same as when fetching them one by one.
+     */
+    @Test
+    public void testGrouping() {
+
+        StandInBatchFetcher batchFetcher = new StandInBatchFetcher(100);
+        List<DataSource> sources = BatchTest.sources(batchFetcher, "AAPL", "MSFT", "IBM", "MISSING");
+
+        Map<FinanceData, PriceColumns> batched = DataSource.fetchBatched(sources);
+
+        TestUtils.assertEquals(1, batchFetcher.requests.size());
+        TestUtils.assertEquals(Arrays.asList("AAPL", "MSFT", "IBM", "MISSING"), batchFetcher.requests.get(0));
+
+        // No rows for MISSING in the response - it's left to be fetched on its own
+        TestUtils.assertEquals(3, batched.size());
+        TestUtils.assertFalse(batched.containsKey(sources.get(3)));
+
+        for (int s = 0; s < 3; s++) {
+
+            PriceColumns expected = sources.get(s).getPriceColumns();
+            PriceColumns actual = batched.get(sources.get(s));
+
+            TestUtils.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                TestUtils.assertEquals(expected.getEpochDay(i), actual.getEpochDay(i));
+                TestUtils.assertEquals(expected.getPrice(i), actual.getPrice(i), 1E-12);
+                TestUtils.assertEquals(expected.getVolume(i), actual.getVolume(i), 1E-12);
+            }
+        }
+    }
+
+    /**
+     * A single source (per provider) is not batched.
+     */
+    @Test
+    public void testSingle() {
+
+        StandInBatchFetcher batchFetcher = new StandInBatchFetcher(100);
+        List<DataSource> sources = BatchTest.sources(batchFetcher, "AAPL");
+        sources.add(DataSource.newArchive(ArchiveTest.ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.DAY));
+
+        TestUtils.assertTrue(DataSource.fetchBatched(sources).isEmpty());
+        TestUtils.assertTrue(batchFetcher.requests.isEmpty());
+    }
+
+}
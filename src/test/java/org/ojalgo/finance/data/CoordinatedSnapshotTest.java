@@ -0,0 +1,165 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ojalgo.TestUtils;
+import org.ojalgo.finance.data.SourceCacheTest.IncrementalData;
+import org.ojalgo.series.BasicSeries;
+import org.ojalgo.series.primitive.CoordinatedSet;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * @author apete
+ */
+public class CoordinatedSnapshotTest extends FinanceDataTests {
+
+    @TempDir
+    File directory;
+
+    public CoordinatedSnapshotTest() {
+        super();
+    }
+
+    @Test
+    public void testToCoordinatedSet() {
+
+        CoordinatedSnapshot snapshot = DataSource.coordinated()
+                .add(DataSource.newArchive(ArchiveTest.ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.DAY))
+                .add(DataSource.newArchive(ArchiveTest.ARCHIVE, "AlphaVantage", "MSFT", CalendarDateUnit.DAY)).getSnapshot();
+
+        int nbRows = snapshot.countRows();
+
+        CoordinatedSet<LocalDate> coordinatedSet = snapshot.toCoordinatedSet();
+
+        TestUtils.assertEquals(snapshot.getDate(0), coordinatedSet.getFirstKey());
+        TestUtils.assertEquals(snapshot.getDate(nbRows - 1), coordinatedSet.getLastKey());
+
+        // Already aligned - nothing pruned or filled
+        for (int j = 0; j < snapshot.countColumns(); j++) {
+            TestUtils.assertEquals(nbRows, coordinatedSet.getSeries(j).size());
+            for (int i = 0; i < nbRows; i++) {
+                TestUtils.assertEquals(snapshot.doubleValue(i, j), coordinatedSet.getSeries(j).value(i), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+
+        CoordinatedSnapshot snapshot = DataSource.coordinated()
+                .add(DataSource.newArchive(ArchiveTest.ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.DAY))
+                .add(DataSource.newArchive(ArchiveTest.ARCHIVE, "AlphaVantage", "MSFT", CalendarDateUnit.DAY)).getSnapshot();
+
+        TestUtils.assertEquals(Arrays.asList("AAPL", "MSFT"), snapshot.getSymbols());
+        // The MSFT archive has the last 100 days only
+        TestUtils.assertTrue(snapshot.countRows() > 90);
+
+        File file = new File(directory, "snapshot.bin");
+        snapshot.write(file);
+
+        CoordinatedSnapshot reloaded = CoordinatedSnapshot.read(file);
+
+        TestUtils.assertEquals(snapshot.getSymbols(), reloaded.getSymbols());
+        TestUtils.assertEquals(snapshot.countRows(), reloaded.countRows());
+
+        for (int i = 0; i < snapshot.countRows(); i++) {
+            TestUtils.assertEquals(snapshot.getEpochDay(i), reloaded.getEpochDay(i));
+            for (int j = 0; j < snapshot.countColumns(); j++) {
+                TestUtils.assertEquals(snapshot.doubleValue(i, j), reloaded.doubleValue(i, j), 0.0);
+            }
+        }
+
+        BasicSeries<LocalDate, Double> series = reloaded.getSeries(1);
+        TestUtils.assertEquals("MSFT", series.getName());
+        TestUtils.assertEquals(snapshot.countRows(), series.size());
+        TestUtils.assertEquals(snapshot.doubleValue(0, 1), series.get(snapshot.getDate(0)).doubleValue(), 0.0);
+    }
+
+    /**
+     * Only the dates that all series have
+     */
+    @Test
+    public void testCommonDates() {
+
+        LocalDate first = LocalDate.of(2022, 1, 3);
+
+        IncrementalData complete = new IncrementalData();
+        for (int i = 0; i < 5; i++) {
+            complete.prices.put(first.plusDays(i), 100.0 + i);
+        }
+
+        IncrementalData gaps = new IncrementalData();
+        gaps.prices.put(first.plusDays(1L), 201.0);
+        gaps.prices.put(first.plusDays(2L), 202.0);
+        gaps.prices.put(first.plusDays(4L), 204.0);
+        gaps.prices.put(first.plusDays(5L), 205.0);
+
+        DataSource.Coordinated coordinated = DataSource.coordinated().add(complete).add(gaps);
+
+        CoordinatedSnapshot snapshot = coordinated.getSnapshot();
+
+        TestUtils.assertEquals(3, snapshot.countRows());
+        TestUtils.assertEquals(first.plusDays(1L), snapshot.getDate(0));
+        TestUtils.assertEquals(first.plusDays(2L), snapshot.getDate(1));
+        TestUtils.assertEquals(first.plusDays(4L), snapshot.getDate(2));
+        TestUtils.assertEquals(104.0, snapshot.doubleValue(2, 0), 0.0);
+        TestUtils.assertEquals(204.0, snapshot.doubleValue(2, 1), 0.0);
+
+        // The same date range as the coordinated set
+        CoordinatedSet<LocalDate> coordinatedSet = coordinated.get();
+        TestUtils.assertEquals(coordinatedSet.getFirstKey(), snapshot.getDate(0));
+        TestUtils.assertEquals(coordinatedSet.getLastKey(), snapshot.getDate(2));
+    }
+
+    @Test
+    public void testCorrupted() throws IOException {
+
+        CoordinatedSnapshot snapshot = DataSource.coordinated()
+                .add(DataSource.newArchive(ArchiveTest.ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.MONTH)).getSnapshot();
+
+        File file = new File(directory, "snapshot.bin");
+        snapshot.write(file);
+
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            access.seek(access.length() / 2L);
+            int value = access.read();
+            access.seek(access.length() / 2L);
+            access.write(value ^ 0xFF);
+        }
+
+        try {
+            CoordinatedSnapshot.read(file);
+            TestUtils.fail("Corruption not detected!");
+        } catch (IOException expected) {
+            TestUtils.assertTrue(expected.getMessage().startsWith("Checksum"));
+        }
+    }
+
+}
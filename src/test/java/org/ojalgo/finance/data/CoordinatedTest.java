@@ -0,0 +1,174 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.finance.data.SourceCacheTest.LocalFileData;
+import org.ojalgo.series.BasicSeries;
+
+/**
+ * @author apete
+ */
+public class CoordinatedTest extends FinanceDataTests {
+
+    /**
+     * Keeps track of the number of concurrent fetches from one provider
+     */
+    static final class ConcurrentData extends LocalFileData {
+
+        private final Provider myProvider;
+
+        ConcurrentData(final Provider provider, final String symbol, final String fileName) {
+            super(symbol, fileName);
+            myProvider = provider;
+        }
+
+        @Override
+        public PriceColumns getPriceColumns() {
+            myProvider.maximum.accumulateAndGet(myProvider.current.incrementAndGet(), Math::max);
+            try {
+                if (myProvider.await != null) {
+                    TestUtils.assertTrue(myProvider.await.await(10L, TimeUnit.SECONDS));
+                } else {
+                    Thread.sleep(50L);
+                }
+                return super.getPriceColumns();
+            } catch (InterruptedException cause) {
+                throw new RuntimeException(cause);
+            } finally {
+                myProvider.current.decrementAndGet();
+                if (myProvider.release != null) {
+                    myProvider.release.countDown();
+                }
+            }
+        }
+
+        @Override
+        public String getProvider() {
+            return myProvider.name;
+        }
+
+    }
+
+    static final class Provider {
+
+        final CountDownLatch await;
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger maximum = new AtomicInteger();
+        final String name;
+        final CountDownLatch release;
+
+        /**
+         * @param await If not null fetches wait for this latch
+         * @param release If not null fetches count down this latch
+         */
+        Provider(final String name, final CountDownLatch await, final CountDownLatch release) {
+            super();
+            this.name = name;
+            this.await = await;
+            this.release = release;
+        }
+
+    }
+
+    public CoordinatedTest() {
+        super();
+    }
+
+    /**
+     * With a blocking limit the queued fetches of the slow provider would occupy both executor threads, and
+     * the fast provider (that the slow one waits for) would never get to run.
+     */
+    @Test
+    public void testNonBlocking() throws Exception {
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Provider slow = new Provider("Slow", latch, null);
+        Provider fast = new Provider("Fast", null, latch);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+
+            DataSource.Coordinated coordinated = DataSource.coordinated().executor(executor).providerLimit(1);
+            for (int i = 0; i < 4; i++) {
+                coordinated.add(new ConcurrentData(slow, "S" + i, "Yahoo-AAPL-monthly.csv"));
+            }
+            coordinated.add(new ConcurrentData(fast, "F", "Yahoo-AAPL-weekly.csv"));
+
+            List<BasicSeries<LocalDate, Double>> all = coordinated.getAllAsync().get(10L, TimeUnit.SECONDS);
+
+            TestUtils.assertEquals(5, all.size());
+            TestUtils.assertEquals(1, slow.maximum.get());
+            TestUtils.assertEquals(1, fast.maximum.get());
+            TestUtils.assertEquals(1980, all.get(4).size());
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testProviderLimit() throws Exception {
+
+        Provider provider = new Provider("Test", null, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+
+            DataSource.Coordinated coordinated = DataSource.coordinated().executor(executor).providerLimit(2);
+
+            ConcurrentData[] sources = new ConcurrentData[8];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = new ConcurrentData(provider, "S" + i, (i % 2) == 0 ? "Yahoo-AAPL-monthly.csv" : "Yahoo-AAPL-weekly.csv");
+                coordinated.add(sources[i]);
+            }
+
+            List<BasicSeries<LocalDate, Double>> all = coordinated.getAllAsync().get(10L, TimeUnit.SECONDS);
+
+            // The limit is reached, but never exceeded
+            TestUtils.assertEquals(2, provider.maximum.get());
+
+            TestUtils.assertEquals(sources.length, all.size());
+            for (int i = 0; i < sources.length; i++) {
+                TestUtils.assertEquals(1, sources[i].count.get());
+                // In the same order as the sources
+                TestUtils.assertEquals(sources[i].getSymbol(), all.get(i).getName());
+                TestUtils.assertEquals((i % 2) == 0 ? 457 : 1980, all.get(i).size());
+            }
+
+            TestUtils.assertTrue(coordinated.getAsync().get(10L, TimeUnit.SECONDS) != null);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.finance.data.fetcher.DataFetcher;
+import org.ojalgo.finance.data.parser.YahooParser;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Replays archived responses through DataSource and SourceCache with the in-memory metrics registered.
+ *
+ * @author apete
+ */
+public class FinanceDataMetricsTest extends FinanceDataTests {
+
+    /**
+     * Serves the same text for every request
+     */
+    static DataFetcher fetcher(final String provider, final String text) {
+        return new DataFetcher() {
+
+            public String getProvider() {
+                return provider;
+            }
+
+            public CalendarDateUnit getResolution() {
+                return CalendarDateUnit.DAY;
+            }
+
+            public Reader getStreamOfCSV() {
+                return new StringReader(text);
+            }
+
+            public String getSymbol() {
+                return "AAPL";
+            }
+
+        };
+    }
+
+    public FinanceDataMetricsTest() {
+        super();
+    }
+
+    @Test
+    public void testFailingListener() {
+
+        FinanceDataListener failing = new FinanceDataListener() {
+
+            @Override
+            public void onCacheMiss(final String provider, final String symbol) {
+                throw new IllegalStateException("Listener failure");
+            }
+
+            @Override
+            public void onParse(final String provider, final String symbol, final long chars, final int rows, final long duration) {
+                throw new IllegalStateException("Listener failure");
+            }
+
+        };
+        FinanceDataMetrics metrics = new FinanceDataMetrics();
+
+        // Registered before the metrics, so it's called first
+        Instrumentation.add(failing);
+        Instrumentation.add(metrics);
+
+        try {
+
+            SourceCache cache = new SourceCache(CalendarDateUnit.DAY);
+            DataSource source = DataSource.newArchive(ArchiveTest.ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.WEEK);
+
+            TestUtils.assertEquals(1979, cache.get(source).size());
+
+            FinanceDataMetrics.Counters counters = metrics.getCounters("Yahoo", "AAPL");
+
+            TestUtils.assertEquals(1L, counters.getMisses());
+            TestUtils.assertEquals(1980L, counters.getRows());
+            TestUtils.assertEquals(0L, counters.getFailures());
+
+        } finally {
+            Instrumentation.remove(failing);
+            Instrumentation.remove(metrics);
+        }
+    }
+
+    @Test
+    public void testFetchParseAndCache() {
+
+        FinanceDataMetrics metrics = new FinanceDataMetrics();
+        Instrumentation.add(metrics);
+
+        try {
+
+            SourceCache cache = new SourceCache(CalendarDateUnit.DAY);
+            DataSource source = DataSource.newArchive(ArchiveTest.ARCHIVE, "Yahoo", "AAPL", CalendarDateUnit.WEEK);
+
+            // 1980 rows, but the last 2 are in the same week
+            TestUtils.assertEquals(1979, cache.get(source).size());
+            TestUtils.assertEquals(1979, cache.get(source).size());
+
+            FinanceDataMetrics.Counters counters = metrics.getCounters("Yahoo", "AAPL");
+
+            TestUtils.assertEquals(1L, counters.getMisses());
+            TestUtils.assertEquals(1L, counters.getHits());
+            TestUtils.assertEquals(1L, counters.getFetchLatency().getCount());
+            TestUtils.assertEquals(1L, counters.getRefreshLatency().getCount());
+            TestUtils.assertEquals(1980L, counters.getRows());
+            TestUtils.assertEquals(new File(ArchiveTest.ARCHIVE, "Yahoo-AAPL-weekly.csv").length(), counters.getChars());
+            TestUtils.assertTrue(counters.getRowsPerSecond() > 0.0);
+            TestUtils.assertEquals(0L, counters.getFailures());
+            TestUtils.assertEquals(0L, counters.getParseFailures());
+
+            // Nothing archived for this symbol
+            TestUtils.assertTrue(DataSource.newArchive(ArchiveTest.ARCHIVE, "Yahoo", "NONE", CalendarDateUnit.WEEK).getPriceColumns().isEmpty());
+            TestUtils.assertEquals(1L, metrics.getCounters("Yahoo", "NONE").getFailures());
+
+            TestUtils.assertEquals(1L, metrics.getTotal().getFailures());
+            TestUtils.assertEquals(1980L, metrics.getTotal().getRows());
+
+        } finally {
+            Instrumentation.remove(metrics);
+        }
+    }
+
+    @Test
+    public void testParseFailures() {
+
+        FinanceDataMetrics metrics = new FinanceDataMetrics();
+        Instrumentation.add(metrics);
+
+        try {
+
+            String malformed = "Date,Open,High,Low,Close,Adj Close,Volume\n2020-01-02,1.0,2.0,0.5,1.5,1.5,1000\n2020-01-03 garbage\n"
+                    + "2020-13-06,1.0,2.0,0.5,1.5,1.5,1000\n\n2020-01-07,1.0,2.0,0.5,1.5,1.5,1000\n";
+            TestUtils.assertEquals(2, new DataSource(FinanceDataMetricsTest.fetcher("Malformed", malformed), new YahooParser()).getPriceColumns().size());
+
+            // The header is not a failure, but the garbage and the invalid date are - empty lines are ignored
+            FinanceDataMetrics.Counters counters = metrics.getCounters("Malformed", "AAPL");
+            TestUtils.assertEquals(2L, counters.getRows());
+            TestUtils.assertEquals(2L, counters.getParseFailures());
+            TestUtils.assertEquals(0L, counters.getFailures());
+
+            // Not CSV at all - nothing is parsed, and the only line is not a header
+            String message = "{\"Error Message\": \"Invalid API call.\"}";
+            TestUtils.assertTrue(new DataSource(FinanceDataMetricsTest.fetcher("Message", message), new YahooParser()).getPriceColumns().isEmpty());
+
+            counters = metrics.getCounters("Message", "AAPL");
+            TestUtils.assertEquals(0L, counters.getRows());
+            TestUtils.assertEquals(1L, counters.getParseFailures());
+
+            TestUtils.assertEquals(3L, metrics.getTotal().getParseFailures());
+
+        } finally {
+            Instrumentation.remove(metrics);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.finance.data.parser.IntradayParser;
+import org.ojalgo.function.constant.PrimitiveMath;
+import org.ojalgo.type.CalendarDateDuration;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * @author apete
+ */
+public class IntradayColumnsTest extends FinanceDataTests {
+
+    /**
+     * Reads 5 minute bars from a local file, and counts how many times it was asked.
+     */
+    static final class LocalIntradayData implements IntradayData {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        public CalendarDateDuration getInterval() {
+            return new CalendarDateDuration(5, CalendarDateUnit.MINUTE);
+        }
+
+        public IntradayColumns getIntradayColumns() {
+            count.incrementAndGet();
+            IntradayColumns retVal = new IntradayColumns();
+            try {
+                new IntradayParser(ZoneId.of("America/New_York")).parse(new FileReader(new File(PriceColumnsTest.PATH + "AlphaVantage-AAPL-intraday.csv")),
+                        retVal);
+            } catch (FileNotFoundException cause) {
+                throw new RuntimeException(cause);
+            }
+            retVal.sort();
+            return retVal;
+        }
+
+        public String getSymbol() {
+            return "AAPL";
+        }
+
+    }
+
+    public IntradayColumnsTest() {
+        super();
+    }
+
+    @Test
+    public void testCleanUp() {
+
+        AtomicLong time = new AtomicLong(System.currentTimeMillis());
+        SourceCache cache = new SourceCache(CalendarDateUnit.SECOND).intradayWindow(new CalendarDateDuration(2, CalendarDateUnit.HOUR)).clock(time::get);
+
+        cache.getIntraday(new LocalIntradayData());
+        TestUtils.assertEquals(25L, cache.getWeight());
+
+        // Not used within the refresh interval
+        time.addAndGet(2_500L);
+        cache.cleanUp();
+
+        TestUtils.assertEquals(1L, cache.getEvictionCount());
+        TestUtils.assertEquals(0L, cache.getWeight());
+    }
+
+    @Test
+    public void testMaximumWeight() {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY).intradayWindow(new CalendarDateDuration(2, CalendarDateUnit.HOUR)).maximumWeight(30L);
+
+        LocalIntradayData first = new LocalIntradayData();
+        LocalIntradayData second = new LocalIntradayData();
+
+        cache.getIntraday(first);
+        TestUtils.assertEquals(25L, cache.getWeight());
+
+        // Exceeds the limit - the other (least recently used) entry is evicted
+        cache.getIntraday(second);
+        TestUtils.assertEquals(1L, cache.getEvictionCount());
+        TestUtils.assertEquals(25L, cache.getWeight());
+
+        cache.getIntraday(second);
+        TestUtils.assertEquals(1, second.count.get());
+        cache.getIntraday(first);
+        TestUtils.assertEquals(2, first.count.get());
+        TestUtils.assertEquals(2L, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testMergeAndRetain() {
+
+        IntradayColumns all = new LocalIntradayData().getIntradayColumns();
+
+        TestUtils.assertEquals(78, all.size());
+        TestUtils.assertEquals(Instant.parse("2018-11-09T14:35:00Z"), all.getInstant(0));
+        TestUtils.assertEquals(Instant.parse("2018-11-09T21:00:00Z"), all.getInstant(77));
+
+        // The head has (incomplete) dummy values for its last bar
+
+        IntradayColumns head = new IntradayColumns();
+        for (int i = 0; i < 50; i++) {
+            head.accept(all.getEpochSecond(i), all.getOpen(i), all.getHigh(i), all.getLow(i), all.getClose(i), all.getVolume(i));
+        }
+        head.accept(all.getEpochSecond(50), 1.0, 1.0, 1.0, 1.0, 1.0);
+
+        IntradayColumns tail = new IntradayColumns();
+        for (int i = 40; i < all.size(); i++) {
+            tail.accept(all.getEpochSecond(i), all.getOpen(i), all.getHigh(i), all.getLow(i), all.getClose(i), all.getVolume(i));
+        }
+
+        TestUtils.assertEquals(50, head.merge(tail));
+        TestUtils.assertEquals(all.size(), head.size());
+        for (int i = 0; i < all.size(); i++) {
+            TestUtils.assertEquals(all.getEpochSecond(i), head.getEpochSecond(i));
+            TestUtils.assertEquals(all.getPrice(i), head.getPrice(i), PrimitiveMath.MACHINE_EPSILON);
+        }
+
+        // Keep the last hour only
+
+        head.retain(head.getEpochSecond(head.size() - 1) - 3600L);
+
+        TestUtils.assertEquals(13, head.size());
+        TestUtils.assertEquals(Instant.parse("2018-11-09T20:00:00Z"), head.getInstant(0));
+        TestUtils.assertEquals(all.getPrice(77), head.getPrice(12), PrimitiveMath.MACHINE_EPSILON);
+    }
+
+    @Test
+    public void testRollingWindow() {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY).intradayWindow(new CalendarDateDuration(2, CalendarDateUnit.HOUR));
+
+        LocalIntradayData data = new LocalIntradayData();
+
+        IntradayColumns window = cache.getIntraday(data);
+        TestUtils.assertEquals(25, window.size());
+        TestUtils.assertEquals(Instant.parse("2018-11-09T19:00:00Z"), window.getInstant(0));
+
+        // Within the bar interval - no refresh
+        TestUtils.assertTrue(window == cache.getIntraday(data));
+        TestUtils.assertEquals(1, data.count.get());
+        TestUtils.assertEquals(1L, cache.getHitCount());
+        TestUtils.assertEquals(1L, cache.getMissCount());
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+
+/**
+ * @author apete
+ */
+public class LatencyHistogramTest extends FinanceDataTests {
+
+    public LatencyHistogramTest() {
+        super();
+    }
+
+    @Test
+    public void testDecay() {
+
+        LatencyHistogram decaying = new LatencyHistogram(50);
+        LatencyHistogram allTime = new LatencyHistogram();
+
+        for (int i = 0; i < 100; i++) {
+            decaying.record(10L);
+            allTime.record(10L);
+        }
+
+        // The provider slows down
+        for (int i = 0; i < 100; i++) {
+            decaying.record(1_000L);
+            allTime.record(1_000L);
+        }
+
+        TestUtils.assertEquals(200L, allTime.getCount());
+        TestUtils.assertInRange(10L, 12L, allTime.getPercentile(0.50));
+
+        TestUtils.assertTrue(decaying.getCount() < 100L);
+        TestUtils.assertEquals(1_000L, decaying.getPercentile(0.50));
+        TestUtils.assertEquals(1_000L, decaying.getMax());
+    }
+
+    @Test
+    public void testPercentile() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        TestUtils.assertEquals(0L, histogram.getPercentile(0.95));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        TestUtils.assertEquals(1000L, histogram.getCount());
+        TestUtils.assertEquals(1000L, histogram.getMax());
+        TestUtils.assertEquals(500.5, histogram.getMean(), 1E-9);
+
+        // Within one bucket (19%) of the exact value
+        TestUtils.assertInRange(500L, 595L, histogram.getPercentile(0.50));
+        TestUtils.assertInRange(950L, 1000L, histogram.getPercentile(0.95));
+
+        // A single outlier does not move the 95th percentile
+        LatencyHistogram outlier = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            outlier.record(100L);
+        }
+        outlier.record(60_000L);
+        TestUtils.assertInRange(100L, 119L, outlier.getPercentile(0.95));
+        TestUtils.assertEquals(60_000L, outlier.getMax());
+    }
+
+}
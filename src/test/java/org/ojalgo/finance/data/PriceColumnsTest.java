@@ -0,0 +1,207 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjuster;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.finance.data.parser.AlphaVantageParser;
+import org.ojalgo.finance.data.parser.YahooParser;
+import org.ojalgo.function.constant.PrimitiveMath;
+import org.ojalgo.series.BasicSeries;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * @author apete
+ */
+public class PriceColumnsTest extends FinanceDataTests {
+
+    static final String PATH = "./src/test/resources/org/ojalgo/finance/data/parser/";
+
+    public PriceColumnsTest() {
+        super();
+    }
+
+    @Test
+    public void testMerge() throws FileNotFoundException {
+
+        PriceColumns all = new PriceColumns();
+        new YahooParser().parse(new FileReader(new File(PATH + "Yahoo-AAPL-daily.csv")), all);
+
+        // Everything up to and including 2018-11-01, but with a (partial) last value that differs
+
+        PriceColumns head = new PriceColumns();
+        for (int i = 0; all.getDate(i).isBefore(LocalDate.of(2018, 11, 1)); i++) {
+            head.accept(all.getEpochDay(i), all.getOpen(i), all.getHigh(i), all.getLow(i), all.getClose(i), all.getAdjusted(i), all.getVolume(i));
+        }
+        head.accept((int) LocalDate.of(2018, 11, 1).toEpochDay(), 1.0, 1.0, 1.0, 1.0, 1.0, 1.0);
+        int headSize = head.size();
+
+        // The tail overlaps the head - starts on 2018-10-29
+
+        PriceColumns tail = new PriceColumns();
+        for (int i = 0; i < all.size(); i++) {
+            if (!all.getDate(i).isBefore(LocalDate.of(2018, 10, 29))) {
+                tail.accept(all.getEpochDay(i), all.getOpen(i), all.getHigh(i), all.getLow(i), all.getClose(i), all.getAdjusted(i), all.getVolume(i));
+            }
+        }
+
+        int firstChanged = head.merge(tail);
+
+        TestUtils.assertEquals(headSize - 1, firstChanged);
+        TestUtils.assertEquals(all.size(), head.size());
+
+        for (int i = 0; i < all.size(); i++) {
+            TestUtils.assertEquals(all.getEpochDay(i), head.getEpochDay(i));
+        }
+        for (int i = firstChanged; i < all.size(); i++) {
+            TestUtils.assertEquals(all.getPrice(i), head.getPrice(i), PrimitiveMath.MACHINE_EPSILON);
+        }
+
+        // Merging the same tail again only replaces the last row
+        TestUtils.assertEquals(head.size() - 1, head.merge(tail));
+        TestUtils.assertEquals(all.size(), head.size());
+    }
+
+    /**
+     * Resampling the daily data should give the same OHLCV values as the monthly data from the provider
+     */
+    @Test
+    public void testResample() throws FileNotFoundException {
+
+        PriceColumns daily = new PriceColumns();
+        new YahooParser().parse(new FileReader(new File(PATH + "Yahoo-AAPL-daily.csv")), daily);
+
+        PriceColumns monthly = new PriceColumns();
+        new YahooParser().parse(new FileReader(new File(PATH + "Yahoo-AAPL-monthly.csv")), monthly);
+
+        PriceColumns resampled = daily.resample(CalendarDateUnit.MONTH);
+
+        for (LocalDate month : new LocalDate[] { LocalDate.of(2000, 1, 1), LocalDate.of(2010, 6, 1), LocalDate.of(2018, 10, 1) }) {
+
+            int expected = 0;
+            while (!monthly.getDate(expected).equals(month)) {
+                expected++;
+            }
+            int actual = 0;
+            while (!resampled.getDate(actual).equals(month.withDayOfMonth(month.lengthOfMonth()))) {
+                actual++;
+            }
+
+            TestUtils.assertEquals(monthly.getOpen(expected), resampled.getOpen(actual), 1E-6);
+            TestUtils.assertEquals(monthly.getHigh(expected), resampled.getHigh(actual), 1E-6);
+            TestUtils.assertEquals(monthly.getLow(expected), resampled.getLow(actual), 1E-6);
+            TestUtils.assertEquals(monthly.getClose(expected), resampled.getClose(actual), 1E-6);
+            TestUtils.assertEquals(monthly.getVolume(expected), resampled.getVolume(actual), 1E-6);
+        }
+
+        // Resampling to the same resolution changes nothing
+        PriceColumns same = daily.resample(CalendarDateUnit.DAY);
+        TestUtils.assertEquals(daily.size(), same.size());
+        TestUtils.assertEquals(daily.getEpochDay(100), same.getEpochDay(100));
+        TestUtils.assertEquals(daily.getPrice(100), same.getPrice(100), PrimitiveMath.MACHINE_EPSILON);
+    }
+
+    @Test
+    public void testSortDescending() throws FileNotFoundException {
+
+        PriceColumns columns = new PriceColumns();
+        new AlphaVantageParser().parse(new FileReader(new File(PATH + "AlphaVantage-AAPL-daily.csv")), columns);
+
+        TestUtils.assertEquals(5251, columns.size());
+        TestUtils.assertEquals(LocalDate.of(2018, 11, 12), columns.getDate(0));
+
+        columns.sort();
+
+        TestUtils.assertEquals(5251, columns.size());
+
+        TestUtils.assertEquals(LocalDate.of(1998, 1, 2), columns.getDate(0));
+        TestUtils.assertEquals(0.5125, columns.getPrice(0), PrimitiveMath.MACHINE_EPSILON);
+
+        TestUtils.assertEquals(LocalDate.of(2018, 11, 12), columns.getDate(columns.size() - 1));
+        TestUtils.assertEquals(194.1700, columns.getPrice(columns.size() - 1), PrimitiveMath.MACHINE_EPSILON);
+        TestUtils.assertEquals(199.0000, columns.getOpen(columns.size() - 1), PrimitiveMath.MACHINE_EPSILON);
+        TestUtils.assertEquals(50979562, columns.getVolume(columns.size() - 1), PrimitiveMath.MACHINE_EPSILON);
+
+        for (int i = 1; i < columns.size(); i++) {
+            TestUtils.assertTrue(columns.getEpochDay(i - 1) < columns.getEpochDay(i));
+        }
+    }
+
+    @Test
+    public void testSupplyTo() throws FileNotFoundException {
+
+        PriceColumns columns = new PriceColumns();
+        new AlphaVantageParser().parse(new FileReader(new File(PATH + "AlphaVantage-AAPL-daily.csv")), columns);
+        columns.sort();
+
+        for (CalendarDateUnit resolution : new CalendarDateUnit[] { CalendarDateUnit.DAY, CalendarDateUnit.WEEK, CalendarDateUnit.MONTH }) {
+
+            TemporalAdjuster adjuster = resolution == CalendarDateUnit.MONTH ? FinanceData.LAST_DAY_OF_MONTH
+                    : resolution == CalendarDateUnit.WEEK ? FinanceData.FRIDAY_OF_WEEK : TemporalAdjusters.ofDateAdjuster(date -> date);
+
+            BasicSeries<LocalDate, Double> series = BasicSeries.LOCAL_DATE.build(Primitive64Array.FACTORY);
+            columns.supplyTo(series, resolution);
+
+            Set<LocalDate> expected = new TreeSet<>();
+            for (int i = 0; i < columns.size(); i++) {
+                LocalDate key = (LocalDate) adjuster.adjustInto(columns.getDate(i));
+                expected.add(key);
+                // The last row of each period wins
+                if ((i + 1 == columns.size()) || !key.equals(adjuster.adjustInto(columns.getDate(i + 1)))) {
+                    TestUtils.assertEquals(columns.getPrice(i), series.get(key).doubleValue(), PrimitiveMath.MACHINE_EPSILON);
+                }
+            }
+
+            TestUtils.assertEquals(expected.size(), series.size());
+            TestUtils.assertEquals(expected, series.keySet());
+        }
+    }
+
+    @Test
+    public void testTrimAndGrow() throws FileNotFoundException {
+
+        PriceColumns columns = new PriceColumns(0);
+        new YahooParser().parse(new FileReader(new File(PATH + "Yahoo-AAPL-daily.csv")), columns);
+
+        TestUtils.assertEquals(9562, columns.size());
+
+        columns.trim();
+        columns.sort();
+
+        TestUtils.assertEquals(9562, columns.size());
+        TestUtils.assertEquals(LocalDate.of(1980, 12, 12), columns.getDate(0));
+        TestUtils.assertEquals(0.023106, columns.getPrice(0), PrimitiveMath.MACHINE_EPSILON);
+        TestUtils.assertEquals(LocalDate.of(2018, 11, 9), columns.getDate(columns.size() - 1));
+        TestUtils.assertEquals(204.470001, columns.getPrice(columns.size() - 1), PrimitiveMath.MACHINE_EPSILON);
+    }
+
+}
@@ -0,0 +1,588 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ojalgo.TestUtils;
+import org.ojalgo.array.Primitive64Array;
+import org.ojalgo.finance.data.fetcher.URLFetcher;
+import org.ojalgo.finance.data.parser.YahooParser;
+import org.ojalgo.series.BasicSeries;
+import org.ojalgo.type.CalendarDateDuration;
+import org.ojalgo.type.CalendarDateUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * @author apete
+ */
+public class SourceCacheTest extends FinanceDataTests {
+
+    /**
+     * An in-memory history that can be revised/extended between requests. Records the "since" date of each
+     * request, and only returns the rows from that date.
+     */
+    static final class IncrementalData implements FinanceData {
+
+        final Map<LocalDate, Double> prices = new TreeMap<>();
+        final List<LocalDate> requests = new ArrayList<>();
+
+        public List<DatePrice> getHistoricalPrices() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PriceColumns getPriceColumns() {
+            return this.getPriceColumns(null);
+        }
+
+        @Override
+        public synchronized PriceColumns getPriceColumns(final LocalDate since) {
+            requests.add(since);
+            PriceColumns retVal = new PriceColumns();
+            for (Map.Entry<LocalDate, Double> entry : prices.entrySet()) {
+                if ((since == null) || !entry.getKey().isBefore(since)) {
+                    double price = entry.getValue();
+                    retVal.accept((int) entry.getKey().toEpochDay(), price, price, price, price, price, 1_000.0);
+                }
+            }
+            return retVal;
+        }
+
+        public BasicSeries<LocalDate, Double> getPriceSeries() {
+            throw new UnsupportedOperationException();
+        }
+
+        public String getSymbol() {
+            return "INCR";
+        }
+
+    }
+
+    /**
+     * Reads from a local file rather than fetching anything, and counts how many times it was asked.
+     */
+    static class LocalFileData implements FinanceData {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        private final File myFile;
+        private final String mySymbol;
+
+        LocalFileData(final String symbol, final String fileName) {
+            super();
+            mySymbol = symbol;
+            myFile = new File(PriceColumnsTest.PATH + fileName);
+        }
+
+        public List<DatePrice> getHistoricalPrices() {
+            List<DatePrice> retVal = new ArrayList<>();
+            new YahooParser().parse(myFile, true, retVal::add);
+            return retVal;
+        }
+
+        public PriceColumns getPriceColumns() {
+            count.incrementAndGet();
+            PriceColumns retVal = new PriceColumns();
+            try {
+                new YahooParser().parse(new FileReader(myFile), retVal);
+            } catch (FileNotFoundException cause) {
+                throw new RuntimeException(cause);
+            }
+            return retVal;
+        }
+
+        public BasicSeries<LocalDate, Double> getPriceSeries() {
+            BasicSeries<LocalDate, Double> retVal = BasicSeries.LOCAL_DATE.build(Primitive64Array.FACTORY);
+            this.getPriceColumns().supplyTo(retVal, this.getResolution());
+            return retVal;
+        }
+
+        public String getSymbol() {
+            return mySymbol;
+        }
+
+    }
+
+    /**
+     * Blocks in {@link #getPriceColumns()} until released
+     */
+    static final class SlowData extends LocalFileData {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        SlowData(final String symbol, final String fileName) {
+            super(symbol, fileName);
+        }
+
+        @Override
+        public PriceColumns getPriceColumns() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException cause) {
+                throw new RuntimeException(cause);
+            }
+            return super.getPriceColumns();
+        }
+
+    }
+
+    @TempDir
+    File directory;
+
+    public SourceCacheTest() {
+        super();
+    }
+
+    @Test
+    public void testCleanUpWhileLoading() throws Exception {
+
+        AtomicLong time = new AtomicLong(System.currentTimeMillis());
+        SourceCache cache = new SourceCache(CalendarDateUnit.SECOND).clock(time::get);
+
+        SlowData slow = new SlowData("AAPL", "Yahoo-AAPL-daily.csv");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+
+            Future<BasicSeries<LocalDate, Double>> loading = executor.submit(() -> cache.get(slow));
+
+            // The clean up runs, well after the refresh interval, while the first request is still loading
+            TestUtils.assertTrue(slow.started.await(10L, TimeUnit.SECONDS));
+            time.addAndGet(2_000L);
+            cache.cleanUp();
+
+            Future<BasicSeries<LocalDate, Double>> waiting = executor.submit(() -> cache.get(slow));
+
+            slow.release.countDown();
+
+            // Still the same entry - the loading one was not evicted and replaced
+            TestUtils.assertTrue(loading.get(10L, TimeUnit.SECONDS) == waiting.get(10L, TimeUnit.SECONDS));
+            TestUtils.assertEquals(9562, loading.get().size());
+            TestUtils.assertEquals(0L, cache.getEvictionCount());
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDerivedResolutions() {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY);
+
+        LocalFileData daily = new LocalFileData("AAPL", "Yahoo-AAPL-daily.csv");
+
+        TestUtils.assertEquals(9562, cache.get(daily).size());
+        BasicSeries<LocalDate, Double> weekly = cache.get(daily, CalendarDateUnit.WEEK);
+        BasicSeries<LocalDate, Double> monthly = cache.get(daily, CalendarDateUnit.MONTH);
+
+        // One fetch for all three views
+        TestUtils.assertEquals(1, daily.count.get());
+
+        TestUtils.assertEquals(1979, weekly.size());
+        TestUtils.assertEquals(456, monthly.size());
+        TestUtils.assertTrue(monthly == cache.get(daily, CalendarDateUnit.MONTH));
+        TestUtils.assertEquals(456, cache.getPriceColumns(daily, CalendarDateUnit.MONTH).size());
+
+        // The last value of the month
+        TestUtils.assertEquals(cache.get(daily).get(LocalDate.of(2018, 10, 31)), monthly.get(LocalDate.of(2018, 10, 31)));
+    }
+
+    @Test
+    public void testDiskTier() throws IOException {
+
+        LocalFileData cold = new LocalFileData("AAPL", "Yahoo-AAPL-daily.csv");
+        SourceCache coldCache = new SourceCache(CalendarDateUnit.DAY, directory);
+
+        BasicSeries<LocalDate, Double> coldSeries = coldCache.get(cold);
+        TestUtils.assertEquals(1, cold.count.get());
+        TestUtils.assertEquals(9562, coldSeries.size());
+
+        // Simulate a restart - new cache instance (and new key instance) with the same directory
+
+        LocalFileData warm = new LocalFileData("AAPL", "Yahoo-AAPL-daily.csv");
+        SourceCache warmCache = new SourceCache(CalendarDateUnit.DAY, directory);
+
+        BasicSeries<LocalDate, Double> warmSeries = warmCache.get(warm);
+        TestUtils.assertEquals(0, warm.count.get());
+        TestUtils.assertEquals(coldSeries.size(), warmSeries.size());
+        TestUtils.assertEquals(coldSeries.firstKey(), warmSeries.firstKey());
+        TestUtils.assertEquals(coldSeries.lastKey(), warmSeries.lastKey());
+        TestUtils.assertEquals(coldSeries.get(coldSeries.lastKey()), warmSeries.get(warmSeries.lastKey()));
+
+        PriceColumns warmColumns = warmCache.getPriceColumns(warm);
+        TestUtils.assertEquals(0, warm.count.get());
+        TestUtils.assertEquals(9562, warmColumns.size());
+    }
+
+    @Test
+    public void testDiskTierNames() {
+
+        TestUtils.assertFalse(PriceColumnsFile.name(new LocalFileData("^GSPC", "Yahoo-AAPL-daily.csv"))
+                .equals(PriceColumnsFile.name(new LocalFileData("_GSPC", "Yahoo-AAPL-daily.csv"))));
+
+        LocalFileData minute = new LocalFileData("AAPL", "Yahoo-AAPL-daily.csv") {
+
+            @Override
+            public CalendarDateUnit getResolution() {
+                return CalendarDateUnit.MINUTE;
+            }
+
+        };
+
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            TestUtils.assertTrue(PriceColumnsFile.name(minute).endsWith("-minute.bin"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testFailedFetchLatency() {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY);
+
+        // No data is a failed fetch - not recorded, it would distort the hedge budget
+        IncrementalData failing = new IncrementalData();
+        TestUtils.assertEquals(0, cache.get(failing).size());
+        TestUtils.assertEquals(1, failing.requests.size());
+        TestUtils.assertTrue(cache.getLatency(failing.getProvider()) == null);
+
+        LocalFileData succeeding = new LocalFileData("AAPL", "Yahoo-AAPL-weekly.csv");
+        TestUtils.assertEquals(1980, cache.get(succeeding).size());
+        TestUtils.assertEquals(1L, cache.getLatency(succeeding.getProvider()).getCount());
+    }
+
+    @Test
+    public void testHedging() throws InterruptedException {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY).hedging(true).hedgeBudget(new CalendarDateDuration(50, CalendarDateUnit.MILLIS));
+
+        SlowData primary = new SlowData("AAPL", "Yahoo-AAPL-daily.csv");
+        LocalFileData secondary = new LocalFileData("AAPL", "Yahoo-AAPL-weekly.csv");
+        cache.register(primary, secondary);
+
+        // The primary doesn't answer within the budget - the secondary is served
+        TestUtils.assertEquals(1980, cache.get(primary).size());
+        TestUtils.assertEquals(1L, cache.getHedgeCount());
+        TestUtils.assertEquals(1, secondary.count.get());
+
+        // Once released the primary completes in the background, and is cached
+        primary.release.countDown();
+
+        BasicSeries<LocalDate, Double> series = cache.get(primary);
+        for (long deadline = System.currentTimeMillis() + 10_000L; (series.size() != 9562) && (System.currentTimeMillis() < deadline);) {
+            Thread.sleep(10L);
+            series = cache.get(primary);
+        }
+
+        TestUtils.assertEquals(9562, series.size());
+        TestUtils.assertEquals(1, primary.count.get());
+        TestUtils.assertEquals(1, secondary.count.get());
+        TestUtils.assertEquals(1L, cache.getLatency(primary.getProvider()).getCount());
+    }
+
+    /**
+     * More stuck primaries than there are threads to load them - the secondaries are not queued behind them
+     */
+    @Test
+    public void testHedgingWhilePrimariesStuck() throws Exception {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY).hedging(true).hedgeBudget(new CalendarDateDuration(50, CalendarDateUnit.MILLIS));
+
+        List<SlowData> primaries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            SlowData primary = new SlowData("STUCK" + i, "Yahoo-AAPL-daily.csv");
+            cache.register(primary, new LocalFileData("STUCK" + i, "Yahoo-AAPL-weekly.csv"));
+            primaries.add(primary);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(primaries.size());
+        try {
+
+            List<Future<BasicSeries<LocalDate, Double>>> futures = new ArrayList<>();
+            for (SlowData primary : primaries) {
+                futures.add(executor.submit(() -> cache.get(primary)));
+            }
+
+            for (Future<BasicSeries<LocalDate, Double>> future : futures) {
+                TestUtils.assertEquals(1980, future.get(10L, TimeUnit.SECONDS).size());
+            }
+            TestUtils.assertEquals(20L, cache.getHedgeCount());
+
+        } finally {
+            for (SlowData primary : primaries) {
+                primary.release.countDown();
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHedgingWhileLoading() throws InterruptedException {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY).hedging(true).hedgeBudget(new CalendarDateDuration(500, CalendarDateUnit.MILLIS));
+
+        SlowData primary = new SlowData("AAPL", "Yahoo-AAPL-daily.csv");
+        LocalFileData secondary = new LocalFileData("AAPL", "Yahoo-AAPL-weekly.csv");
+        cache.register(primary, secondary);
+
+        long started = System.currentTimeMillis();
+        TestUtils.assertEquals(1980, cache.get(primary).size());
+        TestUtils.assertTrue(System.currentTimeMillis() - started >= 500L);
+
+        // Later requests share the primary load in progress, and don't wait the budget again
+        for (int i = 0; i < 5; i++) {
+            started = System.currentTimeMillis();
+            TestUtils.assertEquals(1980, cache.get(primary).size());
+            TestUtils.assertTrue(System.currentTimeMillis() - started < 250L);
+        }
+
+        TestUtils.assertEquals(1L, cache.getHedgeCount());
+        TestUtils.assertEquals(1, secondary.count.get());
+
+        primary.release.countDown();
+
+        BasicSeries<LocalDate, Double> series = cache.get(primary);
+        for (long deadline = System.currentTimeMillis() + 10_000L; (series.size() != 9562) && (System.currentTimeMillis() < deadline);) {
+            Thread.sleep(10L);
+            series = cache.get(primary);
+        }
+
+        TestUtils.assertEquals(9562, series.size());
+        TestUtils.assertEquals(1, primary.count.get());
+    }
+
+    @Test
+    public void testIncremental() {
+
+        // Bounded, so that the clean up doesn't evict the entry between the refreshes
+        AtomicLong time = new AtomicLong(System.currentTimeMillis());
+        SourceCache cache = new SourceCache(CalendarDateUnit.SECOND).incremental(true).maximumWeight(1_000L).clock(time::get);
+
+        IncrementalData data = new IncrementalData();
+        LocalDate first = LocalDate.of(2022, 1, 3);
+        data.prices.put(first, 100.0);
+        data.prices.put(first.plusDays(1L), 101.0);
+        data.prices.put(first.plusDays(2L), 102.0);
+
+        BasicSeries<LocalDate, Double> series = cache.get(data);
+        TestUtils.assertEquals(3, series.size());
+        PriceColumns before = cache.getPriceColumns(data);
+
+        // The last (partial) day is revised, and a new day is added
+        data.prices.put(first.plusDays(2L), 102.5);
+        data.prices.put(first.plusDays(3L), 103.0);
+
+        time.addAndGet(1_100L);
+
+        TestUtils.assertTrue(series == cache.get(data));
+        TestUtils.assertEquals(Arrays.asList(null, first.plusDays(2L)), data.requests);
+
+        TestUtils.assertEquals(4, series.size());
+        TestUtils.assertEquals(100.0, series.get(first), 1E-9);
+        TestUtils.assertEquals(102.5, series.get(first.plusDays(2L)), 1E-9);
+        TestUtils.assertEquals(103.0, series.get(first.plusDays(3L)), 1E-9);
+
+        PriceColumns after = cache.getPriceColumns(data);
+        TestUtils.assertEquals(4, after.size());
+        TestUtils.assertEquals(102.5, after.getClose(2), 1E-9);
+        TestUtils.assertEquals(first.plusDays(3L), after.getDate(3));
+
+        // Merged into a copy - previously returned columns are not modified
+        TestUtils.assertTrue(before != after);
+        TestUtils.assertEquals(3, before.size());
+        TestUtils.assertEquals(102.0, before.getClose(2), 1E-9);
+    }
+
+    @Test
+    public void testMaximumWeight() {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY).maximumWeight(2500L).eviction(SourceCache.Eviction.LFU);
+
+        LocalFileData monthly = new LocalFileData("AAPL", "Yahoo-AAPL-monthly.csv");
+        LocalFileData weekly = new LocalFileData("AAPL", "Yahoo-AAPL-weekly.csv");
+        LocalFileData other = new LocalFileData("MSFT", "Yahoo-AAPL-monthly.csv");
+
+        cache.get(monthly);
+        BasicSeries<LocalDate, Double> evicted = cache.get(weekly);
+        TestUtils.assertEquals(457L + 1980L, cache.getWeight());
+
+        // Hit - monthly is now more frequently used than weekly
+        cache.get(monthly);
+        TestUtils.assertEquals(1L, cache.getHitCount());
+        TestUtils.assertEquals(2L, cache.getMissCount());
+        TestUtils.assertEquals(0L, cache.getEvictionCount());
+
+        // Exceeds the limit - the least frequently used (weekly) is evicted
+        cache.get(other);
+        TestUtils.assertEquals(1L, cache.getEvictionCount());
+        TestUtils.assertEquals(457L + 457L, cache.getWeight());
+        // Let go of, but not cleared - it may still be in use
+        TestUtils.assertEquals(1980, evicted.size());
+
+        cache.get(monthly);
+        TestUtils.assertEquals(1, monthly.count.get());
+        cache.get(weekly);
+        TestUtils.assertEquals(2, weekly.count.get());
+
+        TestUtils.assertEquals(2L, cache.getHitCount());
+        TestUtils.assertEquals(4L, cache.getMissCount());
+    }
+
+    /**
+     * Refreshes are conditional, and a 304 Not Modified keeps the cached data. A response that could not be
+     * used is not validated against - the next refresh gets the data even if the validators (ETag) did not
+     * change.
+     */
+    @Test
+    public void testNotModified() throws IOException {
+
+        String header = "Date,Open,High,Low,Close,Adj Close,Volume\n";
+        String[] body = { header + "2018-11-08,209.98,210.12,206.75,208.49,208.49,25289600\n2018-11-09,205.55,206.01,202.25,204.47,204.47,34365800\n" };
+        String[] etag = { "\"v1\"" };
+        AtomicInteger full = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/csv", exchange -> {
+            if (etag[0].equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1L);
+            } else {
+                full.incrementAndGet();
+                byte[] bytes = body[0].getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", etag[0]);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream stream = exchange.getResponseBody()) {
+                    stream.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+
+        try {
+
+            // Bounded, so that the clean up doesn't evict the entry between the refreshes
+            AtomicLong time = new AtomicLong(System.currentTimeMillis());
+            SourceCache cache = new SourceCache(CalendarDateUnit.SECOND).maximumWeight(1_000L).clock(time::get);
+            DataSource source = new DataSource(new URLFetcher(new URL("http://localhost:" + server.getAddress().getPort() + "/csv")), new YahooParser());
+
+            TestUtils.assertEquals(2, cache.get(source).size());
+            TestUtils.assertEquals(1, full.get());
+
+            time.addAndGet(1_100L);
+            TestUtils.assertEquals(2, cache.get(source).size());
+            TestUtils.assertEquals(1, full.get());
+            TestUtils.assertEquals(1, notModified.get());
+
+            // An error page, with a new ETag - the fetch fails and the cached data is kept
+            body[0] = "<html>Service Unavailable</html>";
+            etag[0] = "\"v2\"";
+
+            time.addAndGet(1_100L);
+            TestUtils.assertEquals(2, cache.get(source).size());
+            TestUtils.assertEquals(2, full.get());
+
+            // Fixed, but with the same ETag as the error page
+            body[0] = header + "2018-11-08,209.98,210.12,206.75,208.49,208.49,25289600\n2018-11-09,205.55,206.01,202.25,204.47,204.47,34365800\n"
+                    + "2018-11-12,199.00,199.85,193.79,194.17,194.17,51135500\n";
+
+            time.addAndGet(1_100L);
+            TestUtils.assertEquals(3, cache.get(source).size());
+            TestUtils.assertEquals(3, full.get());
+
+            time.addAndGet(1_100L);
+            TestUtils.assertEquals(3, cache.get(source).size());
+            TestUtils.assertEquals(3, full.get());
+            TestUtils.assertEquals(2, notModified.get());
+
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+
+        SourceCache cache = new SourceCache(CalendarDateUnit.DAY);
+
+        SlowData slow = new SlowData("AAPL", "Yahoo-AAPL-daily.csv");
+        LocalFileData fast = new LocalFileData("AAPL", "Yahoo-AAPL-weekly.csv");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            List<Future<BasicSeries<LocalDate, Double>>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> cache.get(slow)));
+            }
+
+            // While the slow key is loading other keys are not blocked
+            TestUtils.assertEquals(1980, cache.get(fast).size());
+            TestUtils.assertEquals(1, fast.count.get());
+
+            slow.release.countDown();
+
+            BasicSeries<LocalDate, Double> first = futures.get(0).get(10L, TimeUnit.SECONDS);
+            for (Future<BasicSeries<LocalDate, Double>> future : futures) {
+                TestUtils.assertTrue(first == future.get(10L, TimeUnit.SECONDS));
+            }
+            TestUtils.assertEquals(9562, first.size());
+            TestUtils.assertEquals(1, slow.count.get());
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
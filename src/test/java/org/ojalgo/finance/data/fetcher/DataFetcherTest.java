@@ -0,0 +1,83 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * The URLs requested for incremental (since some date) refreshes - no network access.
+ *
+ * @author apete
+ */
+public class DataFetcherTest {
+
+    @Test
+    public void testAlphaVantageOutputSize() {
+
+        AlphaVantageFetcher fetcher = new AlphaVantageFetcher("MSFT", CalendarDateUnit.DAY, "key", true);
+
+        LocalDate today = LocalDate.now();
+
+        TestUtils.assertTrue(fetcher.getURL(null).toString().contains("outputsize=full"));
+        TestUtils.assertTrue(fetcher.getURL(today.minusDays(200L)).toString().contains("outputsize=full"));
+
+        // Compact is the latest 100 data points - enough for recent dates
+        TestUtils.assertTrue(!fetcher.getURL(today.minusDays(10L)).toString().contains("outputsize"));
+        TestUtils.assertTrue(!fetcher.getURL(today.minusDays(99L)).toString().contains("outputsize"));
+
+        // Configured for compact - never full
+        AlphaVantageFetcher compact = new AlphaVantageFetcher("MSFT", CalendarDateUnit.DAY, "key", false);
+        TestUtils.assertTrue(!compact.getURL(null).toString().contains("outputsize"));
+    }
+
+    /**
+     * The batch response format is not verified - batching is opt-in
+     */
+    @Test
+    public void testIEXTradingBatch() {
+        TestUtils.assertTrue(new IEXTradingFetcher("AAPL").getBatchFetcher() == null);
+        TestUtils.assertTrue(new IEXTradingFetcher("AAPL", false).getBatchFetcher() == null);
+        TestUtils.assertTrue(new IEXTradingFetcher("AAPL", true).getBatchFetcher() == IEXTradingBatchFetcher.INSTANCE);
+    }
+
+    @Test
+    public void testIEXTradingRange() {
+
+        IEXTradingFetcher fetcher = new IEXTradingFetcher("AAPL");
+
+        LocalDate today = LocalDate.now();
+
+        TestUtils.assertEquals("https://cloud.iexapis.com/1.0/stock/AAPL/chart/5y?format=csv", fetcher.getURL(null).toString());
+
+        TestUtils.assertTrue(fetcher.getURL(today.minusDays(10L)).getPath().endsWith("/chart/1m"));
+        TestUtils.assertTrue(fetcher.getURL(today.minusDays(60L)).getPath().endsWith("/chart/3m"));
+        TestUtils.assertTrue(fetcher.getURL(today.minusDays(120L)).getPath().endsWith("/chart/6m"));
+        TestUtils.assertTrue(fetcher.getURL(today.minusDays(300L)).getPath().endsWith("/chart/1y"));
+        TestUtils.assertTrue(fetcher.getURL(today.minusDays(500L)).getPath().endsWith("/chart/2y"));
+        TestUtils.assertTrue(fetcher.getURL(today.minusDays(1000L)).getPath().endsWith("/chart/5y"));
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Conditional and compressed requests against a local server.
+ *
+ * @author apete
+ */
+public class HttpTransferTest {
+
+    static final String CSV = "Date,Open,High,Low,Close,Adj Close,Volume\n2018-11-09,205.550003,206.009995,202.250000,204.470001,204.470001,34365800\n";
+    static final String ETAG = "\"v1\"";
+    static final String LAST_MODIFIED = "Fri, 09 Nov 2018 22:00:00 GMT";
+
+    private static String read(final Reader reader) throws IOException {
+        try (BufferedReader buffered = new BufferedReader(reader)) {
+            return buffered.lines().collect(Collectors.joining("\n", "", "\n"));
+        }
+    }
+
+    private final AtomicInteger myFullResponses = new AtomicInteger();
+    private final AtomicInteger myNotModifiedResponses = new AtomicInteger();
+    private HttpServer myServer;
+    private volatile String myETag = ETAG;
+
+    public HttpTransferTest() {
+        super();
+    }
+
+    @BeforeEach
+    public void start() throws IOException {
+        myServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        myServer.createContext("/csv", this::handle);
+        myServer.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        myServer.stop(0);
+    }
+
+    /**
+     * Once committed, the next request is answered 304 Not Modified, until the data (ETag) changes.
+     */
+    @Test
+    public void testConditional() throws IOException {
+
+        RequestScheduler scheduler = new RequestScheduler("Test").retries(0).backoff(1L, TimeUnit.MILLISECONDS);
+        URL url = new URL("http://localhost:" + myServer.getAddress().getPort() + "/csv");
+        Validators validators = new Validators();
+
+        TestUtils.assertEquals(CSV, HttpTransferTest.read(scheduler.transfer(() -> new HttpTransfer(url, validators))));
+
+        // Pending until committed - the next request is unconditional
+        TestUtils.assertTrue(validators.isEmpty());
+        TestUtils.assertEquals(CSV, HttpTransferTest.read(scheduler.transfer(() -> new HttpTransfer(url, validators))));
+        TestUtils.assertEquals(2, myFullResponses.get());
+
+        validators.commit();
+        TestUtils.assertEquals(ETAG, validators.getETag());
+        TestUtils.assertEquals(LAST_MODIFIED, validators.getLastModified());
+
+        TestUtils.assertTrue(scheduler.transfer(() -> new HttpTransfer(url, validators)) == Validators.NOT_MODIFIED);
+        TestUtils.assertEquals(2, myFullResponses.get());
+        TestUtils.assertEquals(1, myNotModifiedResponses.get());
+
+        myETag = "\"v2\"";
+
+        TestUtils.assertEquals(CSV, HttpTransferTest.read(scheduler.transfer(() -> new HttpTransfer(url, validators))));
+        validators.commit();
+        TestUtils.assertEquals(myETag, validators.getETag());
+        TestUtils.assertEquals(3, myFullResponses.get());
+
+        // Without validators the request is unconditional
+        TestUtils.assertEquals(CSV, HttpTransferTest.read(scheduler.transfer(() -> new HttpTransfer(url, null))));
+        TestUtils.assertEquals(4, myFullResponses.get());
+        TestUtils.assertEquals(0L, scheduler.getFailureCount());
+    }
+
+    /**
+     * The validators are only sent with requests to the URL they are from - a different range (or output size)
+     * is a different response.
+     */
+    @Test
+    public void testConditionalPerURL() throws IOException {
+
+        RequestScheduler scheduler = new RequestScheduler("Test").retries(0).backoff(1L, TimeUnit.MILLISECONDS);
+        URL url = new URL("http://localhost:" + myServer.getAddress().getPort() + "/csv?range=5y");
+        URL other = new URL("http://localhost:" + myServer.getAddress().getPort() + "/csv?range=1m");
+        Validators validators = new Validators();
+
+        TestUtils.assertEquals(CSV, HttpTransferTest.read(scheduler.transfer(() -> new HttpTransfer(url, validators))));
+        validators.commit();
+
+        TestUtils.assertEquals(CSV, HttpTransferTest.read(scheduler.transfer(() -> new HttpTransfer(other, validators))));
+        TestUtils.assertEquals(2, myFullResponses.get());
+        TestUtils.assertEquals(0, myNotModifiedResponses.get());
+
+        // The other response was not committed - still validating against the first
+        TestUtils.assertTrue(scheduler.transfer(() -> new HttpTransfer(url, validators)) == Validators.NOT_MODIFIED);
+        TestUtils.assertEquals(1, myNotModifiedResponses.get());
+    }
+
+    @Test
+    public void testURL() {
+        TestUtils.assertEquals("https://www.alphavantage.co/query?function=TIME_SERIES_DAILY_ADJUSTED&symbol=BRK.B&apikey=a+b",
+                HttpTransfer.url("www.alphavantage.co", "/query", "function", "TIME_SERIES_DAILY_ADJUSTED", "symbol", "BRK.B", "apikey", "a b",
+                        "outputsize", null).toString());
+    }
+
+    /**
+     * Always gzip - the client must have asked for it.
+     */
+    private void handle(final HttpExchange exchange) throws IOException {
+
+        String etag = myETag;
+
+        if (!"gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+            exchange.sendResponseHeaders(406, -1L);
+        } else if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            myNotModifiedResponses.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1L);
+        } else {
+            myFullResponses.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            exchange.sendResponseHeaders(200, 0L);
+            try (OutputStream body = new GZIPOutputStream(exchange.getResponseBody())) {
+                body.write(CSV.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        exchange.close();
+    }
+
+}
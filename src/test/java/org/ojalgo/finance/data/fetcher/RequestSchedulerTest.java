@@ -0,0 +1,235 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+
+/**
+ * @author apete
+ */
+public class RequestSchedulerTest {
+
+    static final String CSV = "Date,Open,High,Low,Close,Adj Close,Volume\n2018-11-09,205.55,206.01,202.25,204.47,204.47,34365800\n";
+
+    /**
+     * Responds with the given status and body
+     */
+    static RequestScheduler.Exchange respond(final int status, final String body) {
+        return new RequestScheduler.Exchange() {
+
+            public int getStatusCode() {
+                return status;
+            }
+
+            public Reader getStreamReader() {
+                return new StringReader(body);
+            }
+
+        };
+    }
+
+    /**
+     * Responds with the given status and Retry-After header, and counts how many were discarded
+     */
+    static RequestScheduler.Exchange respond(final int status, final String retryAfter, final AtomicInteger discarded) {
+        return new RequestScheduler.Exchange() {
+
+            public void discard() {
+                discarded.incrementAndGet();
+            }
+
+            public String getHeader(final String name) {
+                return "Retry-After".equalsIgnoreCase(name) ? retryAfter : null;
+            }
+
+            public int getStatusCode() {
+                return status;
+            }
+
+            public Reader getStreamReader() {
+                return new StringReader("<html>Unavailable</html>");
+            }
+
+        };
+    }
+
+    @Test
+    public void testBackoff() {
+
+        RequestScheduler scheduler = new RequestScheduler("Test").retries(3).backoff(1L, TimeUnit.MILLISECONDS);
+
+        try {
+            scheduler.execute(() -> {
+                throw new RuntimeException("Transient");
+            });
+            TestUtils.fail("All attempts failed - should throw!");
+        } catch (IllegalStateException cause) {
+            // Expected
+        }
+
+        TestUtils.assertEquals(4L, scheduler.getRequestCount());
+        TestUtils.assertEquals(3L, scheduler.getRetryCount());
+        TestUtils.assertEquals(1L, scheduler.getFailureCount());
+        TestUtils.assertEquals(0, scheduler.getQueueDepth());
+        // 1 + 2 + 4 ms
+        TestUtils.assertTrue(scheduler.getWaitTime() >= 7L);
+    }
+
+    @Test
+    public void testClientError() {
+
+        RequestScheduler scheduler = new RequestScheduler("Test").retries(3).backoff(1L, TimeUnit.MILLISECONDS);
+
+        try {
+            scheduler.exchange(() -> RequestSchedulerTest.respond(404, "Not Found"));
+            TestUtils.fail("Rejected - should throw!");
+        } catch (IllegalStateException cause) {
+            TestUtils.assertTrue(cause.getMessage().contains("404"));
+        }
+
+        // Not retried
+        TestUtils.assertEquals(1L, scheduler.getRequestCount());
+        TestUtils.assertEquals(0L, scheduler.getRetryCount());
+        TestUtils.assertEquals(1L, scheduler.getFailureCount());
+    }
+
+    /**
+     * An AlphaVantage error message, e.g. for an invalid API key or symbol, is permanent
+     */
+    @Test
+    public void testErrorMessage() {
+
+        RequestScheduler scheduler = new RequestScheduler("Test").retries(3).backoff(1L, TimeUnit.MILLISECONDS);
+
+        try {
+            scheduler.exchange(() -> RequestSchedulerTest.respond(200, "{\n    \"Error Message\": \"Invalid API call.\"\n}"));
+            TestUtils.fail("Error message - should throw!");
+        } catch (IllegalStateException cause) {
+            TestUtils.assertTrue(cause.getMessage().contains("Invalid API call."));
+        }
+
+        TestUtils.assertEquals(1L, scheduler.getRequestCount());
+        TestUtils.assertEquals(0L, scheduler.getRetryCount());
+        TestUtils.assertEquals(1L, scheduler.getFailureCount());
+    }
+
+    @Test
+    public void testRateLimit() {
+
+        RequestScheduler scheduler = new RequestScheduler("Test").retries(0).rate(10, TimeUnit.SECONDS);
+
+        long begin = System.currentTimeMillis();
+        for (int i = 0; i < 15; i++) {
+            try {
+                scheduler.execute(() -> {
+                    throw new RuntimeException("Whatever");
+                });
+            } catch (IllegalStateException cause) {
+                // Expected
+            }
+        }
+        long elapsed = System.currentTimeMillis() - begin;
+
+        // The first 10 is a burst, then 1 every 100ms
+        TestUtils.assertEquals(15L, scheduler.getRequestCount());
+        TestUtils.assertTrue(elapsed >= 450L);
+        TestUtils.assertTrue(scheduler.getWaitTime() >= 450L);
+    }
+
+    /**
+     * AlphaVantage throttling is a JSON "Note" (or "Information") with status 200 - retried
+     */
+    /**
+     * Unused responses are discarded (the connection released), and a Retry-After longer than the max
+     * backoff is not retried at all
+     */
+    @Test
+    public void testRetryAfter() {
+
+        TestUtils.assertEquals(0L, RequestScheduler.retryAfter(null));
+        TestUtils.assertEquals(0L, RequestScheduler.retryAfter("soon"));
+        TestUtils.assertEquals(5_000L, RequestScheduler.retryAfter(" 5 "));
+        TestUtils.assertEquals(0L, RequestScheduler.retryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        String future = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(10L));
+        TestUtils.assertInRange(500_000L, 600_000L, RequestScheduler.retryAfter(future));
+
+        AtomicInteger discarded = new AtomicInteger();
+
+        RequestScheduler transient503 = new RequestScheduler("Test").retries(2).backoff(1L, TimeUnit.MILLISECONDS);
+        try {
+            transient503.exchange(() -> RequestSchedulerTest.respond(503, null, discarded));
+            TestUtils.fail("All attempts failed - should throw!");
+        } catch (IllegalStateException cause) {
+            // Expected
+        }
+        TestUtils.assertEquals(3L, transient503.getRequestCount());
+        TestUtils.assertEquals(3, discarded.get());
+
+        RequestScheduler throttled = new RequestScheduler("Test").retries(2).backoff(1L, TimeUnit.MILLISECONDS);
+        try {
+            throttled.exchange(() -> RequestSchedulerTest.respond(429, "3600", discarded));
+            TestUtils.fail("Asked to wait an hour - should throw!");
+        } catch (IllegalStateException cause) {
+            TestUtils.assertTrue(cause.getMessage().contains("retry after 3600s"));
+        }
+        TestUtils.assertEquals(1L, throttled.getRequestCount());
+        TestUtils.assertEquals(4, discarded.get());
+    }
+
+    @Test
+    public void testThrottled() throws IOException {
+
+        RequestScheduler scheduler = new RequestScheduler("Test").retries(3).backoff(1L, TimeUnit.MILLISECONDS);
+
+        AtomicInteger attempts = new AtomicInteger();
+        Reader reader = scheduler.exchange(() -> {
+            switch (attempts.incrementAndGet()) {
+            case 1:
+                return RequestSchedulerTest.respond(200, "{\n    \"Note\": \"Thank you for using Alpha Vantage!\"\n}");
+            case 2:
+                return RequestSchedulerTest.respond(200, "{\n    \"Information\": \"Thank you for using Alpha Vantage!\"\n}");
+            default:
+                return RequestSchedulerTest.respond(200, CSV);
+            }
+        });
+
+        try (BufferedReader buffered = new BufferedReader(reader)) {
+            TestUtils.assertEquals("Date,Open,High,Low,Close,Adj Close,Volume", buffered.readLine());
+        }
+
+        TestUtils.assertEquals(3L, scheduler.getRequestCount());
+        TestUtils.assertEquals(2L, scheduler.getRetryCount());
+        TestUtils.assertEquals(0L, scheduler.getFailureCount());
+    }
+
+}
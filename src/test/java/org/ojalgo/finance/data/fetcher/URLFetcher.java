@@ -0,0 +1,68 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.Reader;
+import java.net.URL;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.ojalgo.type.CalendarDateUnit;
+
+/**
+ * Fetches (daily) CSV from any URL, typically a local test server, without retries. Conditional when there
+ * are validators.
+ *
+ * @author apete
+ */
+public final class URLFetcher implements DataFetcher {
+
+    private final RequestScheduler myScheduler = new RequestScheduler("URL").retries(0).backoff(1L, TimeUnit.MILLISECONDS);
+    private final URL myURL;
+
+    public URLFetcher(final URL url) {
+        super();
+        myURL = url;
+    }
+
+    public String getProvider() {
+        return "URL";
+    }
+
+    public CalendarDateUnit getResolution() {
+        return CalendarDateUnit.DAY;
+    }
+
+    public Reader getStreamOfCSV() {
+        return this.getStreamOfCSV(null, null);
+    }
+
+    @Override
+    public Reader getStreamOfCSV(final LocalDate since, final Validators validators) {
+        return myScheduler.transfer(() -> new HttpTransfer(myURL, validators));
+    }
+
+    public String getSymbol() {
+        return "URL";
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.fetcher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.CookieHandler;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ojalgo.TestUtils;
+import org.ojalgo.netio.ResourceLocator;
+import org.ojalgo.netio.ResourceLocator.Session;
+
+/**
+ * Persisting the session state - no network access.
+ *
+ * @author apete
+ */
+public class YahooSessionTest {
+
+    private static Properties load(final File file) throws IOException {
+        Properties retVal = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            retVal.load(reader);
+        }
+        return retVal;
+    }
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testExpired() throws IOException {
+
+        CookieHandler original = CookieHandler.getDefault();
+        try {
+
+            CookieManager manager = new CookieManager();
+            CookieHandler.setDefault(manager);
+
+            long now = System.currentTimeMillis();
+
+            Properties properties = new Properties();
+            properties.setProperty("parameter.crumb", "crumb123");
+            properties.setProperty("cookie.0.name", "A");
+            properties.setProperty("cookie.0.value", "expired");
+            properties.setProperty("cookie.0.domain", ".yahoo.com");
+            properties.setProperty("cookie.0.expires", Long.toString(now - 1_000L));
+            properties.setProperty("cookie.1.name", "B");
+            properties.setProperty("cookie.1.value", "valid");
+            properties.setProperty("cookie.1.domain", ".yahoo.com");
+            properties.setProperty("cookie.1.expires", Long.toString(now + 60_000L));
+
+            File file = new File(directory, "yahoo.properties");
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+
+            TestUtils.assertTrue(YahooSession.restore(ResourceLocator.session(), file));
+
+            List<HttpCookie> cookies = manager.getCookieStore().getCookies();
+            TestUtils.assertEquals(1, cookies.size());
+            TestUtils.assertEquals("valid", cookies.get(0).getValue());
+            TestUtils.assertTrue(cookies.get(0).getMaxAge() <= 60L);
+
+        } finally {
+            CookieHandler.setDefault(original);
+        }
+    }
+
+    @Test
+    public void testShared() {
+        TestUtils.assertTrue(YahooSession.shared() == YahooSession.shared());
+    }
+
+    @Test
+    public void testStoreAndRestore() throws IOException {
+
+        CookieHandler original = CookieHandler.getDefault();
+        try {
+
+            CookieManager manager = new CookieManager();
+            CookieHandler.setDefault(manager);
+
+            HttpCookie cookie = new HttpCookie("B", "abc123");
+            cookie.setDomain(".yahoo.com");
+            cookie.setPath("/");
+            cookie.setMaxAge(3600L);
+            manager.getCookieStore().add(null, cookie);
+
+            Session session = ResourceLocator.session();
+            session.parameter(YahooSession.CRUMB, "crumb123");
+            session.parameter(YahooSession.SESSION_ID, "session456");
+
+            File file = new File(directory, "yahoo.properties");
+            YahooSession.store(session, file);
+
+            // Simulate a restart
+            manager = new CookieManager();
+            CookieHandler.setDefault(manager);
+            Session restored = ResourceLocator.session();
+
+            TestUtils.assertTrue(YahooSession.restore(restored, file));
+            TestUtils.assertEquals("crumb123", restored.getParameterValue(YahooSession.CRUMB));
+            TestUtils.assertEquals("session456", restored.getParameterValue(YahooSession.SESSION_ID));
+
+            List<HttpCookie> cookies = manager.getCookieStore().getCookies();
+            TestUtils.assertEquals(1, cookies.size());
+            TestUtils.assertEquals("B", cookies.get(0).getName());
+            TestUtils.assertEquals("abc123", cookies.get(0).getValue());
+            // Whatever remains of the original max age
+            TestUtils.assertTrue(cookies.get(0).getMaxAge() <= 3600L);
+            TestUtils.assertTrue(cookies.get(0).getMaxAge() > 3500L);
+
+            // Storing the restored cookie again does not extend its expiry
+            String expires = YahooSessionTest.load(file).getProperty("cookie.0.expires");
+            TestUtils.assertTrue(expires != null);
+            YahooSession.store(restored, file);
+            TestUtils.assertEquals(expires, YahooSessionTest.load(file).getProperty("cookie.0.expires"));
+
+            TestUtils.assertTrue(!YahooSession.restore(ResourceLocator.session(), new File(directory, "missing.properties")));
+
+        } finally {
+            CookieHandler.setDefault(original);
+        }
+    }
+
+}
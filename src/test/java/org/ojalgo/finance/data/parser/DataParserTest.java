@@ -22,14 +22,21 @@
 package org.ojalgo.finance.data.parser;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 
 import org.junit.jupiter.api.Test;
 import org.ojalgo.TestUtils;
 import org.ojalgo.finance.data.DatePrice;
+import org.ojalgo.finance.data.PriceColumns;
 import org.ojalgo.function.constant.PrimitiveMath;
 
 public class DataParserTest {
@@ -66,6 +73,60 @@ public class DataParserTest {
 
     private static final String PATH = "./src/test/resources/org/ojalgo/finance/data/parser/";
 
+    /**
+     * Parsing in (many small) parallel chunks must give exactly the same result as parsing sequentially and
+     * then sorting.
+     */
+    static void doTestParallel(final String fileName, final DatePriceParser<?> parser) throws IOException {
+
+        File file = new File(PATH + fileName);
+
+        PriceColumns expected = new PriceColumns();
+        parser.parse(new FileReader(file), expected);
+        expected.sort();
+
+        for (int chunkSize : new int[] { 1, 100, 4096, ParallelParser.DEFAULT_CHUNK_SIZE }) {
+
+            PriceColumns actual = new ParallelParser(ForkJoinPool.commonPool(), chunkSize).parse(file, parser);
+
+            TestUtils.assertEquals(expected.size(), actual.size());
+
+            for (int i = 0; i < expected.size(); i++) {
+                TestUtils.assertEquals(expected.getEpochDay(i), actual.getEpochDay(i));
+                TestUtils.assertEquals(expected.getOpen(i), actual.getOpen(i), PrimitiveMath.MACHINE_EPSILON);
+                TestUtils.assertEquals(expected.getPrice(i), actual.getPrice(i), PrimitiveMath.MACHINE_EPSILON);
+                TestUtils.assertEquals(expected.getVolume(i), actual.getVolume(i), PrimitiveMath.MACHINE_EPSILON);
+            }
+        }
+    }
+
+    /**
+     * The primitive/streaming parse mode must produce exactly the same keys and prices as the BasicParser
+     * based mode.
+     */
+    static <DP extends DatePrice> void doTestStreaming(final String fileName, final DatePriceParser<DP> parser) throws FileNotFoundException {
+
+        File file = new File(PATH + fileName);
+
+        ResultsConsumer<DP> collector = new ResultsConsumer<>();
+        parser.parse(file, true, collector);
+
+        List<LocalDate> keys = new ArrayList<>();
+        List<Double> prices = new ArrayList<>();
+        parser.parse(new FileReader(file), (epochDay, open, high, low, close, adjusted, volume) -> {
+            keys.add(LocalDate.ofEpochDay(epochDay));
+            prices.add(adjusted);
+        });
+
+        TestUtils.assertEquals(collector.size(), keys.size());
+
+        for (int i = 0; i < collector.size(); i++) {
+            DP expected = collector.data.get(i);
+            TestUtils.assertEquals(expected.key, keys.get(i));
+            TestUtils.assertEquals(expected.getPrice(), prices.get(i).doubleValue(), PrimitiveMath.MACHINE_EPSILON);
+        }
+    }
+
     @Test
     public void testAlphaVantageDailyAAPL() {
 
@@ -206,6 +267,59 @@ public class DataParserTest {
         TestUtils.assertEquals(194.17, collector.lastPrice(), PrimitiveMath.MACHINE_EPSILON);
     }
 
+    @Test
+    public void testIntradayAlphaVantageAAPL() throws FileNotFoundException {
+
+        List<long[]> times = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+
+        new IntradayParser(ZoneId.of("America/New_York")).parse(new FileReader(new File(PATH + "AlphaVantage-AAPL-intraday.csv")),
+                (epochSecond, open, high, low, close, volume) -> {
+                    times.add(new long[] { epochSecond });
+                    values.add(new double[] { open, high, low, close, volume });
+                });
+
+        TestUtils.assertEquals(78, times.size());
+
+        // Descending, 16:00 EST is 21:00 UTC
+        TestUtils.assertEquals(Instant.parse("2018-11-09T21:00:00Z").getEpochSecond(), times.get(0)[0]);
+        TestUtils.assertEquals(Instant.parse("2018-11-09T14:35:00Z").getEpochSecond(), times.get(77)[0]);
+
+        TestUtils.assertEquals(199.6310, values.get(0)[0], PrimitiveMath.MACHINE_EPSILON);
+        TestUtils.assertEquals(199.3092, values.get(0)[3], PrimitiveMath.MACHINE_EPSILON);
+        TestUtils.assertEquals(558719, values.get(0)[4], PrimitiveMath.MACHINE_EPSILON);
+    }
+
+    @Test
+    public void testParallelAlphaVantageDailyAAPL() throws IOException {
+        DataParserTest.doTestParallel("AlphaVantage-AAPL-daily.csv", new AlphaVantageParser());
+    }
+
+    @Test
+    public void testParallelIEXTradingDailyAAPL() throws IOException {
+        DataParserTest.doTestParallel("IEXTrading-AAPL-daily.csv", new IEXTradingParser());
+    }
+
+    @Test
+    public void testParallelYahooDailyAAPL() throws IOException {
+        DataParserTest.doTestParallel("Yahoo-AAPL-daily.csv", new YahooParser());
+    }
+
+    @Test
+    public void testStreamingAlphaVantageDailyAAPL() throws FileNotFoundException {
+        DataParserTest.doTestStreaming("AlphaVantage-AAPL-daily.csv", new AlphaVantageParser());
+    }
+
+    @Test
+    public void testStreamingIEXTradingDailyAAPL() throws FileNotFoundException {
+        DataParserTest.doTestStreaming("IEXTrading-AAPL-daily.csv", new IEXTradingParser());
+    }
+
+    @Test
+    public void testStreamingYahooDailyAAPL() throws FileNotFoundException {
+        DataParserTest.doTestStreaming("Yahoo-AAPL-daily.csv", new YahooParser());
+    }
+
     @Test
     public void testYahooDailyAAPL() {
 
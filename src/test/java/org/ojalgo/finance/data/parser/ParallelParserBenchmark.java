@@ -0,0 +1,134 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.parser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.ojalgo.finance.data.PriceColumns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares sequential (reader based) parsing with {@link ParallelParser} on a large file, for different
+ * numbers of threads. The file is generated by repeating the Yahoo AAPL daily data, with shifted dates, so
+ * that the rows are still in ascending order. Throughput is measured in parsed files per second.
+ *
+ * @author apete
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelParserBenchmark {
+
+    private static final String PATH = "./src/test/resources/org/ojalgo/finance/data/parser/";
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParallelParserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Each copy is about 0.6MB
+     */
+    @Param({ "100" })
+    public int copies;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private File myFile;
+    private final YahooParser myParser = new YahooParser();
+    private ForkJoinPool myPool;
+
+    @Benchmark
+    public PriceColumns parallel() throws IOException {
+        return new ParallelParser(myPool).parse(myFile, myParser);
+    }
+
+    @Benchmark
+    public PriceColumns sequential() throws IOException {
+        PriceColumns retVal = new PriceColumns();
+        myParser.parse(new FileReader(myFile), retVal);
+        retVal.sort();
+        return retVal;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+
+        List<String> lines = Files.readAllLines(Paths.get(PATH + "Yahoo-AAPL-daily.csv"), StandardCharsets.US_ASCII);
+
+        LocalDate first = LocalDate.parse(lines.get(1).substring(0, 10));
+        LocalDate last = LocalDate.parse(lines.get(lines.size() - 1).substring(0, 10));
+        long span = last.toEpochDay() - first.toEpochDay() + 1L;
+
+        myFile = File.createTempFile("ParallelParserBenchmark", ".csv");
+        myFile.deleteOnExit();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(myFile.toPath(), StandardCharsets.US_ASCII)) {
+            writer.write(lines.get(0));
+            writer.newLine();
+            for (int c = 0; c < copies; c++) {
+                for (int i = 1; i < lines.size(); i++) {
+                    String line = lines.get(i);
+                    writer.write(LocalDate.parse(line.substring(0, 10)).plusDays(c * span).toString());
+                    writer.write(line, 10, line.length() - 10);
+                    writer.newLine();
+                }
+            }
+        }
+
+        myPool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        myPool.shutdown();
+        myFile.delete();
+    }
+
+}
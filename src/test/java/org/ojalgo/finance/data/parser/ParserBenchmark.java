@@ -0,0 +1,100 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.data.parser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the BasicParser based (one String per field and one object per line) parse mode with the
+ * primitive/streaming mode. Throughput is measured in parsed files per second.
+ *
+ * @author apete
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final String PATH = "./src/test/resources/org/ojalgo/finance/data/parser/";
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ParserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Param({ "Yahoo-AAPL-daily.csv", "AlphaVantage-AAPL-daily.csv", "IEXTrading-AAPL-daily.csv" })
+    public String file;
+
+    private DatePriceParser<?> myParser;
+    private String myText;
+
+    @Benchmark
+    public void basic(final Blackhole blackhole) {
+        myParser.parse(new StringReader(myText), blackhole::consume);
+    }
+
+    @Setup
+    public void setup() throws IOException {
+
+        myText = new String(Files.readAllBytes(Paths.get(PATH + file)), StandardCharsets.US_ASCII);
+
+        if (file.startsWith("Yahoo")) {
+            myParser = new YahooParser();
+        } else if (file.startsWith("AlphaVantage")) {
+            myParser = new AlphaVantageParser();
+        } else {
+            myParser = new IEXTradingParser();
+        }
+    }
+
+    @Benchmark
+    public void streaming(final Blackhole blackhole) {
+        myParser.parse(new StringReader(myText), (epochDay, open, high, low, close, adjusted, volume) -> {
+            blackhole.consume(epochDay);
+            blackhole.consume(adjusted);
+        });
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 1997-2022 Optimatika
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.ojalgo.finance.portfolio;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.ojalgo.TestUtils;
+import org.ojalgo.function.aggregator.Aggregator;
+import org.ojalgo.matrix.Primitive64Matrix;
+import org.ojalgo.type.context.NumberContext;
+
+public class FactorContextTest extends FinancePortfolioTests {
+
+    private static final NumberContext ACCURACY = NumberContext.getGeneral(12, 14);
+    private static final NumberContext WEIGHTS_ACCURACY = NumberContext.getGeneral(4, 4);
+
+    /**
+     * The same (seeded) data every time, so that a dense reference can be built from a separate instance. The
+     * loadings on the second factor are all negative - any long-only portfolio has a negative exposure.
+     */
+    private static FactorContext makeContext(final int size, final int factors) {
+
+        Random random = new Random(123L);
+
+        Primitive64Matrix.DenseReceiver returns = Primitive64Matrix.FACTORY.makeDense(size);
+        Primitive64Matrix.DenseReceiver loadings = Primitive64Matrix.FACTORY.makeDense(size, factors);
+        Primitive64Matrix.DenseReceiver specific = Primitive64Matrix.FACTORY.makeDense(size);
+        for (int i = 0; i < size; i++) {
+            returns.set(i, 0.02 + 0.08 * random.nextDouble());
+            specific.set(i, 0.01 + 0.03 * random.nextDouble());
+            for (int f = 0; f < factors; f++) {
+                if (f == 1) {
+                    loadings.set(i, f, -0.5 - 0.5 * Math.abs(random.nextGaussian()));
+                } else {
+                    loadings.set(i, f, (f == 0 ? 1.0 : 0.0) + 0.5 * random.nextGaussian());
+                }
+            }
+        }
+
+        Primitive64Matrix.DenseReceiver root = Primitive64Matrix.FACTORY.makeDense(factors, factors);
+        for (int j = 0; j < factors; j++) {
+            for (int i = 0; i < factors; i++) {
+                root.set(i, j, 0.1 * random.nextGaussian());
+            }
+        }
+        Primitive64Matrix factorCovariances = root.get().multiply(root.get().transpose());
+
+        return new FactorContext(returns.get(), loadings.get(), factorCovariances, specific.get());
+    }
+
+    private static PortfolioContext makeDenseContext(final int size, final int factors) {
+        FactorContext reference = FactorContextTest.makeContext(size, factors);
+        return new PortfolioContext(reference.getAssetReturns(), reference.getCovariances());
+    }
+
+    /**
+     * Long-only, and the factor exposure variables must not be bounded by that
+     */
+    @Test
+    public void testEfficientFrontierInFactorForm() {
+
+        FactorContext factorContext = FactorContextTest.makeContext(30, 3);
+        PortfolioContext denseContext = FactorContextTest.makeDenseContext(30, 3);
+
+        for (BigDecimal riskAversion : new BigDecimal[] { BigDecimal.ONE, BigDecimal.TEN, new BigDecimal(100) }) {
+
+            EfficientFrontier factorModel = new EfficientFrontier(factorContext);
+            factorModel.setRiskAversion(riskAversion);
+
+            EfficientFrontier denseModel = new EfficientFrontier(denseContext);
+            denseModel.setRiskAversion(riskAversion);
+
+            Primitive64Matrix weights = factorModel.getAssetWeights();
+            TestUtils.assertEquals(denseModel.getAssetWeights(), weights, WEIGHTS_ACCURACY);
+            TestUtils.assertEquals(1.0, weights.aggregateAll(Aggregator.SUM).doubleValue(), WEIGHTS_ACCURACY);
+            TestUtils.assertEquals(denseModel.getReturnVariance(), factorModel.getReturnVariance(), WEIGHTS_ACCURACY);
+        }
+
+        TestUtils.assertFalse(factorContext.isMaterialised());
+    }
+
+    @Test
+    public void testMarkowitzInFactorForm() {
+
+        FactorContext factorContext = FactorContextTest.makeContext(30, 3);
+        PortfolioContext denseContext = FactorContextTest.makeDenseContext(30, 3);
+
+        for (BigDecimal riskAversion : new BigDecimal[] { BigDecimal.ONE, BigDecimal.TEN, new BigDecimal(100) }) {
+
+            MarkowitzModel factorModel = new MarkowitzModel(factorContext);
+            factorModel.setRiskAversion(riskAversion);
+
+            MarkowitzModel denseModel = new MarkowitzModel(denseContext);
+            denseModel.setRiskAversion(riskAversion);
+
+            TestUtils.assertEquals(denseModel.getAssetWeights(), factorModel.getAssetWeights(), WEIGHTS_ACCURACY);
+            TestUtils.assertEquals(denseModel.getReturnVariance(), factorModel.getReturnVariance(), WEIGHTS_ACCURACY);
+        }
+
+        // The dense matrix is never built for the factor form model
+        TestUtils.assertFalse(factorContext.isMaterialised());
+    }
+
+    /**
+     * The target searches evaluate the return and variance of the asset weights only - not of the factor
+     * exposures that are also part of the optimisation result.
+     */
+    @Test
+    public void testMarkowitzTargetsInFactorForm() {
+
+        FactorContext factorContext = FactorContextTest.makeContext(30, 3);
+        PortfolioContext denseContext = FactorContextTest.makeDenseContext(30, 3);
+
+        MarkowitzModel factorModel = new MarkowitzModel(factorContext);
+        MarkowitzModel denseModel = new MarkowitzModel(denseContext);
+
+        BigDecimal targetReturn = new BigDecimal("0.06");
+        factorModel.setTargetReturn(targetReturn);
+        denseModel.setTargetReturn(targetReturn);
+
+        TestUtils.assertEquals(denseModel.getAssetWeights(), factorModel.getAssetWeights(), WEIGHTS_ACCURACY);
+        TestUtils.assertEquals(denseModel.getMeanReturn(), factorModel.getMeanReturn(), WEIGHTS_ACCURACY);
+
+        BigDecimal targetVariance = new BigDecimal("0.02");
+        factorModel.setTargetVariance(targetVariance);
+        denseModel.setTargetVariance(targetVariance);
+
+        TestUtils.assertEquals(denseModel.getAssetWeights(), factorModel.getAssetWeights(), WEIGHTS_ACCURACY);
+        TestUtils.assertEquals(denseModel.getReturnVariance(), factorModel.getReturnVariance(), WEIGHTS_ACCURACY);
+
+        TestUtils.assertFalse(factorContext.isMaterialised());
+    }
+
+    @Test
+    public void testVariance() {
+
+        FactorContext factorContext = FactorContextTest.makeContext(50, 4);
+
+        Primitive64Matrix covariances = factorContext.getCovariances();
+        PortfolioContext denseContext = new PortfolioContext(factorContext.getAssetReturns(), covariances);
+
+        FixedWeightsPortfolio portfolio = new FixedWeightsPortfolio(new MarketEquilibrium(covariances), factorContext.getAssetReturns());
+
+        TestUtils.assertEquals(denseContext.calculatePortfolioVariance(portfolio), factorContext.calculatePortfolioVariance(portfolio), ACCURACY);
+
+        // Marginal risks times weights sum to the volatility
+        Primitive64Matrix weights = portfolio.getAssetWeights();
+        Primitive64Matrix marginal = factorContext.calculateMarginalRisks(weights);
+        double volatility = Math.sqrt(factorContext.calculatePortfolioVariance(weights));
+        TestUtils.assertEquals(volatility, marginal.dot(weights), ACCURACY);
+
+        // The volatilities are calculated without the dense matrix, but should match its diagonal
+        for (int i = 0; i < factorContext.size(); i++) {
+            TestUtils.assertEquals(Math.sqrt(covariances.doubleValue(i, i)), factorContext.getAssetVolatilities().doubleValue(i), ACCURACY);
+        }
+    }
+
+}